@@ -0,0 +1,57 @@
+#!/bin/sh
+#
+# Build and run the JMH benchmarks in bench/src against the game sources in
+# src. Run it from anywhere:
+#
+#   bench/run.sh                      run every benchmark
+#   bench/run.sh Parser               run the benchmarks matching a regex
+#   bench/run.sh Snapshot -prof gc    pass any other option on to JMH
+#
+# The JMH jars are downloaded into bench/lib on the first run. The game
+# sources are compiled together with the benchmarks, so the libraries they
+# depend on (JavaFX and JAXB) must be given in PLAGUE_CLASSPATH, e.g.
+#
+#   PLAGUE_CLASSPATH="/opt/javafx-sdk/lib/*:/opt/jaxb/*" bench/run.sh
+#
+# Forks, warm-up and measurement are fixed in the benchmarks themselves, so
+# runs are comparable across commits. Results are written to
+# bench/results/<commit>.json, which can be compared with any JMH
+# visualiser, and summarised on the console.
+
+set -e
+
+JMH_VERSION=1.37
+MAVEN=https://repo1.maven.org/maven2
+
+cd "$(dirname "$0")/.."
+LIB=bench/lib
+OUT=bench/target
+RESULTS=bench/results
+
+fetch() {
+	jar="$LIB/$(basename "$1")"
+	if [ ! -f "$jar" ]; then
+		echo "[Log] Downloading $(basename "$1")"
+		curl -sSfL -o "$jar" "$MAVEN/$1"
+	fi
+}
+
+mkdir -p "$LIB" "$RESULTS"
+fetch "org/openjdk/jmh/jmh-core/$JMH_VERSION/jmh-core-$JMH_VERSION.jar"
+fetch "org/openjdk/jmh/jmh-generator-annprocess/$JMH_VERSION/jmh-generator-annprocess-$JMH_VERSION.jar"
+fetch "net/sf/jopt-simple/jopt-simple/5.0.4/jopt-simple-5.0.4.jar"
+fetch "org/apache/commons/commons-math3/3.6.1/commons-math3-3.6.1.jar"
+
+CP="$LIB/*"
+if [ -n "$PLAGUE_CLASSPATH" ]; then
+	CP="$CP:$PLAGUE_CLASSPATH"
+fi
+
+rm -rf "$OUT"
+mkdir -p "$OUT"
+javac -nowarn -encoding UTF-8 -d "$OUT" -cp "$CP" -sourcepath src \
+	-processor org.openjdk.jmh.generators.BenchmarkProcessor \
+	$(find bench/src -name '*.java')
+
+COMMIT=$(git describe --always --dirty 2>/dev/null || echo unknown)
+java -cp "$OUT:$CP" org.openjdk.jmh.Main -rf json -rff "$RESULTS/$COMMIT.json" "$@"
@@ -0,0 +1,137 @@
+package benchmarks;
+
+import java.util.Map;
+
+import dataStorage.InitialGameLoader;
+import server.game.Game;
+import server.game.TestConst;
+import server.game.items.Antidote;
+import server.game.items.Key;
+import server.game.items.Torch;
+import server.game.player.Avatar;
+import server.game.player.Direction;
+import server.game.player.Player;
+import server.game.player.Position;
+import server.game.player.Virus;
+import server.game.world.Area;
+import server.game.world.GroundSpace;
+import server.game.world.MapElement;
+import server.game.world.Room;
+import server.game.world.TransitionSpace;
+
+/**
+ * This class sets up the games benchmarks run on. Everything set up here is
+ * deterministic, so that results are comparable from one run to another.
+ *
+ * @author Hector (Fang Zhao 300364061)
+ *
+ */
+final class BenchmarkWorlds {
+
+	/**
+	 * The name of the small world in TestConst.
+	 */
+	static final String TEST_WORLD = "test";
+
+	/**
+	 * The name of the full world made by InitialGameLoader.
+	 */
+	static final String FULL_WORLD = "full";
+
+	/**
+	 * The id of the first player. Ids are port numbers in game, so they are
+	 * mostly beyond the range of cached Integers.
+	 */
+	static final int FIRST_UID = 50000;
+
+	private BenchmarkWorlds() {
+	}
+
+	/**
+	 * Make a game without any player.
+	 *
+	 * @param world
+	 *            --- either {@link #TEST_WORLD TEST_WORLD} or
+	 *            {@link #FULL_WORLD FULL_WORLD}
+	 * @return --- the game
+	 */
+	static Game makeGame(String world) {
+		switch (world) {
+		case TEST_WORLD:
+			Map<Integer, Area> areas = TestConst.createAreas();
+			return new Game(areas.get(0), areas);
+		case FULL_WORLD:
+			return InitialGameLoader.makeGame();
+		default:
+			throw new IllegalArgumentException("Unknown world: " + world);
+		}
+	}
+
+	/**
+	 * Join the given number of players into the game. Each player carries a
+	 * few items, so that the inventory isn't empty in snapshots.
+	 *
+	 * @param game
+	 *            --- the game
+	 * @param numPlayers
+	 *            --- the number of players
+	 */
+	static void joinPlayers(Game game, int numPlayers) {
+		for (int i = 0; i < numPlayers; i++) {
+			Player player = new Player(FIRST_UID + i, Avatar.get(i % Avatar.values().length), "player_" + i);
+			game.joinPlayer(player);
+			player.pickUpItem(new Antidote("An antidote", Virus.values()[i % Virus.values().length]));
+			player.pickUpItem(new Torch("A torch"));
+			player.pickUpItem(new Key("A key", i));
+		}
+	}
+
+	/**
+	 * Find the first cell of plain ground in the given area, scanning row by
+	 * row, which is free of players.
+	 *
+	 * @param area
+	 *            --- the area
+	 * @return --- the position on that cell, facing north.
+	 */
+	static Position findStart(Area area) {
+		for (int y = 0; y < area.getHeight(); y++) {
+			for (int x = 0; x < area.getWidth(); x++) {
+				MapElement element = area.getMapElementAt(x, y);
+				if (element != null && element.getClass() == GroundSpace.class && !area.isOccupied(x, y)) {
+					return area.getPosition(x, y, Direction.North);
+				}
+			}
+		}
+		throw new IllegalStateException("No free ground in area " + area.getAreaID());
+	}
+
+	/**
+	 * Find the first transition space in the world, scanning row by row,
+	 * which leads to an area that isn't locked.
+	 *
+	 * @param game
+	 *            --- the game
+	 * @return --- the position on the transition space, facing the way
+	 *         through it.
+	 */
+	static Position findTransit(Game game) {
+		Area world = game.getWorld();
+		for (int y = 0; y < world.getHeight(); y++) {
+			for (int x = 0; x < world.getWidth(); x++) {
+				MapElement element = world.getMapElementAt(x, y);
+				if (!(element instanceof TransitionSpace)) {
+					continue;
+				}
+				TransitionSpace transition = (TransitionSpace) element;
+				Area dest = game.getAreas().get(transition.getDestination().areaId);
+				if (dest instanceof Room && ((Room) dest).isLocked()) {
+					continue;
+				}
+				return world.getPosition(x, y, transition.getFacingDirection());
+			}
+		}
+		throw new IllegalStateException("No open transition space in world");
+	}
+
+}
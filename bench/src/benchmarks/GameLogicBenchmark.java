@@ -0,0 +1,110 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import server.game.Game;
+import server.game.player.Player;
+import server.game.player.Position;
+
+/**
+ * Benchmarks of player actions in game logic, on the small world of TestConst
+ * and on the full world.
+ *
+ * @author Hector (Fang Zhao 300364061)
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms512m", "-Xmx512m" })
+public class GameLogicBenchmark {
+
+	/**
+	 * Which world to play in.
+	 */
+	@Param({ BenchmarkWorlds.TEST_WORLD, BenchmarkWorlds.FULL_WORLD })
+	public String world;
+
+	/**
+	 * The game instance
+	 */
+	private Game game;
+
+	/**
+	 * The only player in game.
+	 */
+	private Player player;
+
+	/**
+	 * Where the walk starts.
+	 */
+	private Position start;
+
+	/**
+	 * Where the player transits from.
+	 */
+	private Position transitFrom;
+
+	/**
+	 * Make the game, and join the player.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		game = BenchmarkWorlds.makeGame(world);
+		BenchmarkWorlds.joinPlayers(game, 1);
+		player = game.getPlayerById(BenchmarkWorlds.FIRST_UID);
+		start = BenchmarkWorlds.findStart(game.getWorld());
+		transitFrom = BenchmarkWorlds.findTransit(game);
+	}
+
+	/**
+	 * Put the player back to where the walk starts, so that every iteration
+	 * takes the same walk.
+	 */
+	@Setup(Level.Iteration)
+	public void resetPlayer() {
+		player.setPosition(start);
+	}
+
+	/**
+	 * The player walks forward, and turns right when blocked.
+	 *
+	 * @return --- whether the player has moved
+	 */
+	@Benchmark
+	public boolean moveForward() {
+		if (game.playerMoveForward(BenchmarkWorlds.FIRST_UID)) {
+			return true;
+		}
+		game.playerTurnRight(BenchmarkWorlds.FIRST_UID);
+		return false;
+	}
+
+	/**
+	 * The player is put on a transition space of the world, facing the way
+	 * through it, and transits into the area on the other end.
+	 *
+	 * @return --- whether the player has transited
+	 */
+	@Benchmark
+	public boolean transit() {
+		player.setPosition(transitFrom);
+		return game.playerTransit(BenchmarkWorlds.FIRST_UID);
+	}
+
+}
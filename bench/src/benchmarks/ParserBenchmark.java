@@ -0,0 +1,307 @@
+package benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import client.ParserUtilities;
+import server.SharedSnapshot;
+import server.Snapshot;
+import server.SnapshotBuilder;
+import server.SnapshotEncoder;
+import server.game.Game;
+import server.game.player.Avatar;
+import server.game.player.Player;
+import server.game.player.Position;
+
+/**
+ * Benchmarks of parsing on client side, on the full world with four players.
+ * The snapshot parsed is the first one a client receives, which carries every
+ * field but the winner.
+ *
+ * @author Hector (Fang Zhao 300364061)
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms512m", "-Xmx512m" })
+public class ParserBenchmark {
+
+	/**
+	 * The number of players in game.
+	 */
+	private static final int NUM_PLAYERS = 4;
+
+	/**
+	 * A buffer holding the snapshot, after its length.
+	 */
+	private ByteBuffer snapshot;
+
+	/**
+	 * Where each field starts in the snapshot.
+	 */
+	private int timeAt, playersAt, chatAt, inventoryAt;
+
+	/**
+	 * The map of the world, as sent before the game starts.
+	 */
+	private String mapStr;
+
+	/**
+	 * Strings in the formats parsed by the string parsers.
+	 */
+	private String avatarsStr, alivenessStr, torchStatusStr, positionsStr, inventoryStr;
+
+	/**
+	 * Where the parsers put what they parse. They are reused, as on client
+	 * side.
+	 */
+	private Map<Integer, Position> positions;
+	private Map<Integer, Boolean> torchStatus;
+	private Map<Integer, Boolean> aliveness;
+	private Map<Integer, Avatar> avatars;
+	private Map<Integer, char[][]> maps;
+	private Map<Integer, String> descriptions;
+
+	/**
+	 * Make the game, and encode everything to be parsed.
+	 *
+	 * @throws IOException
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		Game game = BenchmarkWorlds.makeGame(BenchmarkWorlds.FULL_WORLD);
+		BenchmarkWorlds.joinPlayers(game, NUM_PLAYERS);
+		int uid = BenchmarkWorlds.FIRST_UID;
+
+		// the first snapshot of a client carries everything, including the
+		// last command applied from it.
+		Map<Integer, Integer> processedSequences = new HashMap<>();
+		processedSequences.put(uid, 0);
+		SharedSnapshot shared = new SnapshotBuilder().build(game, "Hello everyone, how is it going?",
+				processedSequences);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new SnapshotEncoder(uid).writeSnapshot(new DataOutputStream(bytes), shared, "You picked up a key.");
+		byte[] encoded = bytes.toByteArray();
+		snapshot = ByteBuffer.wrap(Arrays.copyOfRange(encoded, 4, encoded.length));
+
+		positions = new HashMap<>();
+		torchStatus = new HashMap<>();
+		aliveness = new HashMap<>();
+		avatars = new HashMap<>();
+		maps = new HashMap<>();
+		descriptions = new HashMap<>();
+
+		// find where each field starts.
+		ParserUtilities.parseSnapshotMask(snapshot);
+		timeAt = snapshot.position();
+		ParserUtilities.parseSnapshotTime(snapshot);
+		playersAt = snapshot.position();
+		ParserUtilities.parseSnapshotPlayers(positions, torchStatus, aliveness, snapshot);
+		chatAt = snapshot.position();
+		ParserUtilities.parseSnapshotString(snapshot);
+		snapshot.getInt();
+		snapshot.get();
+		inventoryAt = snapshot.position();
+
+		mapStr = game.getWorld().toString();
+		avatarsStr = game.getAvatarsString();
+		alivenessStr = game.getAliveString();
+		torchStatusStr = game.getTorchStatusString();
+		inventoryStr = game.getPlayerInventoryString(uid);
+		StringBuilder sb = new StringBuilder();
+		for (Player p : game.getPlayers().values()) {
+			Position pos = p.getPosition();
+			sb.append(p.getId()).append(",").append(pos.areaId).append(",").append(pos.x).append(",").append(pos.y)
+					.append(",").append(pos.getDirection().ordinal()).append("|");
+		}
+		positionsStr = sb.toString();
+	}
+
+	/**
+	 * Decode the whole snapshot in the same order as <i>Client</i> does,
+	 * without updating the GUI.
+	 *
+	 * @param blackhole
+	 */
+	@Benchmark
+	public void decodeSnapshot(Blackhole blackhole) {
+		snapshot.rewind();
+		int mask = ParserUtilities.parseSnapshotMask(snapshot);
+		if ((mask & Snapshot.TIME) != 0) {
+			blackhole.consume(ParserUtilities.parseSnapshotTime(snapshot));
+		}
+		if ((mask & Snapshot.PLAYERS) != 0) {
+			ParserUtilities.parseSnapshotPlayers(positions, torchStatus, aliveness, snapshot);
+		}
+		if ((mask & Snapshot.WINNER) != 0) {
+			blackhole.consume(ParserUtilities.parseSnapshotString(snapshot));
+		}
+		if ((mask & Snapshot.CHAT) != 0) {
+			blackhole.consume(ParserUtilities.parseSnapshotString(snapshot));
+		}
+		if ((mask & Snapshot.HEALTH) != 0) {
+			blackhole.consume(snapshot.getInt());
+		}
+		if ((mask & Snapshot.VISIBILITY) != 0) {
+			blackhole.consume(snapshot.get());
+		}
+		if ((mask & Snapshot.INVENTORY) != 0) {
+			blackhole.consume(ParserUtilities.parseSnapshotInventory(snapshot));
+		}
+		if ((mask & Snapshot.NOTIFICATION) != 0) {
+			blackhole.consume(ParserUtilities.parseSnapshotString(snapshot));
+		}
+		if ((mask & Snapshot.ACK) != 0) {
+			blackhole.consume(snapshot.getInt());
+		}
+		if ((mask & Snapshot.NEARBY) != 0) {
+			ParserUtilities.parseSnapshotPlayers(positions, torchStatus, aliveness, snapshot);
+		}
+		blackhole.consume(positions);
+	}
+
+	/**
+	 * Parse the header of the snapshot.
+	 *
+	 * @return --- what is parsed
+	 */
+	@Benchmark
+	public int parseSnapshotMask() {
+		snapshot.rewind();
+		return ParserUtilities.parseSnapshotMask(snapshot);
+	}
+
+	/**
+	 * Parse the time in the snapshot.
+	 *
+	 * @return --- what is parsed
+	 */
+	@Benchmark
+	public String parseSnapshotTime() {
+		snapshot.position(timeAt);
+		return ParserUtilities.parseSnapshotTime(snapshot);
+	}
+
+	/**
+	 * Parse the aliveness of all players in the snapshot.
+	 *
+	 * @return --- what is parsed
+	 */
+	@Benchmark
+	public Map<Integer, Position> parseSnapshotPlayers() {
+		snapshot.position(playersAt);
+		ParserUtilities.parseSnapshotPlayers(positions, torchStatus, aliveness, snapshot);
+		return positions;
+	}
+
+	/**
+	 * Parse the chat message in the snapshot.
+	 *
+	 * @return --- what is parsed
+	 */
+	@Benchmark
+	public String parseSnapshotString() {
+		snapshot.position(chatAt);
+		return ParserUtilities.parseSnapshotString(snapshot);
+	}
+
+	/**
+	 * Parse the inventory in the snapshot.
+	 *
+	 * @return --- what is parsed
+	 */
+	@Benchmark
+	public List<String> parseSnapshotInventory() {
+		snapshot.position(inventoryAt);
+		return ParserUtilities.parseSnapshotInventory(snapshot);
+	}
+
+	/**
+	 * Parse the map of the world.
+	 *
+	 * @return --- what is parsed
+	 */
+	@Benchmark
+	public Map<Integer, char[][]> parseMap() {
+		ParserUtilities.parseMap(maps, descriptions, mapStr);
+		return maps;
+	}
+
+	/**
+	 * Parse the avatars of all players.
+	 *
+	 * @return --- what is parsed
+	 */
+	@Benchmark
+	public Map<Integer, Avatar> parseAvatar() {
+		ParserUtilities.parseAvatar(avatars, avatarsStr);
+		return avatars;
+	}
+
+	/**
+	 * Parse the aliveness of all players.
+	 *
+	 * @return --- what is parsed
+	 */
+	@Benchmark
+	public Map<Integer, Boolean> parseAliveness() {
+		ParserUtilities.parseAliveness(aliveness, alivenessStr);
+		return aliveness;
+	}
+
+	/**
+	 * Parse the torch status of all players.
+	 *
+	 * @return --- what is parsed
+	 */
+	@Benchmark
+	public Map<Integer, Boolean> parseTorchStatus() {
+		ParserUtilities.parseTorchStatus(torchStatus, torchStatusStr);
+		return torchStatus;
+	}
+
+	/**
+	 * Parse the positions of all players.
+	 *
+	 * @return --- what is parsed
+	 */
+	@Benchmark
+	public Map<Integer, Position> parsePosition() {
+		ParserUtilities.parsePosition(positions, positionsStr);
+		return positions;
+	}
+
+	/**
+	 * Parse the inventory of a player.
+	 *
+	 * @return --- what is parsed
+	 */
+	@Benchmark
+	public List<String> parseInventory() {
+		return ParserUtilities.parseInventory(inventoryStr);
+	}
+
+}
@@ -0,0 +1,131 @@
+package benchmarks;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import server.SharedSnapshot;
+import server.SnapshotBuilder;
+import server.SnapshotEncoder;
+import server.game.Game;
+
+/**
+ * Benchmarks of building snapshots on the full world, i.e. what the game loop
+ * does on every broadcast tick, and what every Receptionist then does to send
+ * it. Every player turns before each broadcast, so that every snapshot carries
+ * the positions of all players in the area of interest of its player.
+ *
+ * @author Hector (Fang Zhao 300364061)
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms512m", "-Xmx512m" })
+public class SnapshotBenchmark {
+
+	/**
+	 * The number of players in game.
+	 */
+	@Param({ "2", "10" })
+	public int numPlayers;
+
+	/**
+	 * The game instance
+	 */
+	private Game game;
+
+	/**
+	 * The builder of the shared part of snapshots.
+	 */
+	private SnapshotBuilder builder;
+
+	/**
+	 * The sequence number of the last command applied from every player, so
+	 * that every snapshot carries an acknowledgement.
+	 */
+	private Map<Integer, Integer> processedSequences;
+
+	/**
+	 * The encoder of every player.
+	 */
+	private SnapshotEncoder[] encoders;
+
+	/**
+	 * Where snapshots are written to. The bytes are thrown away.
+	 */
+	private DataOutputStream output;
+
+	/**
+	 * Make the game, and join the players.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		game = BenchmarkWorlds.makeGame(BenchmarkWorlds.FULL_WORLD);
+		BenchmarkWorlds.joinPlayers(game, numPlayers);
+		builder = new SnapshotBuilder();
+		processedSequences = new HashMap<>();
+		encoders = new SnapshotEncoder[numPlayers];
+		for (int i = 0; i < numPlayers; i++) {
+			processedSequences.put(BenchmarkWorlds.FIRST_UID + i, 0);
+			encoders[i] = new SnapshotEncoder(BenchmarkWorlds.FIRST_UID + i);
+		}
+		output = new DataOutputStream(OutputStream.nullOutputStream());
+	}
+
+	/**
+	 * Build the part of snapshots shared by every client.
+	 *
+	 * @return --- the shared part of snapshots
+	 */
+	@Benchmark
+	public SharedSnapshot buildShared() {
+		turnAll();
+		return builder.build(game, null, processedSequences);
+	}
+
+	/**
+	 * Build the part of snapshots shared by every client, and then encode and
+	 * write the snapshot of every client.
+	 *
+	 * @return --- the shared part of snapshots
+	 * @throws IOException
+	 */
+	@Benchmark
+	public SharedSnapshot broadcast() throws IOException {
+		turnAll();
+		SharedSnapshot shared = builder.build(game, null, processedSequences);
+		for (SnapshotEncoder encoder : encoders) {
+			encoder.writeSnapshot(output, shared, null);
+		}
+		return shared;
+	}
+
+	/**
+	 * Every player turns left.
+	 */
+	private void turnAll() {
+		for (int i = 0; i < numPlayers; i++) {
+			game.playerTurnLeft(BenchmarkWorlds.FIRST_UID + i);
+		}
+	}
+
+}
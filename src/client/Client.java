@@ -6,13 +6,20 @@ import java.io.IOException;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.net.Socket;
-import java.util.Map;
-import java.util.Scanner;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
 
 import client.view.ClientUI;
 import client.view.GUI;
+import server.InputFrame;
 import server.Packet;
-import server.ServerMain;
+import server.Snapshot;
 
 /**
  * This class represents a single thread that handles communication with a
@@ -25,11 +32,6 @@ import server.ServerMain;
  */
 public class Client extends Thread {
 
-	/**
-	 * The period between every broadcast
-	 */
-	public static final int DEFAULT_UPDATE_CLK_PERIOD = 20;
-
 	/**
 	 * The pointer to the controller so we can let controller update renderer
 	 * and GUI.
@@ -52,15 +54,36 @@ public class Client extends Thread {
 	private DataInputStream input;
 
 	/**
-	 * This flag is used to indicate whether the user is ready to enter the
-	 * game.
+	 * The reader of snapshots, which reuses its buffer for every snapshot.
+	 */
+	private final SnapshotReader snapshotReader;
+
+	/**
+	 * This latch is released when the user is ready to enter the game, or
+	 * leaves the lobby.
 	 */
-	private boolean isUserReady;
+	private final CountDownLatch userReady;
 
 	/**
 	 * This flag is used to indicate whether the game is running
 	 */
-	private boolean isGameRunning;
+	private volatile boolean isGameRunning;
+
+	/**
+	 * Commands waiting to be sent, in the order of their sequence numbers.
+	 */
+	private final Queue<QueuedCommand> outgoing = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * The sequence number of the next command. It's guarded by this.
+	 */
+	private int nextSequence = 0;
+
+	/**
+	 * The thread writing commands to the server while the game is running, or
+	 * null if it hasn't started.
+	 */
+	private volatile Thread writer;
 
 	/**
 	 * Constructor. It also initialise the socket input and output.
@@ -73,8 +96,9 @@ public class Client extends Thread {
 	public Client(Socket socket, ClientUI controller) {
 		this.socket = socket;
 		this.controller = controller;
-		isUserReady = false;
+		userReady = new CountDownLatch(1);
 		isGameRunning = false;
+		snapshotReader = new SnapshotReader();
 
 		// initialise the socket input and output
 		try {
@@ -87,57 +111,107 @@ public class Client extends Thread {
 	}
 
 	/**
-	 * This method will send a packet to server.
+	 * This method will send a packet to server. It's queued, and sent in the
+	 * next frame of commands, so it returns straight away.
 	 *
 	 * @param packet
 	 *            --- the packet need to send
+	 * @return --- the sequence number of the command
 	 */
-	public void send(Packet packet) {
-		try {
-			output.writeByte(packet.toByte());
-			output.flush();
-		} catch (IOException e) {
-			GUI.showMsgPane("Error", "I/O exceptions, cannot send packet to server.");
-			e.printStackTrace();
-		}
+	public int send(Packet packet) {
+		return enqueue(packet, -1, null);
 	}
 
 	/**
 	 * This method will send a packet to server, with an integer followed. This
-	 * integer is usually used as a index for special commands.
+	 * integer is usually used as a index for special commands. It's queued,
+	 * and sent in the next frame of commands, so it returns straight away.
 	 *
 	 * @param packet
 	 *            --- the packet need to send
 	 * @param i
 	 *            --- the index
+	 * @return --- the sequence number of the command
 	 */
-	public void sendWithIndex(Packet packet, int i) {
-		try {
-			output.writeByte(packet.toByte());
-			output.writeInt(i);
-			output.flush();
-		} catch (IOException e) {
-			GUI.showMsgPane("Error", "I/O exceptions, cannot send packet to server.");
-			e.printStackTrace();
-		}
+	public int sendWithIndex(Packet packet, int i) {
+		return enqueue(packet, i, null);
 	}
 
 	/**
 	 * This method will send a packet to server, with an String followed. This
-	 * string is usually used as extra message for special commands.
+	 * string is usually used as extra message for special commands. It's
+	 * queued, and sent in the next frame of commands, so it returns straight
+	 * away.
 	 *
 	 * @param packet
 	 *            --- the packet need to send
 	 * @param str
 	 *            --- extra message
+	 * @return --- the sequence number of the command
+	 */
+	public int sendWithString(Packet packet, String str) {
+		return enqueue(packet, -1, str);
+	}
+
+	/**
+	 * Give a command the next sequence number, queue it, and wake up the
+	 * writing thread.
+	 *
+	 * @param packet
+	 * @param index
+	 * @param message
+	 * @return --- the sequence number of the command
 	 */
-	public void sendWithString(Packet packet, String str) {
+	private synchronized int enqueue(Packet packet, int index, String message) {
+		int sequence = nextSequence++;
+		outgoing.offer(new QueuedCommand(sequence, packet, index, message));
+		Thread w = writer;
+		if (w != null) {
+			LockSupport.unpark(w);
+		}
+		return sequence;
+	}
+
+	/**
+	 * Write every command queued as a frame, and flush it, until the game
+	 * stops. Commands queued while a frame is being written go in the next
+	 * frame, so a burst of commands is flushed once. The format of frames is
+	 * described in {@link server.InputFrame InputFrame}.
+	 */
+	private void writeCommands() {
+		List<QueuedCommand> frame = new ArrayList<>();
 		try {
-			output.writeByte(packet.toByte());
-			output.writeUTF(str);
-			output.flush();
+			while (isGameRunning) {
+				QueuedCommand command;
+				while (frame.size() < InputFrame.MAX_COMMANDS && (command = outgoing.poll()) != null) {
+					frame.add(command);
+				}
+				if (frame.isEmpty()) {
+					// nothing to send, wait for the next command.
+					LockSupport.park(this);
+					continue;
+				}
+
+				output.writeInt(frame.get(0).sequence);
+				output.writeByte(frame.size());
+				for (QueuedCommand c : frame) {
+					output.writeByte(c.packet.toByte());
+					if (c.packet.hasIndex()) {
+						output.writeInt(c.index);
+					}
+					if (c.packet.hasString()) {
+						output.writeUTF(c.message);
+					}
+				}
+				output.flush();
+				frame.clear();
+			}
 		} catch (IOException e) {
-			GUI.showMsgPane("Error", "I/O exceptions, " + e.toString());
+			if (socket.isClosed()) {
+				// we closed it ourselves.
+				return;
+			}
+			GUI.showMsgPane("Error", "I/O exceptions, cannot send packet to server.");
 			e.printStackTrace();
 		}
 	}
@@ -148,14 +222,22 @@ public class Client extends Thread {
 	 * @param isUserReady
 	 */
 	public void setUserReady(boolean isUserReady) {
-		this.isUserReady = isUserReady;
+		if (isUserReady) {
+			userReady.countDown();
+		}
 	}
 
 	/**
 	 * This is a closing method, all cleaning process is done here.
 	 */
 	public void closeSocket() {
-		// close the socket.
+		// close the socket, and let the client thread out of the lobby.
+		isGameRunning = false;
+		userReady.countDown();
+		Thread w = writer;
+		if (w != null) {
+			LockSupport.unpark(w);
+		}
 		try {
 			socket.close();
 		} catch (IOException e) {
@@ -197,63 +279,47 @@ public class Client extends Thread {
 			String avatars = input.readUTF();
 			controller.parseAvatars(avatars);
 
-			// don't start the game until server tell us to start.
-			// (when all clients are ready).
-			while (true) {
-				if (isUserReady) {
-					output.writeByte(Packet.Ready.toByte());
-					output.flush();
-					break;
-				}
-
-				try {
-					Thread.sleep(ServerMain.DEFAULT_BROADCAST_CLK_PERIOD);
-				} catch (InterruptedException e) {
-					// Should never happen
-				}
+			// don't tell the server ready until the user is.
+			try {
+				userReady.await();
+			} catch (InterruptedException e) {
+				// Should never happen
 			}
+			if (socket.isClosed()) {
+				// the user left the lobby.
+				return;
+			}
+			output.writeByte(Packet.Ready.toByte());
+			output.flush();
 
-			// wait until the server tells us ready to begin
-			while (true) {
-				if (input.available() != 0) {
-
-					Packet packet = Packet.fromByte(input.readByte());
-					if (packet == Packet.Ready) {
-						isGameRunning = true;
-					}
-				}
-
-				if (isGameRunning && isUserReady) {
-					break;
-				}
-
-				try {
-					Thread.sleep(ServerMain.DEFAULT_BROADCAST_CLK_PERIOD);
-				} catch (InterruptedException e) {
-					// Should never happen
-				}
+			// wait until the server tells us ready to begin (when all clients
+			// are ready).
+			while (Packet.fromByte(input.readByte()) != Packet.Ready) {
+				// nothing else is expected in lobby
 			}
+			isGameRunning = true;
+
+			// commands are written on their own thread from now on.
+			Thread w = new Thread(this::writeCommands, getName() + "-writer");
+			w.setDaemon(true);
+			writer = w;
+			w.start();
 
 			// now start rendering the game interface
 			controller.startGame();
 
-			// last, let the client constantly get updated from server.
+			// last, block on the stream, and apply every snapshot as soon as it
+			// arrives. Every change is published to the GUI as a new version
+			// of state, which is redrawn unless it falls behind.
 			while (isGameRunning) {
-				if (input.available() > 0) {
-					incoming = input.readUTF();
-					stringToGame(incoming);
-
-					// ======= [TESTING] ==========
-					// printTestString(incoming);
-				}
-
-				try {
-					Thread.sleep(DEFAULT_UPDATE_CLK_PERIOD);
-				} catch (InterruptedException e) {
-					// Should never happen
-				}
+				snapshotToGame(snapshotReader.read(input));
+				controller.publishState();
 			}
 		} catch (IOException e) {
+			if (socket.isClosed()) {
+				// we closed it ourselves.
+				return;
+			}
 			GUI.showMsgPane("Error", "I/O Error, cannot receive packet to server.");
 			e.printStackTrace();
 		}
@@ -261,194 +327,126 @@ public class Client extends Thread {
 	}
 
 	/**
-	 * This method generates a String representation of the game status. The
-	 * format of it is:
-	 *
-	 * <p>
-	 * <li>Time
-	 * <li>Health
-	 * <li>Visibility
-	 * <li>Positions of all players
-	 * <li>The inventory of the player in this client
-	 * <li>The status of player holding torch or not.
-	 * <li>Is there a winner?
-	 * <li>Chat message if there is any.
+	 * This method applies a snapshot of the game status received from server.
+	 * A snapshot only carries the fields changed since the previous one, so
+	 * whatever is not carried stays as it is. The format of it is described in
+	 * {@link server.Snapshot Snapshot}, and each field is decoded by the
+	 * <i>parseSnapshot*</i> methods in {@link client.ParserUtilities
+	 * ParserUtilities}.
 	 *
-	 * <p>
-	 * Each one of them is separated by a new line character '\n'. The format of
-	 * each part should refer to
-	 * {@link client.ParserUtilities #parseTime(String) parseTime},
-	 * {@link client.ParserUtilities #parsePosition(java.util.Map, String)
-	 * parsePosition}, {@link client.ParserUtilities #parseInventory(String)
-	 * parseInventory}, and
-	 * {@link client.ParserUtilities #parseTorchStatus(Map, String)
-	 * parseTorchStatus}..
-	 *
-	 * @return --- a String representation of the game status
+	 * @param buffer
+	 *            --- a buffer holding a snapshot received from server
 	 */
-	private void stringToGame(String gameStr) {
-		Scanner s = new Scanner(gameStr);
-		String line;
-
-		// 1. time
-		if (s.hasNextLine()) {
-			line = s.nextLine();
-			controller.parseTime(line);
-		} else {
-			System.out.println("Data incomplete, no time received.");
-			// Data is incomplete, ignore.
-			s.close();
-			return;
-		}
-
-		// 2. health
-		if (s.hasNextLine()) {
-			line = s.nextLine();
-			try {
-				controller.parseHealth(Integer.valueOf(line));
-			} catch (NumberFormatException e) {
+	private void snapshotToGame(ByteBuffer buffer) {
+		try {
+			int mask = ParserUtilities.parseSnapshotMask(buffer);
+			if (mask < 0) {
 				// Data is incorrect, ignore.
-				System.out.println("Data incorrect, health is not integer.");
-				s.close();
 				return;
 			}
-		} else {
-			System.out.println("Data incomplete, no health received.");
-			// Data is incomplete, ignore.
-			s.close();
-			return;
-		}
 
-		// 3. visibility
-		if (s.hasNextLine()) {
-			line = s.nextLine();
-			try {
-				controller.parseVisibility(Integer.valueOf(line));
-			} catch (NumberFormatException e) {
-				// Data is incorrect, ignore.
-				System.out.println("Data incorrect, visibility is not integer.");
-				s.close();
-				return;
+			// ======= shared by every client =======
+
+			// 1. time
+			if ((mask & Snapshot.TIME) != 0) {
+				controller.parseTime(ParserUtilities.parseSnapshotTime(buffer));
 			}
-		} else {
-			System.out.println("Data incomplete, no visibility received.");
-			// Data is incomplete, ignore.
-			s.close();
-			return;
-		}
 
-		// 4. all players' positions
-		if (s.hasNextLine()) {
-			line = s.nextLine();
-			controller.parsePosition(line);
-		} else {
-			System.out.println("Data incomplete, no player's positions received.");
-			// Data is incomplete, ignore.
-			s.close();
-			return;
-		}
+			// 2. aliveness of all players
+			if ((mask & Snapshot.PLAYERS) != 0) {
+				controller.parsePlayers(snapshotReader);
+			}
 
-		// 5. inventory String
-		if (s.hasNextLine()) {
-			line = s.nextLine();
-			controller.parseInventory(line);
-		} else {
-			System.out.println("Data incomplete, no inventory received.");
-			// Data is incomplete, ignore.
-			s.close();
-			return;
-		}
+			// 3. win/loose
+			if ((mask & Snapshot.WINNER) != 0) {
+				String winnerName = ParserUtilities.parseSnapshotString(buffer);
+				isGameRunning = false;
+				controller.gameOver("We have a winner", "The winner is " + winnerName);
+			}
 
-		// 6. holding torch or not for all players.
-		if (s.hasNextLine()) {
-			line = s.nextLine();
-			controller.parseTorchStatus(line);
-		} else {
-			System.out.println("Data incomplete, no torch status received.");
-			// Data is incomplete, ignore.
-			s.close();
-			return;
-		}
+			// 4. chat message
+			if ((mask & Snapshot.CHAT) != 0) {
+				controller.parseChatMessage(ParserUtilities.parseSnapshotString(buffer));
+			}
 
-		// 7. alive or not for all players
-		if (s.hasNextLine()) {
-			line = s.nextLine();
-			controller.parseAliveStatus(line);
-		} else {
-			System.out.println("Data incomplete, no status for player's aliveness received.");
-			// Data is incomplete, ignore.
-			s.close();
-			return;
-		}
+			// ======= private to this client =======
 
-		// 8. win/loose
-		if (s.hasNextLine()) {
-			line = s.nextLine();
-			String[] strs = line.split(",");
-			boolean hasWinner = Integer.valueOf(strs[0]) == 1 ? true : false;
+			// 5. health
+			if ((mask & Snapshot.HEALTH) != 0) {
+				controller.parseHealth(buffer.getInt());
+			}
 
-			if (hasWinner) {
-				String winnerName = strs[1];
-				isGameRunning = false;
-				controller.gameOver("We have a winner", "The winner is " + winnerName);
+			// 6. visibility
+			if ((mask & Snapshot.VISIBILITY) != 0) {
+				controller.parseVisibility(buffer.get());
 			}
 
-		} else {
-			System.out.println("Data incomplete, no win/loose status received.");
-			// Data is incomplete, ignore.
-			s.close();
-			return;
-		}
+			// 7. inventory
+			if ((mask & Snapshot.INVENTORY) != 0) {
+				controller.parseInventory(buffer);
+			}
 
-		// ======= optional message broadcast =======
+			// 8. notification
+			if ((mask & Snapshot.NOTIFICATION) != 0) {
+				controller.parseNotificationMsg(ParserUtilities.parseSnapshotString(buffer));
+			}
 
-		while (s.hasNextLine()) {
-			line = s.nextLine();
+			// 9. the last command applied by server
+			if ((mask & Snapshot.ACK) != 0) {
+				controller.parseAck(buffer.getInt());
+			}
 
-			if (line.startsWith("M")) {
-				// 9. chat message
-				controller.parseChatMessage(line.substring(1));
-			} else if (line.startsWith("N")) {
-				// 10. notification
-				controller.parseNotificationMsg(line.substring(1));
+			// 10. positions and torch status of players nearby
+			if ((mask & Snapshot.NEARBY) != 0) {
+				controller.parsePlayers(snapshotReader);
 			}
+		} catch (BufferUnderflowException e) {
+			// Data is incomplete, ignore.
+			System.out.println("Data incomplete, snapshot is shorter than expected.");
 		}
-
-		// close the scanner
-		s.close();
 	}
 
 	/**
-	 * A helper method for testing
-	 *
-	 * @param incoming
-	 *            --- the string received from server
+	 * A command waiting to be sent.
 	 */
-	@SuppressWarnings("unused")
-	private void printTestString(String incoming) {
-		Scanner sc = new Scanner(incoming);
-
-		System.out.println("Time: " + sc.nextLine());
-		System.out.println("Health: " + sc.nextLine());
-		System.out.println("Visibility: " + sc.nextLine());
-		System.out.println("Players: " + sc.nextLine());
-		System.out.println("Inventory: " + sc.nextLine());
-		System.out.println("Torch status: " + sc.nextLine());
-		System.out.println("Aliveness status: " + sc.nextLine());
-		System.out.println("Win/loose status: " + sc.nextLine());
-		System.out.println("============Optional==============");
-
-		while (sc.hasNextLine()) {
-			String line = sc.nextLine();
-			if (sc.nextLine().startsWith("M")) {
-				System.out.println("Chat msg: " + sc.nextLine());
-			} else if (line.startsWith("N")) {
-				System.out.println("notification: " + sc.nextLine());
-			}
-
+	private static class QueuedCommand {
+
+		/**
+		 * The sequence number.
+		 */
+		final int sequence;
+
+		/**
+		 * The packet
+		 */
+		final Packet packet;
+
+		/**
+		 * The index following the packet, or -1 if the packet doesn't carry
+		 * one.
+		 */
+		final int index;
+
+		/**
+		 * The message following the packet, or null if the packet doesn't
+		 * carry one.
+		 */
+		final String message;
+
+		/**
+		 * Constructor
+		 *
+		 * @param sequence
+		 * @param packet
+		 * @param index
+		 * @param message
+		 */
+		QueuedCommand(int sequence, Packet packet, int index, String message) {
+			this.sequence = sequence;
+			this.packet = packet;
+			this.index = index;
+			this.message = message;
 		}
-
-		sc.close();
 	}
 
 }
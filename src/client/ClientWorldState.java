@@ -0,0 +1,214 @@
+package client;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import server.game.player.Position;
+
+/**
+ * This class is an immutable version of the game status on client side. The
+ * network thread builds a new one whenever a snapshot changes anything, and
+ * publishes it for the FX thread, which then draws every part of the GUI from
+ * the same version. Parts that haven't changed are shared with the previous
+ * version, so building a new one only copies what has changed.
+ *
+ * @author Hector (Fang Zhao 300364061)
+ *
+ */
+public class ClientWorldState {
+
+	/**
+	 * The state before the first snapshot arrives.
+	 */
+	public static final ClientWorldState EMPTY = new ClientWorldState(0, 0, Collections.emptyMap(),
+			Collections.emptyMap(), Collections.emptyMap(), Collections.emptyList(), 0, 0, 0, "", -1);
+
+	/**
+	 * The version number, which increases by one every time a new state is
+	 * built.
+	 */
+	private final long version;
+
+	/**
+	 * When the snapshot which made this version was received, as given by
+	 * <i>System.nanoTime()</i>.
+	 */
+	private final long receivedAt;
+
+	/**
+	 * Every player's position, where the key is player Id.
+	 */
+	private final Map<Integer, Position> positions;
+
+	/**
+	 * Every player's status of holding torch or not, where the key is player
+	 * Id.
+	 */
+	private final Map<Integer, Boolean> torchStatus;
+
+	/**
+	 * Every player's status of aliveness, where the key is player Id.
+	 */
+	private final Map<Integer, Boolean> aliveness;
+
+	/**
+	 * This player's inventory, with the same format as in
+	 * {@link client.ParserUtilities#parseInventory(String)
+	 * ParserUtilities.parseInventory()}.
+	 */
+	private final List<String> inventory;
+
+	/**
+	 * The health left.
+	 */
+	private final int health;
+
+	/**
+	 * The visibility.
+	 */
+	private final int visibility;
+
+	/**
+	 * The hour of current time.
+	 */
+	private final int hourOfTime;
+
+	/**
+	 * The world time, with format "hh:mm:ss".
+	 */
+	private final String time;
+
+	/**
+	 * The sequence number of the last command from this client applied by
+	 * the server, or -1 if none has been.
+	 */
+	private final int ackedSequence;
+
+	/**
+	 * Constructor. The maps and the list are kept as they are, so they must
+	 * be unmodifiable, and not shared with anything that changes them.
+	 *
+	 * @param version
+	 *            --- the version number
+	 * @param receivedAt
+	 *            --- when the snapshot was received, as given by
+	 *            <i>System.nanoTime()</i>
+	 * @param positions
+	 *            --- every player's position
+	 * @param torchStatus
+	 *            --- every player's status of holding torch or not
+	 * @param aliveness
+	 *            --- every player's status of aliveness
+	 * @param inventory
+	 *            --- this player's inventory
+	 * @param health
+	 *            --- the health left
+	 * @param visibility
+	 *            --- the visibility
+	 * @param hourOfTime
+	 *            --- the hour of current time
+	 * @param time
+	 *            --- the world time
+	 * @param ackedSequence
+	 *            --- the sequence number of the last command applied by the
+	 *            server
+	 */
+	public ClientWorldState(long version, long receivedAt, Map<Integer, Position> positions,
+			Map<Integer, Boolean> torchStatus, Map<Integer, Boolean> aliveness, List<String> inventory, int health,
+			int visibility, int hourOfTime, String time, int ackedSequence) {
+		this.version = version;
+		this.receivedAt = receivedAt;
+		this.positions = positions;
+		this.torchStatus = torchStatus;
+		this.aliveness = aliveness;
+		this.inventory = inventory;
+		this.health = health;
+		this.visibility = visibility;
+		this.hourOfTime = hourOfTime;
+		this.time = time;
+		this.ackedSequence = ackedSequence;
+	}
+
+	/**
+	 * @return --- the version number
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return --- when the snapshot which made this version was received, as
+	 *         given by <i>System.nanoTime()</i>.
+	 */
+	public long getReceivedAt() {
+		return receivedAt;
+	}
+
+	/**
+	 * @return --- every player's position, where the key is player Id.
+	 */
+	public Map<Integer, Position> getPositions() {
+		return positions;
+	}
+
+	/**
+	 * @return --- every player's status of holding torch or not, where the key
+	 *         is player Id.
+	 */
+	public Map<Integer, Boolean> getTorchStatus() {
+		return torchStatus;
+	}
+
+	/**
+	 * @return --- every player's status of aliveness, where the key is player
+	 *         Id.
+	 */
+	public Map<Integer, Boolean> getAliveness() {
+		return aliveness;
+	}
+
+	/**
+	 * @return --- this player's inventory
+	 */
+	public List<String> getInventory() {
+		return inventory;
+	}
+
+	/**
+	 * @return --- the health left
+	 */
+	public int getHealth() {
+		return health;
+	}
+
+	/**
+	 * @return --- the visibility
+	 */
+	public int getVisibility() {
+		return visibility;
+	}
+
+	/**
+	 * @return --- the hour of current time
+	 */
+	public int getHourOfTime() {
+		return hourOfTime;
+	}
+
+	/**
+	 * @return --- the world time, with format "hh:mm:ss".
+	 */
+	public String getTime() {
+		return time;
+	}
+
+	/**
+	 * @return --- the sequence number of the last command from this client
+	 *         applied by the server, or -1 if none has been.
+	 */
+	public int getAckedSequence() {
+		return ackedSequence;
+	}
+
+}
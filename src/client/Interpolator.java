@@ -0,0 +1,242 @@
+package client;
+
+import java.util.Collections;
+import java.util.Map;
+
+import server.game.player.Direction;
+import server.game.player.Position;
+
+/**
+ * This class keeps the last few versions of state received from the server,
+ * with when they were received, and works out where other players are shown
+ * in between them. Frames are drawn a short delay behind the latest snapshot,
+ * so that there are usually two versions around the time drawn, and players
+ * are shown sliding from where they were in the older one to where they are
+ * in the newer one, instead of jumping a tile whenever a snapshot arrives.
+ *
+ * <p>
+ * Only a step to a neighbouring tile in the same area is slid. Anything else,
+ * e.g. going through a door, is shown straight away. A player facing another
+ * direction turns half way through.
+ *
+ * <p>
+ * Whether another player is holding a torch or is alive is taken from the
+ * same version as where he is shown, so that a player who has gone from the
+ * latest version, e.g. went through a door or out of sight, is still drawn in
+ * full until the time drawn catches up.
+ *
+ * <p>
+ * This class is not thread-safe, it's only used on the JavaFX application
+ * thread.
+ *
+ * @author Hector (Fang Zhao 300364061)
+ *
+ */
+public class Interpolator {
+
+	/**
+	 * How far behind the latest snapshot frames are drawn, in nanoseconds.
+	 * It's two broadcast periods of the server, so that a snapshot coming a
+	 * bit late doesn't stop players half way.
+	 */
+	public static final long DELAY = 100_000_000L;
+
+	/**
+	 * The number of versions kept.
+	 */
+	private static final int CAPACITY = 8;
+
+	/**
+	 * The versions kept, as a ring from the oldest to the newest.
+	 */
+	private final ClientWorldState[] states = new ClientWorldState[CAPACITY];
+
+	/**
+	 * Where the oldest version is in the ring, and the number of versions.
+	 */
+	private int head, count;
+
+	/**
+	 * The positions before and after the time sampled last.
+	 */
+	private Map<Integer, Position> from = Collections.emptyMap(), to = Collections.emptyMap();
+
+	/**
+	 * The version <i>to</i> is from, or null if there is none.
+	 */
+	private ClientWorldState target;
+
+	/**
+	 * How far the time sampled last is from <i>from</i> to <i>to</i>, from 0
+	 * to 1.
+	 */
+	private double alpha = 1;
+
+	/**
+	 * Keep a version, if it's newer than the newest kept. The oldest is
+	 * dropped if there are too many.
+	 *
+	 * @param state
+	 *            --- the latest state
+	 */
+	public void add(ClientWorldState state) {
+		if (count > 0 && newest().getVersion() >= state.getVersion()) {
+			return;
+		}
+		if (count == CAPACITY) {
+			states[head] = null;
+			head = (head + 1) % CAPACITY;
+			count--;
+		}
+		states[(head + count) % CAPACITY] = state;
+		count++;
+	}
+
+	/**
+	 * Work out the positions around the time drawn, i.e. the given time less
+	 * {@link #DELAY}. Versions too old to be needed again are dropped.
+	 *
+	 * @param now
+	 *            --- the time now, in the same time base as
+	 *            <i>System.nanoTime()</i>
+	 * @return --- true if players are still sliding at this time, i.e. frames
+	 *         need to be drawn even if nothing new arrives.
+	 */
+	public boolean sample(long now) {
+		if (count == 0) {
+			from = to = Collections.emptyMap();
+			target = null;
+			alpha = 1;
+			return false;
+		}
+
+		long time = now - DELAY;
+		// drop the versions older than the last one before the time drawn
+		while (count > 1 && get(1).getReceivedAt() <= time) {
+			states[head] = null;
+			head = (head + 1) % CAPACITY;
+			count--;
+		}
+
+		ClientWorldState older = get(0);
+		if (count == 1 || older.getReceivedAt() >= time) {
+			// nothing to slide between
+			from = to = older.getPositions();
+			target = older;
+			alpha = 1;
+			return count > 1;
+		}
+
+		ClientWorldState newer = get(1);
+		from = older.getPositions();
+		to = newer.getPositions();
+		target = newer;
+		alpha = (double) (time - older.getReceivedAt()) / (newer.getReceivedAt() - older.getReceivedAt());
+		return true;
+	}
+
+	/**
+	 * @return --- the positions after the time sampled, i.e. where players are
+	 *         heading to. A player is shown on the tile of this position.
+	 */
+	public Map<Integer, Position> getTo() {
+		return to;
+	}
+
+	/**
+	 * Get how far a player is from the tile before to the tile after the time
+	 * sampled.
+	 *
+	 * @param uid
+	 *            --- the player id
+	 * @return --- the position the player is sliding from, or null if the
+	 *         player isn't sliding, e.g. standing still, just joined, or went
+	 *         through a door.
+	 */
+	public Position getSlidingFrom(Integer uid) {
+		Position before = from.get(uid);
+		Position after = to.get(uid);
+		if (alpha >= 1 || before == null || after == null || before.areaId != after.areaId
+				|| Math.abs(before.x - after.x) + Math.abs(before.y - after.y) != 1) {
+			return null;
+		}
+		return before;
+	}
+
+	/**
+	 * Get the direction a player is shown facing at the time sampled.
+	 *
+	 * @param uid
+	 *            --- the player id
+	 * @return --- the direction before the time sampled if it's less than half
+	 *         way, otherwise the direction after it.
+	 */
+	public Direction getFacing(Integer uid) {
+		Position before = from.get(uid);
+		Position after = to.get(uid);
+		if (alpha < 0.5 && before != null && after != null && before.areaId == after.areaId) {
+			return before.getDirection();
+		}
+		return after == null ? null : after.getDirection();
+	}
+
+	/**
+	 * Is a player holding a torch, in the same version as <i>to</i>?
+	 *
+	 * @param uid
+	 *            --- the player id
+	 * @return --- true if he is, or false if he isn't, or it's not known.
+	 */
+	public boolean isHoldingTorch(Integer uid) {
+		return target != null && Boolean.TRUE.equals(target.getTorchStatus().get(uid));
+	}
+
+	/**
+	 * Is a player alive, in the same version as <i>to</i>?
+	 *
+	 * @param uid
+	 *            --- the player id
+	 * @return --- false if he is dead, or true if he isn't, or it's not known.
+	 */
+	public boolean isAlive(Integer uid) {
+		return target == null || !Boolean.FALSE.equals(target.getAliveness().get(uid));
+	}
+
+	/**
+	 * @return --- how far the time sampled is from the version before to the
+	 *         version after it, from 0 to 1.
+	 */
+	public double getAlpha() {
+		return alpha;
+	}
+
+	/**
+	 * Linear interpolation.
+	 *
+	 * @param start
+	 *            --- the value at 0
+	 * @param end
+	 *            --- the value at 1
+	 * @return --- the value at the time sampled
+	 */
+	public double lerp(double start, double end) {
+		return start + (end - start) * alpha;
+	}
+
+	/**
+	 * @param i
+	 *            --- 0 for the oldest
+	 * @return --- the i-th oldest version kept
+	 */
+	private ClientWorldState get(int i) {
+		return states[(head + i) % CAPACITY];
+	}
+
+	/**
+	 * @return --- the newest version kept
+	 */
+	private ClientWorldState newest() {
+		return get(count - 1);
+	}
+
+}
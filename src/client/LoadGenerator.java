@@ -0,0 +1,722 @@
+package client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import server.Packet;
+import server.ServerMain;
+import server.Snapshot;
+import server.game.player.Avatar;
+import server.game.player.Position;
+
+/**
+ * This class is a headless load generator. It connects a number of bots to a
+ * running server over real sockets, and each bot goes through the same
+ * handshake as {@link client.Client Client}, then keeps sending a scripted
+ * stream of packets at a fixed rate while reading every snapshot. At the end
+ * it reports the throughput, the latency and the errors seen.
+ *
+ * <p>
+ * The latency is measured from sending a turn to receiving the first snapshot
+ * that shows the bot facing the new direction, which covers the whole path
+ * through the server: decoding, the game loop, and the broadcast. A bot only
+ * sends a turn when it has seen the previous one, so every turn is a probe.
+ *
+ * <p>
+ * Usage: <i>java client.LoadGenerator [bots] [seconds] [actions per second]
+ * [chats per second] [host] [port]</i>. The server must be started for the
+ * same number of players.
+ *
+ * @author Hector (Fang Zhao 300364061)
+ *
+ */
+public class LoadGenerator {
+
+	/**
+	 * The default number of bots.
+	 */
+	public static final int DEFAULT_BOTS = 2;
+
+	/**
+	 * The default duration of the test after every bot is in game, in seconds.
+	 */
+	public static final int DEFAULT_SECONDS = 30;
+
+	/**
+	 * The default number of actions each bot sends per second.
+	 */
+	public static final double DEFAULT_ACTION_RATE = 10;
+
+	/**
+	 * The default number of chat messages each bot sends per second.
+	 */
+	public static final double DEFAULT_CHAT_RATE = 0.2;
+
+	/**
+	 * How long to wait for every bot to get into game, in seconds.
+	 */
+	private static final int HANDSHAKE_TIMEOUT = 60;
+
+	/**
+	 * How long a turn can go unseen before it's counted as lost, in
+	 * milliseconds.
+	 */
+	private static final int PROBE_TIMEOUT = 5000;
+
+	/**
+	 * The packets each bot sends in turn, over and over.
+	 */
+	private static final Packet[] SCRIPT = { Packet.Forward, Packet.TurnLeft, Packet.Right, Packet.Forward,
+			Packet.Backward, Packet.TurnRight, Packet.Left, Packet.Transit, Packet.UseItem };
+
+	/**
+	 * The host of the server.
+	 */
+	private final String host;
+
+	/**
+	 * The port of the server.
+	 */
+	private final int port;
+
+	/**
+	 * The number of bots.
+	 */
+	private final int numBots;
+
+	/**
+	 * The duration of the test after every bot is in game, in seconds.
+	 */
+	private final int seconds;
+
+	/**
+	 * The number of actions each bot sends per second.
+	 */
+	private final double actionRate;
+
+	/**
+	 * The number of chat messages each bot sends per second.
+	 */
+	private final double chatRate;
+
+	/**
+	 * Counts down as each bot gets into game.
+	 */
+	private final CountDownLatch inGame;
+
+	/**
+	 * The number of bots that failed to connect or to finish the handshake.
+	 */
+	private final AtomicInteger handshakeErrors = new AtomicInteger();
+
+	/**
+	 * The number of I/O errors after the handshake.
+	 */
+	private final AtomicInteger ioErrors = new AtomicInteger();
+
+	/**
+	 * The number of snapshots that couldn't be decoded.
+	 */
+	private final AtomicInteger malformedSnapshots = new AtomicInteger();
+
+	/**
+	 * The number of turns never seen in a snapshot.
+	 */
+	private final AtomicInteger lostProbes = new AtomicInteger();
+
+	/**
+	 * The number of packets sent by all bots.
+	 */
+	private final AtomicLong packetsSent = new AtomicLong();
+
+	/**
+	 * A flag indicating whether the test is still running.
+	 */
+	private volatile boolean isRunning = true;
+
+	/**
+	 * Constructor
+	 *
+	 * @param host
+	 *            --- the host of the server
+	 * @param port
+	 *            --- the port of the server
+	 * @param numBots
+	 *            --- the number of bots
+	 * @param seconds
+	 *            --- the duration of the test after every bot is in game
+	 * @param actionRate
+	 *            --- the number of actions each bot sends per second
+	 * @param chatRate
+	 *            --- the number of chat messages each bot sends per second
+	 */
+	public LoadGenerator(String host, int port, int numBots, int seconds, double actionRate, double chatRate) {
+		this.host = host;
+		this.port = port;
+		this.numBots = numBots;
+		this.seconds = seconds;
+		this.actionRate = actionRate;
+		this.chatRate = chatRate;
+		this.inGame = new CountDownLatch(numBots);
+	}
+
+	/**
+	 * Run the test: connect every bot, let them play for the given duration,
+	 * disconnect them, and print the report.
+	 */
+	public void run() {
+		System.out.println("[Log] Load test: " + numBots + " bots on " + host + ":" + port + ", " + seconds + " s, "
+				+ actionRate + " actions/s and " + chatRate + " chats/s per bot.");
+
+		List<Bot> bots = new ArrayList<>();
+		for (int i = 0; i < numBots; i++) {
+			Bot bot = new Bot(i);
+			bots.add(bot);
+			bot.start();
+		}
+
+		// the server won't start until every player is ready.
+		try {
+			if (!inGame.await(HANDSHAKE_TIMEOUT, TimeUnit.SECONDS)) {
+				System.out.println("[Log] Not every bot got into game in " + HANDSHAKE_TIMEOUT + " s.");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		// every bot sends on its own schedule, spread over the period.
+		ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(Math.min(4, numBots));
+		long actionPeriod = periodNanos(actionRate);
+		long chatPeriod = periodNanos(chatRate);
+		for (Bot bot : bots) {
+			if (!bot.isInGame) {
+				continue;
+			}
+			if (actionPeriod > 0) {
+				long offset = actionPeriod * bot.index / numBots;
+				scheduler.scheduleAtFixedRate(bot::act, offset, actionPeriod, TimeUnit.NANOSECONDS);
+			}
+			if (chatPeriod > 0) {
+				long offset = chatPeriod * bot.index / numBots;
+				scheduler.scheduleAtFixedRate(bot::chat, offset, chatPeriod, TimeUnit.NANOSECONDS);
+			}
+		}
+
+		long start = System.nanoTime();
+		try {
+			Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		double elapsed = (System.nanoTime() - start) / 1e9;
+
+		// stop sending, and hang up.
+		isRunning = false;
+		scheduler.shutdownNow();
+		for (Bot bot : bots) {
+			bot.close();
+		}
+		for (Bot bot : bots) {
+			try {
+				bot.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		report(bots, elapsed);
+	}
+
+	/**
+	 * Print the throughput, latency and errors of the test.
+	 *
+	 * @param bots
+	 *            --- every bot
+	 * @param elapsed
+	 *            --- how long the bots have been playing, in seconds
+	 */
+	private void report(List<Bot> bots, double elapsed) {
+		Samples latencies = new Samples();
+		Samples intervals = new Samples();
+		long snapshots = 0;
+		long bytes = 0;
+		for (Bot bot : bots) {
+			latencies.addAll(bot.latencies);
+			intervals.addAll(bot.intervals);
+			snapshots += bot.snapshotsReceived;
+			bytes += bot.bytesReceived;
+		}
+
+		System.out.println(String.format("[Log] Sent %d packets (%.1f/s), received %d snapshots (%.1f/s, %.1f KB/s)",
+				packetsSent.get(), packetsSent.get() / elapsed, snapshots, snapshots / elapsed,
+				bytes / elapsed / 1024));
+		System.out.println("[Log] Turn to snapshot latency, ms: " + latencies.summary());
+		System.out.println("[Log] Interval between snapshots, ms: " + intervals.summary());
+		System.out.println("[Log] Errors: handshake " + handshakeErrors.get() + ", I/O " + ioErrors.get()
+				+ ", malformed snapshots " + malformedSnapshots.get() + ", lost turns " + lostProbes.get());
+	}
+
+	/**
+	 * Work out the period of something done at the given rate.
+	 *
+	 * @param rate
+	 *            --- how many times per second
+	 * @return --- the period in nanoseconds, or 0 if it's never done.
+	 */
+	private static long periodNanos(double rate) {
+		return rate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / rate) : 0;
+	}
+
+	/**
+	 * A bot is a player without GUI. Its own thread goes through the handshake
+	 * and then reads every snapshot, while the packets are sent from the
+	 * scheduler.
+	 */
+	private class Bot extends Thread {
+
+		/**
+		 * The index of this bot, from 0.
+		 */
+		private final int index;
+
+		/**
+		 * The socket connection with server, or null if not connected.
+		 */
+		private volatile Socket socket;
+
+		/**
+		 * The upload link to the server
+		 */
+		private DataOutputStream output;
+
+		/**
+		 * The unique id the server gives this bot.
+		 */
+		private int uid;
+
+		/**
+		 * Whether this bot has got into game.
+		 */
+		private volatile boolean isInGame = false;
+
+		/**
+		 * Where the bot is in the script.
+		 */
+		private int step = 0;
+
+		/**
+		 * The sequence number of the next command sent.
+		 */
+		private int sequence = 0;
+
+		/**
+		 * When the turn being waited for was sent, by System.nanoTime(), or 0
+		 * if none is being waited for.
+		 */
+		private volatile long probeSentAt = 0;
+
+		/**
+		 * The latencies of turns, in nanoseconds.
+		 */
+		private final Samples latencies = new Samples();
+
+		/**
+		 * The intervals between snapshots, in nanoseconds.
+		 */
+		private final Samples intervals = new Samples();
+
+		/**
+		 * The number of snapshots received.
+		 */
+		private long snapshotsReceived = 0;
+
+		/**
+		 * The number of bytes of snapshots received.
+		 */
+		private long bytesReceived = 0;
+
+		/**
+		 * Constructor
+		 *
+		 * @param index
+		 *            --- the index of this bot, from 0.
+		 */
+		Bot(int index) {
+			super("Bot-" + index);
+			this.index = index;
+		}
+
+		/**
+		 * This method is called when the bot thread runs. It goes through the
+		 * handshake, and then reads snapshots until the test stops.
+		 */
+		@Override
+		public void run() {
+			DataInputStream input;
+			try {
+				socket = new Socket(host, port);
+				output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+				input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+				handshake(input);
+			} catch (IOException e) {
+				if (isRunning) {
+					handshakeErrors.incrementAndGet();
+					System.out.println("[Log] " + getName() + " failed to get into game: " + e);
+				}
+				inGame.countDown();
+				close();
+				return;
+			}
+
+			isInGame = true;
+			inGame.countDown();
+
+			try {
+				readSnapshots(input);
+			} catch (IOException e) {
+				if (isRunning) {
+					ioErrors.incrementAndGet();
+					System.out.println("[Log] " + getName() + " lost connection: " + e);
+				}
+			} finally {
+				close();
+			}
+		}
+
+		/**
+		 * Go through the same handshake as {@link client.Client#run() Client}.
+		 *
+		 * @param input
+		 *            --- the download link from the server
+		 * @throws IOException
+		 */
+		private void handshake(DataInputStream input) throws IOException {
+			// 1. receive from server about the maps
+			while (!input.readUTF().equals("Fin")) {
+				// the maps are of no use to a bot
+			}
+
+			// 2. get the uId from server.
+			uid = input.readInt();
+
+			// 3. tell the server the avatar index and user name
+			output.writeByte(index % Avatar.values().length);
+			output.writeUTF("bot_" + index);
+			output.flush();
+
+			// 4. get the virus type, and 5. everybody's avatar
+			input.readInt();
+			input.readUTF();
+
+			// ready, and wait until the server tells us ready to begin
+			output.writeByte(Packet.Ready.toByte());
+			output.flush();
+			while (Packet.fromByte(input.readByte()) != Packet.Ready) {
+				// wait
+			}
+		}
+
+		/**
+		 * Read snapshots until the connection is closed, and keep track of the
+		 * direction this bot is facing.
+		 *
+		 * @param input
+		 *            --- the download link from the server
+		 * @throws IOException
+		 */
+		private void readSnapshots(DataInputStream input) throws IOException {
+			Map<Integer, Position> positions = new HashMap<>();
+			Map<Integer, Boolean> torchStatus = new HashMap<>();
+			Map<Integer, Boolean> aliveness = new HashMap<>();
+			Position last = null;
+			long lastArrival = 0;
+			byte[] snapshot = new byte[512];
+
+			while (isRunning) {
+				int length = input.readInt();
+				if (length > snapshot.length) {
+					snapshot = new byte[length];
+				}
+				input.readFully(snapshot, 0, length);
+
+				long now = System.nanoTime();
+				if (lastArrival != 0) {
+					intervals.add(now - lastArrival);
+				}
+				lastArrival = now;
+				snapshotsReceived++;
+				bytesReceived += length + 4;
+
+				if (!decode(ByteBuffer.wrap(snapshot, 0, length), positions, torchStatus, aliveness)) {
+					malformedSnapshots.incrementAndGet();
+					continue;
+				}
+
+				// a turn changes the direction but not the area, while a
+				// transit changes both.
+				Position current = positions.get(uid);
+				if (current != null && last != null && current.getDirection() != last.getDirection()
+						&& current.areaId == last.areaId) {
+					long sentAt = probeSentAt;
+					if (sentAt != 0) {
+						latencies.add(now - sentAt);
+						probeSentAt = 0;
+					}
+				}
+				last = current;
+			}
+		}
+
+		/**
+		 * Decode a snapshot in the same way as {@link client.Client Client}
+		 * does.
+		 *
+		 * @param buffer
+		 *            --- a buffer holding a snapshot
+		 * @param positions
+		 *            --- every player's position
+		 * @param torchStatus
+		 *            --- every player's torch status
+		 * @param aliveness
+		 *            --- every player's aliveness
+		 * @return --- true if decoded, or false if the snapshot is malformed.
+		 */
+		private boolean decode(ByteBuffer buffer, Map<Integer, Position> positions,
+				Map<Integer, Boolean> torchStatus, Map<Integer, Boolean> aliveness) {
+			try {
+				int mask = ParserUtilities.parseSnapshotMask(buffer);
+				if (mask < 0) {
+					return false;
+				}
+				if ((mask & Snapshot.TIME) != 0) {
+					ParserUtilities.parseSnapshotTime(buffer);
+				}
+				if ((mask & Snapshot.PLAYERS) != 0) {
+					ParserUtilities.parseSnapshotPlayers(positions, torchStatus, aliveness, buffer);
+				}
+				if ((mask & Snapshot.WINNER) != 0) {
+					System.out.println("[Log] " + getName() + " sees a winner: "
+							+ ParserUtilities.parseSnapshotString(buffer));
+				}
+				if ((mask & Snapshot.CHAT) != 0) {
+					ParserUtilities.parseSnapshotString(buffer);
+				}
+				if ((mask & Snapshot.HEALTH) != 0) {
+					buffer.getInt();
+				}
+				if ((mask & Snapshot.VISIBILITY) != 0) {
+					buffer.get();
+				}
+				if ((mask & Snapshot.INVENTORY) != 0) {
+					ParserUtilities.parseSnapshotInventory(buffer);
+				}
+				if ((mask & Snapshot.NOTIFICATION) != 0) {
+					ParserUtilities.parseSnapshotString(buffer);
+				}
+				if ((mask & Snapshot.ACK) != 0) {
+					buffer.getInt();
+				}
+				if ((mask & Snapshot.NEARBY) != 0) {
+					ParserUtilities.parseSnapshotPlayers(positions, torchStatus, aliveness, buffer);
+				}
+				return !buffer.hasRemaining();
+			} catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+				return false;
+			}
+		}
+
+		/**
+		 * Send the next packet in the script. A turn is only sent when the
+		 * previous one has been seen, otherwise it's skipped.
+		 */
+		void act() {
+			Packet packet = SCRIPT[step];
+			step = (step + 1) % SCRIPT.length;
+
+			if (packet == Packet.TurnLeft || packet == Packet.TurnRight) {
+				long sentAt = probeSentAt;
+				if (sentAt != 0) {
+					if (System.nanoTime() - sentAt < TimeUnit.MILLISECONDS.toNanos(PROBE_TIMEOUT)) {
+						return;
+					}
+					lostProbes.incrementAndGet();
+				}
+				probeSentAt = System.nanoTime();
+			}
+
+			send(packet, 0, null);
+		}
+
+		/**
+		 * Send a chat message.
+		 */
+		void chat() {
+			send(Packet.Chat, 0, "bot_" + index + " says hi at " + System.currentTimeMillis());
+		}
+
+		/**
+		 * Send a packet, followed by an index or a string if the packet has
+		 * one, as a frame of one command. Bots act at their own pace, so
+		 * there is nothing to batch.
+		 *
+		 * @param packet
+		 *            --- the packet
+		 * @param i
+		 *            --- the index
+		 * @param str
+		 *            --- the string
+		 */
+		private synchronized void send(Packet packet, int i, String str) {
+			if (!isRunning) {
+				return;
+			}
+			try {
+				output.writeInt(sequence++);
+				output.writeByte(1);
+				output.writeByte(packet.toByte());
+				if (packet.hasIndex()) {
+					output.writeInt(i);
+				}
+				if (packet.hasString()) {
+					output.writeUTF(str);
+				}
+				output.flush();
+				packetsSent.incrementAndGet();
+			} catch (IOException e) {
+				if (isRunning) {
+					ioErrors.incrementAndGet();
+				}
+			}
+		}
+
+		/**
+		 * Close the connection. The reading thread stops as a result.
+		 */
+		void close() {
+			Socket s = socket;
+			if (s != null) {
+				try {
+					s.close();
+				} catch (IOException e) {
+					// shouldn't happen.
+				}
+			}
+		}
+	}
+
+	/**
+	 * A growable list of samples, which can report percentiles.
+	 */
+	private static class Samples {
+
+		/**
+		 * The samples. Only the first <i>size</i> entries are in use.
+		 */
+		private long[] values = new long[1024];
+
+		/**
+		 * The number of samples.
+		 */
+		private int size = 0;
+
+		/**
+		 * Add a sample.
+		 *
+		 * @param value
+		 *            --- the sample
+		 */
+		void add(long value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		/**
+		 * Add every sample of another list.
+		 *
+		 * @param other
+		 *            --- the other list
+		 */
+		void addAll(Samples other) {
+			for (int i = 0; i < other.size; i++) {
+				add(other.values[i]);
+			}
+		}
+
+		/**
+		 * Summarise the samples, taken as nanoseconds, in milliseconds.
+		 *
+		 * @return --- the count, the 50th, 90th and 99th percentiles, and the
+		 *         maximum.
+		 */
+		String summary() {
+			if (size == 0) {
+				return "no samples";
+			}
+			long[] sorted = Arrays.copyOf(values, size);
+			Arrays.sort(sorted);
+			return String.format("n=%d p50=%.2f p90=%.2f p99=%.2f max=%.2f", size, percentile(sorted, 50),
+					percentile(sorted, 90), percentile(sorted, 99), sorted[size - 1] / 1e6);
+		}
+
+		/**
+		 * Get a percentile of sorted samples, in milliseconds.
+		 *
+		 * @param sorted
+		 *            --- the sorted samples
+		 * @param p
+		 *            --- the percentile, from 0 to 100
+		 * @return --- the percentile in milliseconds
+		 */
+		private static double percentile(long[] sorted, int p) {
+			int i = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+			return sorted[Math.max(0, i)] / 1e6;
+		}
+	}
+
+	/**
+	 * Start a load test. The arguments are all optional: the number of bots,
+	 * the duration in seconds, actions per second and chats per second of each
+	 * bot, the host and the port of the server. The server listens on the
+	 * address of the local host, which is also the default host here.
+	 *
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		try {
+			int bots = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_BOTS;
+			int seconds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SECONDS;
+			double actionRate = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_ACTION_RATE;
+			double chatRate = args.length > 3 ? Double.parseDouble(args[3]) : DEFAULT_CHAT_RATE;
+			String host = args.length > 4 ? args[4] : InetAddress.getLocalHost().getHostAddress();
+			int port = args.length > 5 ? Integer.parseInt(args[5]) : ServerMain.PORT_NUM[0];
+			new LoadGenerator(host, port, bots, seconds, actionRate, chatRate).run();
+		} catch (NumberFormatException e) {
+			System.out.println("Usage: java client.LoadGenerator [bots] [seconds] [actions per second] "
+					+ "[chats per second] [host] [port]");
+		} catch (UnknownHostException e) {
+			System.out.println("[Log] Can't resolve the local host: " + e);
+		}
+	}
+
+}
@@ -0,0 +1,284 @@
+package client;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+
+import server.Packet;
+import server.game.player.Direction;
+import server.game.player.Position;
+
+/**
+ * This class predicts where this player is after moving and turning, so that
+ * the view responds to a key straight away instead of waiting for the server.
+ * Every predicted input is kept, with the sequence number it's sent with,
+ * until the server tells it has applied it, and the prediction is made again
+ * from every position the server sends, with the inputs still pending applied
+ * on top. The server's position and the sequence number it has applied are
+ * from the same snapshot, so nothing is applied twice.
+ *
+ * <p>
+ * Moves are predicted with the same rules as the server, i.e.
+ * {@link server.game.Game#playerMoveForward(int) Game.playerMoveForward()}: a
+ * dead player can't move or turn, and a player can't step out of the area,
+ * onto anything other than ground or a door, or onto another player.
+ *
+ * <p>
+ * If the server didn't do what was predicted, e.g. another player got in the
+ * way, the player is put back where the server says, as soon as the input is
+ * applied.
+ *
+ * <p>
+ * This class is not thread-safe, it's only used on the JavaFX application
+ * thread.
+ *
+ * @author Hector (Fang Zhao 300364061)
+ *
+ */
+public class MovePredictor {
+
+	/**
+	 * The char of the walkable ground on map.
+	 */
+	private static final char GROUND = 'G';
+
+	/**
+	 * The char of the door on map, which is walkable too.
+	 */
+	private static final char DOOR = 'D';
+
+	/**
+	 * User id of this player.
+	 */
+	private final int uid;
+
+	/**
+	 * The inputs predicted but not applied by the server yet, from the
+	 * oldest to the newest.
+	 */
+	private final Deque<PendingInput> pending = new ArrayDeque<>();
+
+	/**
+	 * Where this player is predicted to be, i.e. the latest position sent by
+	 * the server with every input pending applied.
+	 */
+	private Position predicted;
+
+	/**
+	 * Constructor
+	 *
+	 * @param uid
+	 *            --- user id of this player
+	 */
+	public MovePredictor(int uid) {
+		this.uid = uid;
+	}
+
+	/**
+	 * Is the given action predicted by this class, i.e. does it only move or
+	 * turn the player?
+	 *
+	 * @param action
+	 *            --- the action
+	 * @return --- true if it's a move or a turn
+	 */
+	public static boolean isPredicted(Packet action) {
+		switch (action) {
+		case Forward:
+		case Backward:
+		case Left:
+		case Right:
+		case TurnLeft:
+		case TurnRight:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Predict an input, and keep it pending. Nothing is predicted before the
+	 * first position arrives from the server.
+	 *
+	 * @param action
+	 *            --- the action
+	 * @param sequence
+	 *            --- the sequence number the input is sent with
+	 * @param areas
+	 *            --- every area as a char[][], where the key is area id
+	 * @param positions
+	 *            --- every player's latest position sent by the server
+	 * @param isAlive
+	 *            --- is this player alive
+	 * @return --- true if it's predicted, or false if it's not a move or a
+	 *         turn, or no position has arrived yet.
+	 */
+	public boolean predict(Packet action, int sequence, Map<Integer, char[][]> areas,
+			Map<Integer, Position> positions, boolean isAlive) {
+		if (predicted == null || !isPredicted(action)) {
+			return false;
+		}
+
+		predicted = step(predicted, action, areas, positions, isAlive);
+		pending.addLast(new PendingInput(sequence, action));
+		return true;
+	}
+
+	/**
+	 * Take the latest position sent by the server, drop the inputs it has
+	 * applied, and predict again from it with the inputs still pending.
+	 *
+	 * @param serverPosition
+	 *            --- this player's position sent by the server
+	 * @param ackedSequence
+	 *            --- the sequence number of the last command applied by the
+	 *            server, when it sent the position
+	 * @param areas
+	 *            --- every area as a char[][], where the key is area id
+	 * @param positions
+	 *            --- every player's latest position sent by the server
+	 * @param isAlive
+	 *            --- is this player alive
+	 */
+	public void reconcile(Position serverPosition, int ackedSequence, Map<Integer, char[][]> areas,
+			Map<Integer, Position> positions, boolean isAlive) {
+		if (serverPosition == null) {
+			return;
+		}
+
+		// drop the inputs applied
+		while (!pending.isEmpty() && pending.peekFirst().sequence <= ackedSequence) {
+			pending.removeFirst();
+		}
+
+		// predict again on top of the server's position
+		predicted = serverPosition;
+		for (PendingInput input : pending) {
+			predicted = step(predicted, input.action, areas, positions, isAlive);
+		}
+	}
+
+	/**
+	 * @return --- where this player is predicted to be, or null if no position
+	 *         has arrived from the server yet.
+	 */
+	public Position getPosition() {
+		return predicted;
+	}
+
+	/**
+	 * @return --- the number of inputs not applied by the server yet.
+	 */
+	public int getNumPending() {
+		return pending.size();
+	}
+
+	/**
+	 * Work out where the player is after an input, with the same rules as the
+	 * server.
+	 *
+	 * @param from
+	 *            --- the position before the input
+	 * @param action
+	 *            --- a move or a turn
+	 * @param areas
+	 *            --- every area as a char[][], where the key is area id
+	 * @param positions
+	 *            --- every player's latest position sent by the server
+	 * @param isAlive
+	 *            --- is this player alive
+	 * @return --- the position after the input, which is the same as before if
+	 *         it's not allowed.
+	 */
+	private Position step(Position from, Packet action, Map<Integer, char[][]> areas,
+			Map<Integer, Position> positions, boolean isAlive) {
+		// dead man
+		if (!isAlive) {
+			return from;
+		}
+
+		Direction facing = from.getDirection();
+		switch (action) {
+		case TurnLeft:
+			return new Position(from.x, from.y, from.areaId, facing.left());
+		case TurnRight:
+			return new Position(from.x, from.y, from.areaId, facing.right());
+		case Forward:
+			return moveTowards(from, facing, areas, positions);
+		case Backward:
+			return moveTowards(from, facing.opposite(), areas, positions);
+		case Left:
+			return moveTowards(from, facing.left(), areas, positions);
+		case Right:
+			return moveTowards(from, facing.right(), areas, positions);
+		default:
+			return from;
+		}
+	}
+
+	/**
+	 * Work out where the player is after trying to step towards the given
+	 * direction, without changing his facing direction.
+	 *
+	 * @param from
+	 *            --- the position before the step
+	 * @param towards
+	 *            --- the direction to step towards
+	 * @param areas
+	 *            --- every area as a char[][], where the key is area id
+	 * @param positions
+	 *            --- every player's latest position sent by the server
+	 * @return --- the position after the step, which is the same as before if
+	 *         it's blocked.
+	 */
+	private Position moveTowards(Position from, Direction towards, Map<Integer, char[][]> areas,
+			Map<Integer, Position> positions) {
+		char[][] area = areas.get(from.areaId);
+		int x = from.x + towards.getDx();
+		int y = from.y + towards.getDy();
+
+		// check if it's out of board, or not walkable
+		if (area == null || y < 0 || y >= area.length || x < 0 || x >= area[y].length
+				|| (area[y][x] != GROUND && area[y][x] != DOOR)) {
+			return from;
+		}
+
+		// check if there are other players there
+		for (Map.Entry<Integer, Position> entry : positions.entrySet()) {
+			Position other = entry.getValue();
+			if (entry.getKey() != uid && other.areaId == from.areaId && other.x == x && other.y == y) {
+				return from;
+			}
+		}
+
+		return new Position(x, y, from.areaId, from.getDirection());
+	}
+
+	/**
+	 * An input predicted but not applied by the server yet.
+	 */
+	private static class PendingInput {
+
+		/**
+		 * The sequence number.
+		 */
+		final int sequence;
+
+		/**
+		 * The move or the turn.
+		 */
+		final Packet action;
+
+		/**
+		 * Constructor
+		 *
+		 * @param sequence
+		 * @param action
+		 */
+		PendingInput(int sequence, Packet action) {
+			this.sequence = sequence;
+			this.action = action;
+		}
+	}
+
+}
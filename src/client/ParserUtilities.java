@@ -1,10 +1,13 @@
 package client;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
 
+import server.Snapshot;
 import server.game.player.Avatar;
 import server.game.player.Direction;
 import server.game.player.Position;
@@ -452,6 +455,131 @@ public class ParserUtilities {
 		return list;
 	}
 
+	/**
+	 * This method reads the header of a snapshot received from server, and
+	 * returns the mask of fields present in it. The buffer is expected to be
+	 * positioned at the start of a snapshot, after its length, and is left
+	 * positioned at the first field. The format of snapshots is described in
+	 * {@link server.Snapshot Snapshot}.
+	 * 
+	 * @param buffer
+	 *            --- a buffer holding a snapshot received from server.
+	 * @return --- the mask of fields present in this snapshot, or -1 if the
+	 *         snapshot is of an unknown version.
+	 */
+	public static int parseSnapshotMask(ByteBuffer buffer) {
+		byte version = buffer.get();
+		if (version != Snapshot.VERSION) {
+			System.out.println("Error occurred when parsing snapshot. Unknown version: " + version);
+			return -1; // do not crash the game.
+		}
+		return buffer.getShort() & 0xFFFF;
+	}
+
+	/**
+	 * This method reads the world time from a snapshot, and returns it as a
+	 * String with the format "hh:mm:ss".
+	 * 
+	 * @param buffer
+	 *            --- a buffer positioned at the time field of a snapshot.
+	 * @return --- a String representation of the world time.
+	 */
+	public static String parseSnapshotTime(ByteBuffer buffer) {
+		int hour = buffer.get();
+		int minute = buffer.get();
+		int second = buffer.get();
+		char[] chars = { (char) ('0' + hour / 10), (char) ('0' + hour % 10), ':', (char) ('0' + minute / 10),
+				(char) ('0' + minute % 10), ':', (char) ('0' + second / 10), (char) ('0' + second % 10) };
+		return new String(chars);
+	}
+
+	/**
+	 * This method reads the players field or the nearby field from a
+	 * snapshot, and updates the positions, torch status and aliveness of every
+	 * player carried in it. Players not carried in it haven't changed, so
+	 * their records are left as they are. A player who has gone out of the
+	 * area of interest no longer has a position or torch status.
+	 * 
+	 * @param positions
+	 *            --- a map recording all player's positions, where the key is
+	 *            player Id, and the value is the position information
+	 *            containing areaId, coordinates(x,y), and direction.
+	 * @param torchStatus
+	 *            --- a map recording all player's status of holding torch or
+	 *            not, where the key is player Id.
+	 * @param alivenessMap
+	 *            --- a map recording all player's status of aliveness, where
+	 *            the key is player Id.
+	 * @param buffer
+	 *            --- a buffer positioned at the players field of a snapshot.
+	 */
+	public static void parseSnapshotPlayers(Map<Integer, Position> positions, Map<Integer, Boolean> torchStatus,
+			Map<Integer, Boolean> alivenessMap, ByteBuffer buffer) {
+		int count = buffer.getShort() & 0xFFFF;
+
+		for (int i = 0; i < count; i++) {
+			int uId = buffer.getInt();
+			int playerMask = buffer.get();
+
+			if ((playerMask & Snapshot.PLAYER_POSITION) != 0) {
+				int areaId = buffer.getShort();
+				int x = buffer.getShort();
+				int y = buffer.getShort();
+				int dir = buffer.get();
+				positions.put(uId, new Position(x, y, areaId, Direction.fromOrdinal(dir)));
+			}
+
+			if ((playerMask & Snapshot.PLAYER_TORCH) != 0) {
+				torchStatus.put(uId, buffer.get() != 0);
+			}
+
+			if ((playerMask & Snapshot.PLAYER_ALIVE) != 0) {
+				alivenessMap.put(uId, buffer.get() != 0);
+			}
+
+			if ((playerMask & Snapshot.PLAYER_GONE) != 0) {
+				positions.remove(uId);
+				torchStatus.remove(uId);
+			}
+		}
+	}
+
+	/**
+	 * This method reads the inventory field from a snapshot, and returns it as
+	 * a List of Items. Each item has the same format as in
+	 * {@link #parseInventory(String) parseInventory}, i.e. <i>"A@B"</i>.
+	 * 
+	 * @param buffer
+	 *            --- a buffer positioned at the inventory field of a snapshot.
+	 * @return --- a list of items (still as string.)
+	 */
+	public static List<String> parseSnapshotInventory(ByteBuffer buffer) {
+		int count = buffer.get() & 0xFF;
+		List<String> list = new ArrayList<>(count);
+
+		for (int i = 0; i < count; i++) {
+			list.add(parseSnapshotString(buffer));
+		}
+
+		return list;
+	}
+
+	/**
+	 * This method reads a String from a snapshot, which is an unsigned short
+	 * length followed by that many bytes of UTF-8.
+	 * 
+	 * @param buffer
+	 *            --- a buffer positioned at a string field of a snapshot.
+	 * @return --- the String
+	 */
+	public static String parseSnapshotString(ByteBuffer buffer) {
+		int length = buffer.getShort() & 0xFFFF;
+		String str = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+				StandardCharsets.UTF_8);
+		buffer.position(buffer.position() + length);
+		return str;
+	}
+
 	/**
 	 * This helper method parse user's input as integer, and limits the maximum
 	 * and minimum boundary of it.
@@ -0,0 +1,271 @@
+package client;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import server.Snapshot;
+import server.game.IntMap;
+import server.game.player.Direction;
+import server.game.player.Position;
+
+/**
+ * This class reads snapshots received from server without creating garbage
+ * on every snapshot. Every snapshot is read into one reusable byte array, and
+ * decoded in place by a cursor over it, i.e. a ByteBuffer wrapping the array.
+ *
+ * <p>
+ * The players field is applied to the maps of the client in place. Player ids
+ * are boxed once and the same Integer is used as the key ever after, and
+ * positions are interned per area, so a player moving around only ever puts
+ * instances that have been created before. Boolean values are cached by
+ * <i>Boolean.valueOf()</i> anyway.
+ *
+ * <p>
+ * This class is not thread-safe, it's only used by the thread receiving
+ * snapshots.
+ *
+ * @author Hector (Fang Zhao 300364061)
+ *
+ */
+public class SnapshotReader {
+
+	/**
+	 * The initial size of the buffer for snapshots. It grows if a larger
+	 * snapshot arrives.
+	 */
+	private static final int INITIAL_BUFFER_SIZE = 512;
+
+	/**
+	 * The number of directions.
+	 */
+	private static final int NUM_DIRECTIONS = Direction.values().length;
+
+	/**
+	 * The bytes of the latest snapshot.
+	 */
+	private byte[] bytes;
+
+	/**
+	 * The cursor over the bytes.
+	 */
+	private ByteBuffer buffer;
+
+	/**
+	 * The boxed player ids, where the key is the same player id unboxed.
+	 */
+	private final IntMap<Integer> keys = new IntMap<>();
+
+	/**
+	 * Interned positions of every area, indexed by area id, and then by
+	 * <i>(y * width + x) * 4 + direction</i>. An area's table is created the
+	 * first time a player is seen in it.
+	 */
+	private Position[][] positionTables;
+
+	/**
+	 * The width of every area with a table of positions, indexed by area id.
+	 */
+	private int[] widths;
+
+	/**
+	 * Constructor
+	 */
+	public SnapshotReader() {
+		bytes = new byte[INITIAL_BUFFER_SIZE];
+		buffer = ByteBuffer.wrap(bytes);
+		positionTables = new Position[0][];
+		widths = new int[0];
+	}
+
+	/**
+	 * Read the next snapshot from the given stream, i.e. an int length and
+	 * that many bytes. It blocks until the whole snapshot is read.
+	 *
+	 * @param input
+	 *            --- the download link from the server
+	 * @return --- the cursor positioned at the start of the snapshot, after its
+	 *         length. It's the same instance every time.
+	 * @throws IOException
+	 */
+	public ByteBuffer read(DataInputStream input) throws IOException {
+		int length = input.readInt();
+		if (length > bytes.length) {
+			bytes = new byte[Math.max(length, bytes.length * 2)];
+			buffer = ByteBuffer.wrap(bytes);
+		}
+		input.readFully(bytes, 0, length);
+
+		buffer.clear();
+		buffer.limit(length);
+		return buffer;
+	}
+
+	/**
+	 * Get the cursor over the latest snapshot.
+	 *
+	 * @return --- the cursor
+	 */
+	public ByteBuffer getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * This method reads the players field or the nearby field at the cursor,
+	 * and updates the positions, torch status and aliveness of every player
+	 * carried in it, in the same way as
+	 * {@link client.ParserUtilities#parseSnapshotPlayers(Map, Map, Map, ByteBuffer)
+	 * ParserUtilities.parseSnapshotPlayers()}, but without creating garbage.
+	 *
+	 * @param areas
+	 *            --- a map recording all area boards in game, where the key is
+	 *            area Id, and the value is a char[][] representation of board.
+	 *            It's used to size the tables of positions.
+	 * @param positions
+	 *            --- a map recording all player's positions
+	 * @param torchStatus
+	 *            --- a map recording all player's status of holding torch or
+	 *            not
+	 * @param alivenessMap
+	 *            --- a map recording all player's status of aliveness
+	 * @return --- which of the maps have actually changed, as a mask of
+	 *         {@link server.Snapshot#PLAYER_POSITION PLAYER_POSITION},
+	 *         {@link server.Snapshot#PLAYER_TORCH PLAYER_TORCH} and
+	 *         {@link server.Snapshot#PLAYER_ALIVE PLAYER_ALIVE}, for the
+	 *         positions, the torch status and the aliveness respectively.
+	 */
+	public int readPlayers(Map<Integer, char[][]> areas, Map<Integer, Position> positions,
+			Map<Integer, Boolean> torchStatus, Map<Integer, Boolean> alivenessMap) {
+		int count = buffer.getShort() & 0xFFFF;
+		int changed = 0;
+
+		for (int i = 0; i < count; i++) {
+			Integer key = keyOf(buffer.getInt());
+			int playerMask = buffer.get();
+
+			if ((playerMask & Snapshot.PLAYER_POSITION) != 0) {
+				int areaId = buffer.getShort();
+				int x = buffer.getShort();
+				int y = buffer.getShort();
+				int dir = buffer.get();
+				Position position = positionOf(areas, areaId, x, y, dir);
+				if (positions.get(key) != position) {
+					positions.put(key, position);
+					changed |= Snapshot.PLAYER_POSITION;
+				}
+			}
+
+			if ((playerMask & Snapshot.PLAYER_TORCH) != 0) {
+				Boolean isHoldingTorch = Boolean.valueOf(buffer.get() != 0);
+				if (torchStatus.put(key, isHoldingTorch) != isHoldingTorch) {
+					changed |= Snapshot.PLAYER_TORCH;
+				}
+			}
+
+			if ((playerMask & Snapshot.PLAYER_ALIVE) != 0) {
+				Boolean isAlive = Boolean.valueOf(buffer.get() != 0);
+				if (alivenessMap.put(key, isAlive) != isAlive) {
+					changed |= Snapshot.PLAYER_ALIVE;
+				}
+			}
+
+			if ((playerMask & Snapshot.PLAYER_GONE) != 0) {
+				if (positions.remove(key) != null) {
+					changed |= Snapshot.PLAYER_POSITION;
+				}
+				if (torchStatus.remove(key) != null) {
+					changed |= Snapshot.PLAYER_TORCH;
+				}
+			}
+		}
+
+		return changed;
+	}
+
+	/**
+	 * Get the boxed player id, which is boxed only the first time it's seen.
+	 *
+	 * @param uid
+	 *            --- the player id
+	 * @return --- the boxed player id
+	 */
+	Integer keyOf(int uid) {
+		Integer key = keys.get(uid);
+		if (key == null) {
+			key = Integer.valueOf(uid);
+			keys.put(uid, key);
+		}
+		return key;
+	}
+
+	/**
+	 * Get the interned position. If the area is unknown, or the coordinate is
+	 * out of it, a new position is created, which is not interned.
+	 *
+	 * @param areas
+	 *            --- a map recording all area boards in game
+	 * @param areaId
+	 *            --- the area id
+	 * @param x
+	 * @param y
+	 * @param dir
+	 *            --- the ordinal number of the direction
+	 * @return --- the position
+	 */
+	Position positionOf(Map<Integer, char[][]> areas, int areaId, int x, int y, int dir) {
+		Position[] table = areaId >= 0 && areaId < positionTables.length ? positionTables[areaId] : null;
+		if (table == null) {
+			table = createTable(areas, areaId);
+			if (table == null) {
+				return new Position(x, y, areaId, Direction.fromOrdinal(dir));
+			}
+		}
+
+		int width = widths[areaId];
+		int height = table.length / (width * NUM_DIRECTIONS);
+		if (x < 0 || x >= width || y < 0 || y >= height) {
+			return new Position(x, y, areaId, Direction.fromOrdinal(dir));
+		}
+
+		int index = (y * width + x) * NUM_DIRECTIONS + dir;
+		Position position = table[index];
+		if (position == null) {
+			position = new Position(x, y, areaId, Direction.fromOrdinal(dir));
+			table[index] = position;
+		}
+		return position;
+	}
+
+	/**
+	 * Create the table of positions of the given area.
+	 *
+	 * @param areas
+	 *            --- a map recording all area boards in game
+	 * @param areaId
+	 *            --- the area id
+	 * @return --- the table, or null if the area is unknown.
+	 */
+	private Position[] createTable(Map<Integer, char[][]> areas, int areaId) {
+		char[][] board = areaId < 0 ? null : areas.get(areaId);
+		if (board == null || board.length == 0 || board[0].length == 0) {
+			return null;
+		}
+
+		if (areaId >= positionTables.length) {
+			int length = Math.max(areaId + 1, positionTables.length * 2);
+			Position[][] tables = new Position[length][];
+			System.arraycopy(positionTables, 0, tables, 0, positionTables.length);
+			positionTables = tables;
+			int[] newWidths = new int[length];
+			System.arraycopy(widths, 0, newWidths, 0, widths.length);
+			widths = newWidths;
+		}
+
+		Position[] table = new Position[board.length * board[0].length * NUM_DIRECTIONS];
+		positionTables[areaId] = table;
+		widths[areaId] = board[0].length;
+		return table;
+	}
+
+}
@@ -0,0 +1,295 @@
+package client.rendering;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+
+/**
+ * This class loads the images of the game, so that the client starts up
+ * without decoding every image first. Images needed by the first screens, i.e.
+ * the splash screen and the login screen, are loaded straight away, and every
+ * other image is decoded in the background, in parallel, by the image loader
+ * of JavaFX.
+ *
+ * <p>
+ * An image loaded in the background is returned straight away as a
+ * placeholder, which is empty until it's decoded. Image views showing it are
+ * updated by JavaFX once it's decoded, and the future of it tells when that
+ * happens. An image which can't be found is replaced by an empty image, so
+ * that a missing file doesn't stop the game.
+ *
+ * <p>
+ * How long every image takes is recorded, and the whole breakdown is logged
+ * once every image is loaded.
+ *
+ * @author Hector (Fang Zhao 300364061)
+ *
+ */
+public class AssetManager {
+
+	/**
+	 * The number of slowest images listed in the log.
+	 */
+	private static final int NUM_SLOWEST_LOGGED = 5;
+
+	/**
+	 * When the first image is asked for.
+	 */
+	private static volatile long startTime;
+
+	/**
+	 * The time taken by every image in milliseconds, where the key is the
+	 * image path. Images loaded straight away are in front.
+	 */
+	private static final Map<String, Long> TIMINGS = Collections.synchronizedMap(new LinkedHashMap<>());
+
+	/**
+	 * The future of every image, which completes when it's decoded.
+	 */
+	private static final Map<Image, CompletableFuture<Image>> FUTURES = new ConcurrentHashMap<>();
+
+	/**
+	 * The number of images loaded straight away.
+	 */
+	private static final AtomicInteger numNow = new AtomicInteger();
+
+	/**
+	 * The number of images asked for and loaded in the background.
+	 */
+	private static final AtomicInteger numQueued = new AtomicInteger(), numLoaded = new AtomicInteger();
+
+	/**
+	 * The total time taken by images loaded straight away, in milliseconds.
+	 */
+	private static volatile long priorityTime;
+
+	/**
+	 * The future completed when every image asked for is loaded.
+	 */
+	private static final CompletableFuture<Void> ALL_LOADED = new CompletableFuture<>();
+
+	/**
+	 * Is every image to be loaded asked for? Until then, the background
+	 * catching up doesn't mean everything is loaded.
+	 */
+	private static volatile boolean isSealed;
+
+	/**
+	 * Private constructor, as this is a utility class.
+	 */
+	private AssetManager() {
+	}
+
+	/**
+	 * Load an image straight away, which blocks until it's decoded. This is
+	 * only for images needed by the first screen.
+	 *
+	 * @param name
+	 *            --- the image path as a String
+	 * @return --- the Image object, or an empty image if it can't be found.
+	 */
+	public static Image loadNow(String name) {
+		markStart();
+		long start = System.nanoTime();
+		URL url = Images.class.getResource(name);
+		Image image;
+		if (url == null) {
+			image = missing(name);
+		} else {
+			image = new Image(url.toExternalForm());
+		}
+		long taken = (System.nanoTime() - start) / 1_000_000;
+		numNow.incrementAndGet();
+		priorityTime += taken;
+		TIMINGS.put(name, taken);
+		FUTURES.put(image, CompletableFuture.completedFuture(image));
+		return image;
+	}
+
+	/**
+	 * Load an image in the background. It returns straight away.
+	 *
+	 * @param name
+	 *            --- the image path as a String
+	 * @return --- the Image object, which is empty until it's decoded, or an
+	 *         empty image if it can't be found.
+	 */
+	public static Image loadInBackground(String name) {
+		markStart();
+		URL url = Images.class.getResource(name);
+		if (url == null) {
+			Image image = missing(name);
+			FUTURES.put(image, CompletableFuture.completedFuture(image));
+			return image;
+		}
+
+		long start = System.nanoTime();
+		Image image = new Image(url.toExternalForm(), true);
+		CompletableFuture<Image> future = new CompletableFuture<>();
+		FUTURES.put(image, future);
+		numQueued.incrementAndGet();
+
+		// progress is reported on the JavaFX application thread, so it can't
+		// be missed if this is called on it. Check anyway in case this is
+		// called on another thread, and the image is already decoded.
+		image.progressProperty().addListener((observable, oldValue, newValue) -> {
+			if (newValue.doubleValue() >= 1) {
+				finish(name, image, future, start);
+			}
+		});
+		image.errorProperty().addListener((observable, oldValue, newValue) -> {
+			if (newValue) {
+				finish(name, image, future, start);
+			}
+		});
+		if (image.getProgress() >= 1 || image.isError()) {
+			finish(name, image, future, start);
+		}
+		return image;
+	}
+
+	/**
+	 * Get the future of an image loaded by this class.
+	 *
+	 * @param image
+	 *            --- the image
+	 * @return --- the future which completes with the image when it's decoded,
+	 *         or exceptionally if it fails to. An image not loaded by this
+	 *         class is taken as decoded.
+	 */
+	public static CompletableFuture<Image> whenLoaded(Image image) {
+		CompletableFuture<Image> future = FUTURES.get(image);
+		return future == null ? CompletableFuture.completedFuture(image) : future;
+	}
+
+	/**
+	 * Tell that every image to be loaded has been asked for, so that it's
+	 * known when they are all loaded.
+	 */
+	public static void seal() {
+		isSealed = true;
+		checkAllLoaded();
+	}
+
+	/**
+	 * @return --- the future which completes when every image is loaded,
+	 *         after {@link #seal()} is called.
+	 */
+	public static CompletableFuture<Void> whenAllLoaded() {
+		return ALL_LOADED;
+	}
+
+	/**
+	 * @return --- the time taken by every image in milliseconds so far, where
+	 *         the key is the image path. Images loaded straight away are in
+	 *         front.
+	 */
+	public static Map<String, Long> getTimings() {
+		synchronized (TIMINGS) {
+			return new LinkedHashMap<>(TIMINGS);
+		}
+	}
+
+	/**
+	 * Record when the first image is asked for.
+	 */
+	private static void markStart() {
+		if (startTime == 0) {
+			startTime = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Record that an image loaded in the background is done, and complete its
+	 * future. It only counts the first time.
+	 *
+	 * @param name
+	 * @param image
+	 * @param future
+	 * @param start
+	 *            --- when it was asked for
+	 */
+	private static void finish(String name, Image image, CompletableFuture<Image> future, long start) {
+		long taken = (System.nanoTime() - start) / 1_000_000;
+		boolean isFirst;
+		if (image.isError()) {
+			isFirst = future.completeExceptionally(image.getException() == null
+					? new IllegalStateException("Failed to load image " + name) : image.getException());
+			if (isFirst) {
+				System.out.println("[Log] Failed to load image " + name + ": " + image.getException());
+			}
+		} else {
+			isFirst = future.complete(image);
+		}
+		if (!isFirst) {
+			return;
+		}
+
+		TIMINGS.put(name, taken);
+		numLoaded.incrementAndGet();
+		checkAllLoaded();
+	}
+
+	/**
+	 * If every image asked for is loaded, log the breakdown of startup time,
+	 * and complete the future of all images.
+	 */
+	private static void checkAllLoaded() {
+		if (!isSealed || numLoaded.get() < numQueued.get() || ALL_LOADED.isDone()) {
+			return;
+		}
+		synchronized (ALL_LOADED) {
+			if (ALL_LOADED.isDone()) {
+				return;
+			}
+			long total = (System.nanoTime() - startTime) / 1_000_000;
+			System.out.println("[Log] Images loaded in " + total + " ms: " + numNow.get()
+					+ " straight away in " + priorityTime + " ms, " + numQueued.get() + " in the background.");
+			System.out.println("[Log] Slowest images: " + slowest());
+			ALL_LOADED.complete(null);
+		}
+	}
+
+	/**
+	 * @return --- the slowest images and their times, e.g. "/a.gif 120 ms,
+	 *         /b.png 80 ms".
+	 */
+	private static String slowest() {
+		List<Map.Entry<String, Long>> entries;
+		synchronized (TIMINGS) {
+			entries = new ArrayList<>(TIMINGS.entrySet());
+		}
+		entries.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < entries.size() && i < NUM_SLOWEST_LOGGED; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append(entries.get(i).getKey()).append(" ").append(entries.get(i).getValue()).append(" ms");
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Make the placeholder of an image which can't be found.
+	 *
+	 * @param name
+	 *            --- the image path as a String
+	 * @return --- an empty image
+	 */
+	private static Image missing(String name) {
+		System.out.println("[Log] Can't find image " + name + ".");
+		return new WritableImage(1, 1);
+	}
+
+}
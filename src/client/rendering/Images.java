@@ -1,8 +1,14 @@
 package client.rendering;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.Set;
 import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.WritableImage;
 import javafx.scene.paint.Color;
 import server.game.player.Avatar;
 import server.game.player.Direction;
@@ -12,6 +18,11 @@ import server.game.player.Direction;
  * stored in this class. There are also some utility methods for quickly
  * retrieving images.
  *
+ * <p>
+ * Images of the splash screen and the login screen are loaded straight away,
+ * and the rest are loaded in the background by {@link AssetManager}, so they
+ * may still be empty placeholders for a while after this class is loaded.
+ *
  * @author Hector (Fang Zhao 300364061)
  *
  */
@@ -20,7 +31,7 @@ public class Images {
 	/**
 	 * This is the game icon image
 	 */
-	public static final Image GAMEICON_IMAGE = loadImage("/game-icon.png");
+	public static final Image GAMEICON_IMAGE = AssetManager.loadNow("/game-icon.png");
 
 	/**
 	 * This is an empty image for empty item slot in inventory
@@ -30,12 +41,12 @@ public class Images {
 	/**
 	 * This is the splash screen image
 	 */
-	public static final Image SLASH_SCREEN_IMAGE = loadImage("/spash-screen-background.png");
+	public static final Image SLASH_SCREEN_IMAGE = AssetManager.loadNow("/spash-screen-background.png");
 
 	/**
 	 * This is the background image for login screen
 	 */
-	public static final Image LOGIN_SCREEN_IMAGE = loadImage("/login-background.png");
+	public static final Image LOGIN_SCREEN_IMAGE = AssetManager.loadNow("/login-background.png");
 
 	/**
 	 * The day time background image
@@ -129,6 +140,24 @@ public class Images {
 	 */
 	public static final Map<Character, String> MAP_OBJECT_DESCRIPTION;
 
+	/**
+	 * The brightness of every band of the day and night, as the renderer
+	 * darkens sprites with. Sprites are pre-rendered at each of them.
+	 */
+	public static final double[] BRIGHTNESS_BANDS = { 0, -0.1, -0.2, -0.25, -0.3, -0.4, -0.5 };
+
+	/**
+	 * Sprites which can be pre-rendered, i.e. images of map objects and dead
+	 * players. Images of living players are animated, so they can't be.
+	 */
+	private static final Set<Image> STILL_SPRITES;
+
+	/**
+	 * Pre-rendered sprites, where the key is the original sprite, and the value
+	 * is indexed by brightness band, and then by depth level.
+	 */
+	private static final Map<Image, Image[][]> SPRITE_CACHE = new IdentityHashMap<>();
+
 	/*
 	 * Initialise the constant tables for renderer.
 	 */
@@ -143,6 +172,7 @@ public class Images {
 		DEAD_IMAGES = new HashMap<>();
 		MINIMAP_COLOR_TABLE = new HashMap<>();
 		MAP_OBJECT_DESCRIPTION = new HashMap<>();
+		STILL_SPRITES = Collections.newSetFromMap(new IdentityHashMap<>());
 
 		// ============= map objects ====================
 
@@ -341,6 +371,15 @@ public class Images {
 		// Room obstacles
 		MINIMAP_COLOR_TABLE.put('E', Color.rgb(19, 137, 245, 1.0));
 		MAP_OBJECT_DESCRIPTION.put('E', "I found a hidden cabin! I need to get inside.");
+
+		// ============= still sprites =====================
+
+		STILL_SPRITES.addAll(MAP_OBJECT_IMAGES.values());
+		for (Map<Side, Image> deadImages : DEAD_IMAGES.values()) {
+			STILL_SPRITES.addAll(deadImages.values());
+		}
+
+		AssetManager.seal();
 	}
 
 	/**
@@ -415,14 +454,215 @@ public class Images {
 	}
 
 	/**
-	 * A helper method used to load images
+	 * This utility method is used to find the band of the given brightness.
+	 *
+	 * @param brightness
+	 *            --- the brightness, as in {@link #BRIGHTNESS_BANDS}
+	 * @return --- the index of the band, or -1 if it's not one of them.
+	 */
+	public static int getBrightnessBand(double brightness) {
+		for (int i = 0; i < BRIGHTNESS_BANDS.length; i++) {
+			if (BRIGHTNESS_BANDS[i] == brightness) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * This utility method is used to retrieve a sprite pre-rendered at the
+	 * given depth level and brightness band, so that it can be drawn pixel for
+	 * pixel, without being resampled or darkened when drawn. It's rendered the
+	 * first time it's asked for, and cached ever after. This method should
+	 * only be called on the JavaFX application thread.
+	 *
+	 * @param sprite
+	 *            --- the original sprite
+	 * @param level
+	 *            --- the depth level, i.e. how many rows the sprite is from
+	 *            the nearest row
+	 * @param scale
+	 *            --- the scale of the depth level, which is the same every
+	 *            time for the same level
+	 * @param band
+	 *            --- the brightness band
+	 * @return --- the pre-rendered sprite, or null if the sprite is animated,
+	 *         not loaded yet, the band is unknown, or the sprite can't be
+	 *         read. It should then be scaled and darkened when drawn.
+	 */
+	public static Image getSprite(Image sprite, int level, double scale, int band) {
+		if (band < 0 || band >= BRIGHTNESS_BANDS.length || !STILL_SPRITES.contains(sprite)
+				|| sprite.getProgress() < 1) {
+			return null;
+		}
+
+		Image[][] bands = SPRITE_CACHE.get(sprite);
+		if (bands == null) {
+			bands = new Image[BRIGHTNESS_BANDS.length][];
+			SPRITE_CACHE.put(sprite, bands);
+		}
+		Image[] levels = bands[band];
+		if (levels == null || level >= levels.length) {
+			Image[] newLevels = new Image[level + 1];
+			if (levels != null) {
+				System.arraycopy(levels, 0, newLevels, 0, levels.length);
+			}
+			levels = newLevels;
+			bands[band] = levels;
+		}
+
+		Image rendered = levels[level];
+		if (rendered == null) {
+			rendered = renderSprite(sprite, scale, BRIGHTNESS_BANDS[band]);
+			if (rendered == null) {
+				// it can't be read, so don't try again.
+				STILL_SPRITES.remove(sprite);
+				return null;
+			}
+			levels[level] = rendered;
+		}
+		return rendered;
+	}
+
+	/**
+	 * Render a sprite at the given scale and brightness. Every pixel of the
+	 * rendered sprite is the average of the pixels of the original sprite it
+	 * covers, and then it's darkened in the same way as
+	 * <i>javafx.scene.effect.ColorAdjust</i> does with a negative brightness.
+	 *
+	 * @param sprite
+	 *            --- the original sprite
+	 * @param scale
+	 *            --- the scale, which is no greater than 1
+	 * @param brightness
+	 *            --- the brightness, from -1 to 0
+	 * @return --- the rendered sprite, or null if the sprite can't be read.
+	 */
+	private static Image renderSprite(Image sprite, double scale, double brightness) {
+		PixelReader reader = sprite.getPixelReader();
+		int width = (int) sprite.getWidth();
+		int height = (int) sprite.getHeight();
+		if (reader == null || sprite.isError() || width == 0 || height == 0) {
+			return null;
+		}
+
+		int[] pixels = new int[width * height];
+		reader.getPixels(0, 0, width, height, PixelFormat.getIntArgbPreInstance(), pixels, 0, width);
+
+		int newWidth = Math.max(1, (int) Math.round(width * scale));
+		int newHeight = Math.max(1, (int) Math.round(height * scale));
+		int[] firstColumns = new int[newWidth];
+		float[][] columnWeights = boxWeights(width, newWidth, firstColumns);
+		int[] firstRows = new int[newHeight];
+		float[][] rowWeights = boxWeights(height, newHeight, firstRows);
+
+		// premultiplied channels, shrunk horizontally, then vertically
+		float[] shrunk = new float[newWidth * height * 4];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < newWidth; x++) {
+				int to = (y * newWidth + x) * 4;
+				float[] weights = columnWeights[x];
+				for (int i = 0; i < weights.length; i++) {
+					int argb = pixels[y * width + firstColumns[x] + i];
+					addChannels(shrunk, to, argb, weights[i]);
+				}
+			}
+		}
+
+		float darken = (float) (1 + Math.min(0, brightness));
+		int[] rendered = new int[newWidth * newHeight];
+		float[] channels = new float[4];
+		for (int y = 0; y < newHeight; y++) {
+			float[] weights = rowWeights[y];
+			for (int x = 0; x < newWidth; x++) {
+				channels[0] = channels[1] = channels[2] = channels[3] = 0;
+				for (int i = 0; i < weights.length; i++) {
+					int from = ((firstRows[y] + i) * newWidth + x) * 4;
+					for (int c = 0; c < 4; c++) {
+						channels[c] += shrunk[from + c] * weights[i];
+					}
+				}
+				int a = toByte(channels[0]);
+				int r = Math.min(a, toByte(channels[1] * darken));
+				int g = Math.min(a, toByte(channels[2] * darken));
+				int b = Math.min(a, toByte(channels[3] * darken));
+				rendered[y * newWidth + x] = a << 24 | r << 16 | g << 8 | b;
+			}
+		}
+
+		WritableImage image = new WritableImage(newWidth, newHeight);
+		image.getPixelWriter().setPixels(0, 0, newWidth, newHeight, PixelFormat.getIntArgbPreInstance(), rendered,
+				0, newWidth);
+		return image;
+	}
+
+	/**
+	 * Work out how much of every original pixel along one axis each shrunk
+	 * pixel covers. The weights of one shrunk pixel add up to 1.
+	 *
+	 * @param length
+	 *            --- the original length
+	 * @param newLength
+	 *            --- the shrunk length
+	 * @param firsts
+	 *            --- where to put the first original pixel each shrunk pixel
+	 *            covers
+	 * @return --- the weights of the original pixels each shrunk pixel covers,
+	 *         from the first one.
+	 */
+	private static float[][] boxWeights(int length, int newLength, int[] firsts) {
+		double ratio = (double) length / newLength;
+		float[][] weights = new float[newLength][];
+		for (int i = 0; i < newLength; i++) {
+			double start = i * ratio;
+			double end = Math.min(length, (i + 1) * ratio);
+			int first = (int) start;
+			int last = Math.min(length - 1, (int) Math.ceil(end) - 1);
+			firsts[i] = first;
+			weights[i] = new float[last - first + 1];
+			for (int j = first; j <= last; j++) {
+				double covered = Math.min(end, j + 1) - Math.max(start, j);
+				weights[i][j - first] = (float) (covered / ratio);
+			}
+		}
+		return weights;
+	}
+
+	/**
+	 * Add the weighted channels of a pixel to the given four floats.
+	 *
+	 * @param channels
+	 * @param at
+	 * @param argb
+	 *            --- the pixel in premultiplied ARGB
+	 * @param weight
+	 */
+	private static void addChannels(float[] channels, int at, int argb, float weight) {
+		channels[at] += (argb >>> 24) * weight;
+		channels[at + 1] += (argb >> 16 & 0xFF) * weight;
+		channels[at + 2] += (argb >> 8 & 0xFF) * weight;
+		channels[at + 3] += (argb & 0xFF) * weight;
+	}
+
+	/**
+	 * Round a channel to the nearest value from 0 to 255.
+	 *
+	 * @param channel
+	 * @return --- the byte value
+	 */
+	private static int toByte(float channel) {
+		return Math.max(0, Math.min(255, Math.round(channel)));
+	}
+
+	/**
+	 * A helper method used to load images in the background
 	 *
 	 * @param name
 	 *            --- the image path as a String
-	 * @return --- the Image object
+	 * @return --- the Image object, which is empty until it's loaded.
 	 */
 	public static Image loadImage(String name) {
-		return new Image(Images.class.getResourceAsStream(name));
+		return AssetManager.loadInBackground(name);
 	}
 
 }
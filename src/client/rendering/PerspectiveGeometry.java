@@ -0,0 +1,421 @@
+package client.rendering;
+
+/**
+ * This class holds the geometry of the first person view, which only depends
+ * on the size of the pane and how far the view goes, i.e. the number of rows
+ * in front of the player and the number of columns to either side of the
+ * player. For every depth of view, the scale factor, the top and bottom of
+ * every row, the corners of every tile and where sprites on every tile are
+ * anchored are worked out once, so that rendering a frame only looks them up.
+ *
+ * <p>
+ * Tiles in a row are indexed in this way: the tile in the middle is
+ * {@link #MIDDLE}, the tiles to the left are
+ * {@link View#leftTile(int) View.leftTile(col)}, and the tiles to the right
+ * are {@link View#rightTile(int) View.rightTile(col)}, where <i>col</i> starts
+ * from 0 next to the middle.
+ *
+ * <p>
+ * This class is not thread-safe, it's only used on the JavaFX application
+ * thread.
+ *
+ * @author Hector (Fang Zhao 300364061)
+ *
+ */
+public class PerspectiveGeometry {
+
+	/**
+	 * The index of the tile in the middle of every row.
+	 */
+	public static final int MIDDLE = 0;
+
+	/**
+	 * The number of corners of a tile.
+	 */
+	private static final int NUM_CORNERS = 4;
+
+	/**
+	 * The size of the pane this geometry is worked out for.
+	 */
+	private final double paneWidth, paneHeight;
+
+	/**
+	 * The width and height of the nearest tile.
+	 */
+	private final double tileWidth, tileHeight;
+
+	/**
+	 * How much every row shrinks from the row before it.
+	 */
+	private final double scale;
+
+	/**
+	 * The x of the middle of the view.
+	 */
+	private final double centerWidth;
+
+	/**
+	 * The views worked out so far, indexed by depth.
+	 */
+	private View[] views = new View[0];
+
+	/**
+	 * Constructor
+	 *
+	 * @param paneWidth
+	 *            --- the width of the pane
+	 * @param paneHeight
+	 *            --- the height of the pane
+	 * @param tileWidth
+	 *            --- the width of the nearest tile
+	 * @param tileHeight
+	 *            --- the height of the nearest tile
+	 * @param scale
+	 *            --- how much every row shrinks from the row before it
+	 * @param centerWidth
+	 *            --- the x of the middle of the view
+	 */
+	public PerspectiveGeometry(double paneWidth, double paneHeight, double tileWidth, double tileHeight, double scale,
+			double centerWidth) {
+		this.paneWidth = paneWidth;
+		this.paneHeight = paneHeight;
+		this.tileWidth = tileWidth;
+		this.tileHeight = tileHeight;
+		this.scale = scale;
+		this.centerWidth = centerWidth;
+	}
+
+	/**
+	 * Is this geometry worked out for a pane of the given size?
+	 *
+	 * @param width
+	 *            --- the width of the pane
+	 * @param height
+	 *            --- the height of the pane
+	 * @return --- true if it is, or false if it has to be worked out again.
+	 */
+	public boolean isFor(double width, double height) {
+		return paneWidth == width && paneHeight == height;
+	}
+
+	/**
+	 * Get the view of the given depth, which covers at least the given number
+	 * of columns to the left and right. It's worked out the first time it's
+	 * asked for, or when more columns are asked for than it covers.
+	 *
+	 * @param depth
+	 *            --- the number of rows in front of the player, including the
+	 *            row the player is on
+	 * @param toLeft
+	 *            --- the number of columns to the left of the player
+	 * @param toRight
+	 *            --- the number of columns to the right of the player
+	 * @return --- the view
+	 */
+	public View getView(int depth, int toLeft, int toRight) {
+		if (depth >= views.length) {
+			View[] newViews = new View[Math.max(depth + 1, views.length * 2)];
+			System.arraycopy(views, 0, newViews, 0, views.length);
+			views = newViews;
+		}
+
+		View view = views[depth];
+		if (view == null || view.toLeft < toLeft || view.toRight < toRight) {
+			// never shrink, so that walking sideways doesn't work the view
+			// out again and again
+			if (view != null) {
+				toLeft = Math.max(toLeft, view.toLeft);
+				toRight = Math.max(toRight, view.toRight);
+			}
+			view = new View(depth, toLeft, toRight);
+			views[depth] = view;
+		}
+		return view;
+	}
+
+	/**
+	 * The geometry of one depth of view. Rows are indexed from the farthest,
+	 * i.e. row 0, to the nearest, i.e. row <i>depth - 1</i>.
+	 */
+	public class View {
+
+		/**
+		 * The number of rows.
+		 */
+		private final int depth;
+
+		/**
+		 * The number of columns to the left and right covered.
+		 */
+		private final int toLeft, toRight;
+
+		/**
+		 * The scale factor of every row, for sprites on it.
+		 */
+		private final double[] scales;
+
+		/**
+		 * The top and bottom of every row.
+		 */
+		private final double[] yTops, yBottoms;
+
+		/**
+		 * The number of columns to the left which are on the pane, for every
+		 * row.
+		 */
+		private final int[] numLeftOnPane;
+
+		/**
+		 * The corners of every tile, indexed by row, and then by <i>tile * 4 +
+		 * corner</i>, where the corners are the x of the left top, right top,
+		 * right bottom and left bottom.
+		 */
+		private final double[][] corners;
+
+		/**
+		 * The x of the middle of where sprites stand on every tile, indexed by
+		 * row, and then by tile.
+		 */
+		private final double[][] anchorXs;
+
+		/**
+		 * Constructor. This is where the geometry is worked out, in the same
+		 * way as tiles used to be drawn one after another.
+		 *
+		 * @param depth
+		 *            --- the number of rows
+		 * @param toLeft
+		 *            --- the number of columns to the left
+		 * @param toRight
+		 *            --- the number of columns to the right
+		 */
+		private View(int depth, int toLeft, int toRight) {
+			this.depth = depth;
+			this.toLeft = toLeft;
+			this.toRight = toRight;
+			scales = new double[depth];
+			yTops = new double[depth];
+			yBottoms = new double[depth];
+			numLeftOnPane = new int[depth];
+			corners = new double[depth][];
+			anchorXs = new double[depth][];
+
+			double yTop = paneHeight;
+			for (int row = 0; row < depth; row++) {
+				scales[row] = Math.pow(scale, depth - row - 1);
+				yTop -= tileHeight * scales[row];
+			}
+			double previousTileWidth = tileWidth * Math.pow(scale, depth);
+			double xRightTop = centerWidth + previousTileWidth / 2;
+			double xLeftTop = centerWidth - previousTileWidth / 2;
+
+			int numTiles = 1 + toLeft + toRight;
+			for (int row = 0; row < depth; row++) {
+				double currentTileWidth = tileWidth * scales[row];
+				double currentTileHeight = tileHeight * scales[row];
+				double xLeftBottom = centerWidth - currentTileWidth / 2;
+				double yBottom = yTop + currentTileHeight;
+				yTops[row] = yTop;
+				yBottoms[row] = yBottom;
+				double[] rowCorners = new double[numTiles * NUM_CORNERS];
+				double[] rowAnchors = new double[numTiles];
+				corners[row] = rowCorners;
+				anchorXs[row] = rowAnchors;
+
+				setTile(rowCorners, rowAnchors, MIDDLE, xLeftTop, xRightTop, xLeftBottom + currentTileWidth,
+						xLeftBottom, xLeftTop, xRightTop);
+
+				for (int col = 0; col < toLeft; col++) {
+					double tileXLeftTop = xLeftTop - previousTileWidth - (col * previousTileWidth);
+					double tileXRightTop = xLeftTop - (col * previousTileWidth);
+					double tileXRightBottom = xLeftBottom - col * currentTileWidth;
+					double tileXLeftBottom = xLeftBottom - currentTileWidth - (col * currentTileWidth);
+					setTile(rowCorners, rowAnchors, leftTile(col), tileXLeftTop, tileXRightTop, tileXRightBottom,
+							tileXLeftBottom, tileXLeftTop, tileXRightBottom);
+					if (tileXRightTop >= 0) {
+						numLeftOnPane[row] = col + 1;
+					}
+				}
+
+				for (int col = 0; col < toRight; col++) {
+					double tileXLeftTop = xLeftTop + previousTileWidth + (col * previousTileWidth);
+					double tileXRightTop = xLeftTop + (previousTileWidth * 2) + (col * previousTileWidth);
+					double tileXRightBottom = xLeftBottom + (currentTileWidth * 2) + (col * currentTileWidth);
+					double tileXLeftBottom = xLeftBottom + currentTileWidth + (col * currentTileWidth);
+					setTile(rowCorners, rowAnchors, rightTile(col), tileXLeftTop, tileXRightTop, tileXRightBottom,
+							tileXLeftBottom, tileXLeftBottom, tileXRightTop);
+				}
+
+				xLeftTop = xLeftBottom;
+				xRightTop = xLeftBottom + currentTileWidth;
+				yTop = yBottom;
+				previousTileWidth = currentTileWidth;
+			}
+		}
+
+		/**
+		 * Record the corners of a tile, and where sprites on it are anchored,
+		 * i.e. the middle of the given left and right.
+		 *
+		 * @param rowCorners
+		 * @param rowAnchors
+		 * @param tile
+		 * @param xLeftTop
+		 * @param xRightTop
+		 * @param xRightBottom
+		 * @param xLeftBottom
+		 * @param spriteLeft
+		 * @param spriteRight
+		 */
+		private void setTile(double[] rowCorners, double[] rowAnchors, int tile, double xLeftTop, double xRightTop,
+				double xRightBottom, double xLeftBottom, double spriteLeft, double spriteRight) {
+			int i = tile * NUM_CORNERS;
+			rowCorners[i] = xLeftTop;
+			rowCorners[i + 1] = xRightTop;
+			rowCorners[i + 2] = xRightBottom;
+			rowCorners[i + 3] = xLeftBottom;
+			rowAnchors[tile] = spriteLeft + (spriteRight - spriteLeft) / 2;
+		}
+
+		/**
+		 * @param col
+		 *            --- the column to the left, starting from 0 next to the
+		 *            middle
+		 * @return --- the index of the tile
+		 */
+		public int leftTile(int col) {
+			return 1 + col;
+		}
+
+		/**
+		 * @param col
+		 *            --- the column to the right, starting from 0 next to the
+		 *            middle
+		 * @return --- the index of the tile
+		 */
+		public int rightTile(int col) {
+			return 1 + toLeft + col;
+		}
+
+		/**
+		 * @param lateral
+		 *            --- how many columns to the right of the middle, or to the
+		 *            left if it's negative
+		 * @return --- the index of the tile, or -1 if it's not covered.
+		 */
+		public int tileAt(int lateral) {
+			if (lateral == 0) {
+				return MIDDLE;
+			} else if (lateral < 0) {
+				return -lateral <= toLeft ? leftTile(-lateral - 1) : -1;
+			} else {
+				return lateral <= toRight ? rightTile(lateral - 1) : -1;
+			}
+		}
+
+		/**
+		 * @param row
+		 * @return --- the scale factor of sprites on the row
+		 */
+		public double getScale(int row) {
+			return scales[row];
+		}
+
+		/**
+		 * @param row
+		 * @return --- the depth level of the row, i.e. how many rows it is from
+		 *         the nearest row. The scale of the row only depends on it.
+		 */
+		public int getLevel(int row) {
+			return depth - row - 1;
+		}
+
+		/**
+		 * @param row
+		 * @return --- the top of the row
+		 */
+		public double getYTop(int row) {
+			return yTops[row];
+		}
+
+		/**
+		 * @param row
+		 * @return --- the bottom of the row
+		 */
+		public double getYBottom(int row) {
+			return yBottoms[row];
+		}
+
+		/**
+		 * @param row
+		 * @return --- the number of columns to the left which are on the pane.
+		 *         The columns further out are left of the pane.
+		 */
+		public int getNumLeftOnPane(int row) {
+			return numLeftOnPane[row];
+		}
+
+		/**
+		 * @param row
+		 * @param tile
+		 * @return --- the x of the left top of the tile
+		 */
+		public double getXLeftTop(int row, int tile) {
+			return corners[row][tile * NUM_CORNERS];
+		}
+
+		/**
+		 * @param row
+		 * @param tile
+		 * @return --- the x of the right top of the tile
+		 */
+		public double getXRightTop(int row, int tile) {
+			return corners[row][tile * NUM_CORNERS + 1];
+		}
+
+		/**
+		 * @param row
+		 * @param tile
+		 * @return --- the x of the right bottom of the tile
+		 */
+		public double getXRightBottom(int row, int tile) {
+			return corners[row][tile * NUM_CORNERS + 2];
+		}
+
+		/**
+		 * @param row
+		 * @param tile
+		 * @return --- the x of the left bottom of the tile
+		 */
+		public double getXLeftBottom(int row, int tile) {
+			return corners[row][tile * NUM_CORNERS + 3];
+		}
+
+		/**
+		 * @param row
+		 * @param tile
+		 * @return --- the x of the middle of where sprites stand on the tile
+		 */
+		public double getAnchorX(int row, int tile) {
+			return anchorXs[row][tile];
+		}
+
+		/**
+		 * @param row
+		 * @return --- the y of where sprites stand on the row, i.e. half way
+		 *         down the row. The bottom of a sprite is put there.
+		 */
+		public double getAnchorY(int row) {
+			return yBottoms[row] - (yBottoms[row] - yTops[row]) / 2;
+		}
+
+		/**
+		 * @return --- the number of rows
+		 */
+		public int getDepth() {
+			return depth;
+		}
+
+	}
+
+}
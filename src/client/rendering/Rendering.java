@@ -1,8 +1,16 @@
 package client.rendering;
 
 import java.awt.Point;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import client.Interpolator;
+import client.rendering.PerspectiveGeometry.View;
 import client.view.GUI;
+import javafx.collections.ObservableList;
+import javafx.scene.Group;
+import javafx.scene.Node;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.Pane;
@@ -13,10 +21,18 @@ import server.game.player.Position;
 import javafx.scene.paint.ImagePattern;
 import javafx.scene.control.Label;
 import javafx.scene.effect.ColorAdjust;
+import javafx.scene.effect.Effect;
 
 /**
  * This class represents the main rendering class, this class will control the
  * rendering of the game board, character, and objects.
+ * 
+ * <p>
+ * The scene is retained from frame to frame. Every tile drawn takes the next
+ * slot from a pool, in the same order as they are drawn, and a slot holds the
+ * tile polygon, the object on it and the avatars on it. Only the geometry,
+ * images and visibility of the nodes in a slot are updated, and slots left
+ * over are hidden, so the scene graph isn't rebuilt on every frame.
  *
  * @author Angelo Main Author (300323076)
  *
@@ -37,6 +53,46 @@ public class Rendering {
 	private Label mapDescription;
 	private ColorAdjust colorAdjust = new ColorAdjust();
 
+	/**
+	 * The view of the background, which is always the first child of
+	 * renderGroup.
+	 */
+	private ImageView backgroundView;
+
+	/**
+	 * The pool of slots. They are children of renderGroup in the same order,
+	 * right after the background.
+	 */
+	private final List<Slot> slots = new ArrayList<>();
+
+	/**
+	 * The number of slots used in the frame being rendered.
+	 */
+	private int slotsUsed;
+
+	/**
+	 * The fill of tiles for every tile image, so that they are created once.
+	 */
+	private final Map<Image, ImagePattern> tilePatterns = new IdentityHashMap<>();
+
+	/**
+	 * The point returned by getImagePoint, which is reused.
+	 */
+	private final Point imagePoint = new Point();
+
+	/**
+	 * The band of brightness of the frame being rendered, which sprites are
+	 * pre-rendered at.
+	 */
+	private int brightnessBand;
+
+	/**
+	 * The geometry of the view, worked out once for the size of the pane, and
+	 * again only if the pane changes size.
+	 */
+	private PerspectiveGeometry geometry = new PerspectiveGeometry(gamePanelWidth, gamePaneHeight, tileWidth,
+			tileHeight, scale, centerWidth);
+
 	public Rendering() {
 	}
 
@@ -51,11 +107,13 @@ public class Rendering {
 	 * @param positions
 	 * @param torchStatus
 	 * @param b
+	 * @param motion
+	 *            where other players are shown sliding between snapshots
 	 */
 	public void render(Position playerLoc, char[][] worldMap, int visibility, int uid, Map<Integer, Avatar> avatars,
 			Map<Integer, Position> positions, Map<Integer, Boolean> torchStatus, int hourOfTime,
-			Map<Integer, Boolean> isPlayerDead) {
-		renderGroup.getChildren().clear();
+			Map<Integer, Boolean> isPlayerDead, Interpolator motion) {
+		slotsUsed = 0;
 		Direction direction = playerLoc.getDirection();
 		Image background;
 		Image grass;
@@ -72,115 +130,159 @@ public class Rendering {
 				grass = Images.ROOMTILE_IMAGE;
 		}
 		/////////////////////////////////
-		addImage(renderGroup, background, gamePanelWidth, gamePaneHeight, 0, 0, hourOfTime);
+		double brightness = getImageBrightness(hourOfTime);
+		changeImageBrightness(brightness);
+		brightnessBand = Images.getBrightnessBand(brightness);
+		if (backgroundView == null) {
+			backgroundView = createImageView();
+			renderGroup.getChildren().add(0, backgroundView);
+		}
+		placeImage(backgroundView, background, gamePanelWidth, gamePaneHeight, 0, 0);
 		setNumSquares(worldMap.length, worldMap[0].length, direction, playerLoc, worldMap);
-		double yTop = getTopOffset();
-		double previousTileWidth = tileWidth * Math.pow(scale, squaresInFront);
-		double xRightTop = centerWidth + previousTileWidth / 2;
-		double xLeftTop = centerWidth - previousTileWidth / 2;
+		if (!geometry.isFor(gamePanelWidth, gamePaneHeight)) {
+			geometry = new PerspectiveGeometry(gamePanelWidth, gamePaneHeight, tileWidth, tileHeight, scale,
+					centerWidth);
+		}
+		View view = geometry.getView(squaresInFront, squaresToLeft, squaresToRight);
 		// ===================================================================================================
 		// Below this is point is the code for all the rendering for first
 		// person
 		// ====================================================================================================
 		for (int row = 0; row < squaresInFront; row++) {
-			Polygon squareFront = new Polygon();
-			squareFront.setFill(new ImagePattern(grass));
-			squareFront.setLayoutY(10);
-			double currentTileWidth = tileWidth * Math.pow(scale, squaresInFront - row - 1);
-			double currentTileHeight = tileHeight * Math.pow(scale, squaresInFront - row - 1);
-			double xLeftBottom = centerWidth - currentTileWidth / 2;
-			double yBottom = yTop + currentTileHeight;
 			if (squaresInFront - row <= visibility + 1) {
-				addTile(squareFront, xLeftTop, xRightTop, xLeftBottom + currentTileWidth, xLeftBottom, yBottom, yTop,
-						renderGroup);
+				Slot slot = addTile(grass, view, row, PerspectiveGeometry.MIDDLE);
 				if (direction.equals(Direction.North) || direction.equals(Direction.South)) {
-					addObject(xLeftTop, yBottom, xRightTop, row, playerLoc.x, "middle", worldMap, renderGroup,
-							direction, yTop, hourOfTime);
-					addAvatar(xLeftTop, yBottom, xRightTop, row, playerLoc.x, "middle", worldMap, renderGroup,
-							direction, yTop, avatars, positions, uid, torchStatus, hourOfTime, isPlayerDead);
+					addObject(view, row, PerspectiveGeometry.MIDDLE, playerLoc.x, "middle", worldMap, slot,
+							direction);
+					addAvatar(view, row, PerspectiveGeometry.MIDDLE, playerLoc.x, "middle", worldMap, slot,
+							direction, avatars, positions, uid, torchStatus, isPlayerDead, motion);
 				} else {
-					addObject(xLeftTop, yBottom, xRightTop, row, playerLoc.y, "middle", worldMap, renderGroup,
-							direction, yTop, hourOfTime);
-					addAvatar(xLeftTop, yBottom, xRightTop, row, playerLoc.y, "middle", worldMap, renderGroup,
-							direction, yTop, avatars, positions, uid, torchStatus, hourOfTime, isPlayerDead);
+					addObject(view, row, PerspectiveGeometry.MIDDLE, playerLoc.y, "middle", worldMap, slot,
+							direction);
+					addAvatar(view, row, PerspectiveGeometry.MIDDLE, playerLoc.y, "middle", worldMap, slot,
+							direction, avatars, positions, uid, torchStatus, isPlayerDead, motion);
 				}
-				for (int col = squaresToLeft - 1; col >= 0; col--) {
-					Polygon squareLeft = new Polygon();
-					squareLeft.setLayoutY(10);
-					squareLeft.setFill(new ImagePattern(grass));
-					double tileXLeftTop = xLeftTop - previousTileWidth - (col * previousTileWidth);
-					double tileXRightTop = xLeftTop - (col * previousTileWidth);
-					double tileXRightBottom = xLeftBottom - col * currentTileWidth;
-					double tileXLeftBottom = xLeftBottom - currentTileWidth - (col * currentTileWidth);
-					if (tileXRightTop >= 0) {
-						addTile(squareLeft, tileXLeftTop, tileXRightTop, tileXRightBottom, tileXLeftBottom, yBottom,
-								yTop, renderGroup);
-						addObject(tileXLeftTop, yBottom, tileXRightBottom, row, col, "left", worldMap, renderGroup,
-								direction, yTop, hourOfTime);
-						addAvatar(tileXLeftTop, yBottom, tileXRightBottom, row, col, "left", worldMap, renderGroup,
-								direction, yTop, avatars, positions, uid, torchStatus, hourOfTime, isPlayerDead);
-					}
+				// columns further out than these are left of the pane
+				for (int col = Math.min(squaresToLeft, view.getNumLeftOnPane(row)) - 1; col >= 0; col--) {
+					int tile = view.leftTile(col);
+					Slot slotLeft = addTile(grass, view, row, tile);
+					addObject(view, row, tile, col, "left", worldMap, slotLeft, direction);
+					addAvatar(view, row, tile, col, "left", worldMap, slotLeft, direction, avatars, positions, uid,
+							torchStatus, isPlayerDead, motion);
 				}
 				for (int col = squaresToRight - 1; col >= 0; col--) {
-					Polygon squareRight = new Polygon();
-					squareRight.setFill(new ImagePattern(grass));
-					squareRight.setLayoutY(10);
-					double tileXLeftTop = xLeftTop + previousTileWidth + (col * previousTileWidth);
-					double tileXRightTop = xLeftTop + (previousTileWidth * 2) + (col * previousTileWidth);
-					double tileXRightBottom = xLeftBottom + (currentTileWidth * 2) + (col * currentTileWidth);
-					double tileXLeftBottom = xLeftBottom + currentTileWidth + (col * currentTileWidth);
-					if (tileXLeftTop >= 0) {
-						addTile(squareRight, tileXLeftTop, tileXRightTop, tileXRightBottom, tileXLeftBottom, yBottom,
-								yTop, renderGroup);
-						addObject(tileXLeftBottom, yBottom, tileXRightTop, row, col, "right", worldMap, renderGroup,
-								direction, yTop, hourOfTime);
-						addAvatar(tileXLeftBottom, yBottom, tileXRightTop, row, col, "right", worldMap, renderGroup,
-								direction, yTop, avatars, positions, uid, torchStatus, hourOfTime, isPlayerDead);
+					int tile = view.rightTile(col);
+					if (view.getXLeftTop(row, tile) >= 0) {
+						Slot slotRight = addTile(grass, view, row, tile);
+						addObject(view, row, tile, col, "right", worldMap, slotRight, direction);
+						addAvatar(view, row, tile, col, "right", worldMap, slotRight, direction, avatars, positions,
+								uid, torchStatus, isPlayerDead, motion);
 					}
 				}
 			}
-			xLeftTop = xLeftBottom;
-			xRightTop = xLeftBottom + currentTileWidth;
-			yTop = yBottom;
-			previousTileWidth = currentTileWidth;
+		}
+
+		// hide the slots left over from previous frames
+		for (int i = slotsUsed; i < slots.size(); i++) {
+			slots.get(i).group.setVisible(false);
 		}
 	}
 
 	/**
-	 * Calculates the offset
+	 * Draws the tiles / grass on the board via the provided parameters, in the
+	 * next slot of the pool. The object and avatars on the tile are then drawn
+	 * in the same slot.
 	 * 
-	 * @return
+	 * @param grass
+	 * @param view
+	 * @param row
+	 * @param tile
+	 * @return the slot
 	 */
-	private double getTopOffset() {
-		double count = 0;
-		for (int i = 0; i < squaresInFront; i++)
-			count += tileHeight * Math.pow(scale, squaresInFront - i - 1);
-		return gamePaneHeight - count;
+	private Slot addTile(Image grass, View view, int row, int tile) {
+		Slot slot = nextSlot();
+		ImagePattern pattern = tilePatterns.get(grass);
+		if (pattern == null) {
+			pattern = new ImagePattern(grass);
+			tilePatterns.put(grass, pattern);
+		}
+		slot.tile.setFill(pattern);
+
+		double yTop = view.getYTop(row);
+		double yBottom = view.getYBottom(row);
+		ObservableList<Double> points = slot.tile.getPoints();
+		setPoint(points, 0, view.getXLeftTop(row, tile));
+		setPoint(points, 1, yTop);
+		setPoint(points, 2, view.getXRightTop(row, tile));
+		setPoint(points, 3, yTop);
+		setPoint(points, 4, view.getXRightBottom(row, tile));
+		setPoint(points, 5, yBottom);
+		setPoint(points, 6, view.getXLeftBottom(row, tile));
+		setPoint(points, 7, yBottom);
+		return slot;
 	}
 
 	/**
-	 * Creates the tiles / grass on the board via the provided parameters.
+	 * Set a coordinate of a polygon, unless it's already there.
 	 * 
-	 * @param p
-	 * @param xLeftTop
-	 * @param xRightTop
-	 * @param xRightBottom
-	 * @param xLeftBottom
-	 * @param yBottom
-	 * @param yTop
-	 * @param renderGroup
+	 * @param points
+	 * @param index
+	 * @param value
 	 */
-	private void addTile(Polygon p, double xLeftTop, double xRightTop, double xRightBottom, double xLeftBottom,
-			double yBottom, double yTop, Pane renderGroup) {
-		p.getPoints().add(xLeftTop);
-		p.getPoints().add(yTop);
-		p.getPoints().add(xRightTop);
-		p.getPoints().add(yTop);
-		p.getPoints().add(xRightBottom);
-		p.getPoints().add(yBottom);
-		p.getPoints().add(xLeftBottom);
-		p.getPoints().add(yBottom);
-		renderGroup.getChildren().add(p);
+	private void setPoint(ObservableList<Double> points, int index, double value) {
+		if (points.get(index) != value) {
+			points.set(index, value);
+		}
+	}
+
+	/**
+	 * Takes the next slot from the pool, and creates one if the pool has run
+	 * out. Everything in the slot but the tile is hidden until drawn.
+	 * 
+	 * @return the slot
+	 */
+	private Slot nextSlot() {
+		Slot slot;
+		if (slotsUsed < slots.size()) {
+			slot = slots.get(slotsUsed);
+		} else {
+			slot = new Slot();
+			slot.object = createImageView();
+			slot.group.getChildren().addAll(slot.tile, slot.object);
+			// right after the background and the other slots, so that the area
+			// description stays on top
+			renderGroup.getChildren().add(1 + slots.size(), slot.group);
+			slots.add(slot);
+		}
+		slotsUsed++;
+
+		slot.group.setVisible(true);
+		slot.object.setVisible(false);
+		for (int i = 0; i < slot.avatarsUsed; i++) {
+			slot.avatars.get(i).setVisible(false);
+		}
+		slot.avatarsUsed = 0;
+		return slot;
+	}
+
+	/**
+	 * Takes the next avatar view of the slot, and creates one if the slot has
+	 * run out.
+	 * 
+	 * @param slot
+	 * @return the avatar view
+	 */
+	private ImageView nextAvatarView(Slot slot) {
+		ImageView view;
+		if (slot.avatarsUsed < slot.avatars.size()) {
+			view = slot.avatars.get(slot.avatarsUsed);
+		} else {
+			view = createImageView();
+			slot.avatars.add(view);
+			slot.group.getChildren().add(view);
+		}
+		slot.avatarsUsed++;
+		return view;
 	}
 
 	/**
@@ -219,66 +321,69 @@ public class Rendering {
 	}
 
 	/**
-	 * Renders the current character, and all other characters onto the board
+	 * Renders the current character, and all other characters onto the board.
+	 * Other characters are drawn on the tile they are heading to, sliding
+	 * from the tile they were on
 	 * 
-	 * @param xLeftTop
-	 * @param yBottom
-	 * @param xRightTop
+	 * @param view
 	 * @param row
-	 * @param x
-	 * @param strings
+	 * @param tile
+	 * @param col
+	 * @param side
 	 * @param worldMap
-	 * @param renderGroup2
-	 * @param direction2
-	 * @param yTop
+	 * @param slot
+	 * @param direction
 	 * @param avatars
 	 * @param positions
 	 * @param uid
 	 * @param torchStatus
-	 * @param hourOfTime
 	 * @param isPlayerDead
+	 * @param motion
 	 */
-	public void addAvatar(double tileXLeftBottom, double yBottom, double tileXRightBottom, int row, int col,
-			String side, char[][] worldMap, Pane renderGroup, Direction direction, double yTop,
-			Map<Integer, Avatar> avatars, Map<Integer, Position> positions, int uid, Map<Integer, Boolean> torchStatus,
-			int hourOfTime, Map<Integer, Boolean> isPlayerDead) {
+	private void addAvatar(View view, int row, int tile, int col, String side, char[][] worldMap, Slot slot,
+			Direction direction, Map<Integer, Avatar> avatars, Map<Integer, Position> positions, int uid,
+			Map<Integer, Boolean> torchStatus, Map<Integer, Boolean> isPlayerDead, Interpolator motion) {
 		Image playerImg;
 		Image otherAvatar;
-		// Current player / contains torches
-		Boolean currentPlayerNotDead = isPlayerDead.get(uid);
-		if (currentPlayerNotDead)
-			playerImg = Images.getAvatarImageBySide(avatars.get(uid), Side.Back, torchStatus.get(uid));
+		// Current player / contains torches, as in the latest state
+		boolean isSelfAlive = !Boolean.FALSE.equals(isPlayerDead.get(uid));
+		boolean isSelfHoldingTorch = Boolean.TRUE.equals(torchStatus.get(uid));
+		if (isSelfAlive)
+			playerImg = Images.getAvatarImageBySide(avatars.get(uid), Side.Back, isSelfHoldingTorch);
 		else
 			playerImg = Images.getDeadImageBySideMyself(avatars.get(uid), Side.Back);
 		Point imageCoordinate = getImagePoint(direction, row, col, side, worldMap.length, worldMap[0].length);
 		if (playerImg != null && positions.get(uid).x == imageCoordinate.x
 				&& positions.get(uid).y == imageCoordinate.y) {
-			double height = playerImg.getHeight() * Math.pow(scale, squaresInFront - row - 1);
-			double width = playerImg.getWidth() * Math.pow(scale, squaresInFront - row - 1);
-			double xPoint = getImageX(width, tileXLeftBottom, tileXRightBottom);
-			double yPoint = getImageY(height, yBottom, yTop);
-			addImage(renderGroup, playerImg, width, height, xPoint, yPoint + imageOffset, hourOfTime);
+			placeSprite(nextAvatarView(slot), playerImg, view, row, tile);
 		}
-		// Other players / contains torches
-		for (Integer userID : positions.keySet()) {
-			Position userPosition = positions.get(userID);
+		// Other players / contains torches, as in the same version as where
+		// they are shown
+		Position self = positions.get(uid);
+		for (Integer userID : motion.getTo().keySet()) {
+			// the current player is never behind
+			boolean isSelf = userID.intValue() == uid;
+			Position userPosition = isSelf ? self : motion.getTo().get(userID);
+			Direction userDirection = isSelf ? self.getDirection() : motion.getFacing(userID);
 			Avatar avatarIDs = avatars.get(userID);
 			int otherPlayerX = userPosition.x;
 			int otherPlayerY = userPosition.y;
 			if (imageCoordinate.x == otherPlayerX && imageCoordinate.y == otherPlayerY) {
-				Boolean otherPlayersNotDead = isPlayerDead.get(userID);
-				if (otherPlayersNotDead)
-					otherAvatar = Images.getAvatarImageByDirection(avatarIDs, direction, userPosition.getDirection(),
-							torchStatus.get(userID));
+				boolean isAlive = isSelf ? isSelfAlive : motion.isAlive(userID);
+				boolean isHoldingTorch = isSelf ? isSelfHoldingTorch : motion.isHoldingTorch(userID);
+				if (isAlive)
+					otherAvatar = Images.getAvatarImageByDirection(avatarIDs, direction, userDirection,
+							isHoldingTorch);
 				else
-					otherAvatar = Images.getDeadImageByDirectionOther(avatarIDs, direction,
-							userPosition.getDirection());
+					otherAvatar = Images.getDeadImageByDirectionOther(avatarIDs, direction, userDirection);
 				if (otherAvatar != null) {
-					double height = otherAvatar.getHeight() * Math.pow(scale, squaresInFront - row - 1);
-					double width = otherAvatar.getWidth() * Math.pow(scale, squaresInFront - row - 1);
-					double xPoint = getImageX(width, tileXLeftBottom, tileXRightBottom);
-					double yPoint = getImageY(height, yBottom, yTop);
-					addImage(renderGroup, otherAvatar, width, height, xPoint, yPoint + imageOffset, hourOfTime);
+					Position slidingFrom = isSelf ? null : motion.getSlidingFrom(userID);
+					if (slidingFrom != null) {
+						slideSprite(nextAvatarView(slot), otherAvatar, view, row, tile, slidingFrom, self, direction,
+								worldMap, motion);
+					} else {
+						placeSprite(nextAvatarView(slot), otherAvatar, view, row, tile);
+					}
 				}
 			}
 		}
@@ -289,36 +394,29 @@ public class Rendering {
 	 * if it contains a image char, then pass that char into getImageFromChar
 	 * which will then return an image object which can then be drawn
 	 * 
-	 * @param tileXLeftBottom
-	 * @param yBottom
-	 * @param tileXRightBottom
+	 * @param view
 	 * @param row
+	 * @param tile
 	 * @param col
 	 * @param side
 	 * @param worldMap
-	 * @param renderGroup
+	 * @param slot
 	 * @param direction
-	 * @param yTop
-	 * @param hourOfTime
 	 * 
 	 */
-	private void addObject(double tileXLeftBottom, double yBottom, double tileXRightBottom, int row, int col,
-			String side, char[][] worldMap, Pane renderGroup, Direction direction, double yTop, int hourOfTime) {
+	private void addObject(View view, int row, int tile, int col, String side, char[][] worldMap, Slot slot,
+			Direction direction) {
 		Point imageCoordinate = getImagePoint(direction, row, col, side, worldMap.length, worldMap[0].length);
 		char object = worldMap[imageCoordinate.y][imageCoordinate.x];
 		Image image = getImageFromChar(object);
 		if (image != null) {
-			double height = image.getHeight() * Math.pow(scale, squaresInFront - row - 1);
-			double width = image.getWidth() * Math.pow(scale, squaresInFront - row - 1);
-			double xPoint = getImageX(width, tileXLeftBottom, tileXRightBottom);
-			double yPoint = getImageY(height, yBottom, yTop);
-			addImage(renderGroup, image, width, height, xPoint, yPoint + imageOffset, hourOfTime);
+			placeSprite(slot.object, image, view, row, tile);
 		}
 	}
 
 	/**
 	 * Calculates the front, left, and right coordinates for finding char
-	 * objects, creates a point and then return the newly created point
+	 * objects, and returns them in a point, which is reused on every call
 	 * 
 	 * @author Dipen (Math Correction Bug Fix)
 	 * 
@@ -335,36 +433,49 @@ public class Rendering {
 		switch (direction) {
 		case North:
 			if (side.equals("left"))
-				return new Point(squaresToLeft - col - 1, row);
+				return point(squaresToLeft - col - 1, row);
 			else if (side.equals("right"))
-				return new Point(squaresToLeft + col + 1, row);
+				return point(squaresToLeft + col + 1, row);
 			else
-				return new Point(col, row);
+				return point(col, row);
 		case South:
 			if (side.equals("left"))
-				return new Point(boardWidth - (squaresToLeft - col), boardHeight - row - 1);
+				return point(boardWidth - (squaresToLeft - col), boardHeight - row - 1);
 			else if (side.equals("right"))
-				return new Point((squaresToRight - col) - 1, boardHeight - row - 1);
+				return point((squaresToRight - col) - 1, boardHeight - row - 1);
 			else
-				return new Point(col, boardHeight - row - 1);
+				return point(col, boardHeight - row - 1);
 		case East:
 			if (side.equals("left"))
-				return new Point(boardWidth - 1 - row, squaresToLeft - col - 1);
+				return point(boardWidth - 1 - row, squaresToLeft - col - 1);
 			else if (side.equals("right"))
-				return new Point(boardWidth - 1 - row, squaresToLeft + col + 1);
+				return point(boardWidth - 1 - row, squaresToLeft + col + 1);
 			else
-				return new Point(boardWidth - 1 - row, col);
+				return point(boardWidth - 1 - row, col);
 		case West:
 			if (side.equals("left"))
-				return new Point(row, boardHeight - (squaresToLeft - col));
+				return point(row, boardHeight - (squaresToLeft - col));
 			else if (side.equals("right"))
-				return new Point(row, squaresToRight - col - 1);
+				return point(row, squaresToRight - col - 1);
 			else
-				return new Point(row, col);
+				return point(row, col);
 		}
 		return null;
 	}
 
+	/**
+	 * Sets the reused point to the given coordinates
+	 * 
+	 * @param x
+	 * @param y
+	 * @return the reused point
+	 */
+	private Point point(int x, int y) {
+		imagePoint.x = x;
+		imagePoint.y = y;
+		return imagePoint;
+	}
+
 	/**
 	 * Provided the given character, match an image to it, and return the image
 	 * object
@@ -377,65 +488,149 @@ public class Rendering {
 	}
 
 	/**
-	 * Get the X point of each image on the board, based on the rows and cols of
-	 * the image location, and being relative to the players position
+	 * Show an image standing on a tile, scaled by how far the row is, and
+	 * centred on where sprites on the tile are anchored. Still images are drawn
+	 * pre-rendered at the scale and brightness, pixel for pixel, and animated
+	 * ones are scaled and darkened when drawn
 	 * 
-	 * @param imageWidth
-	 * @param tileXLeft
-	 * @param tileXRight
-	 * @return
+	 * @param imageView
+	 * @param image
+	 * @param view
+	 * @param row
+	 * @param tile
 	 */
-	private double getImageX(double imageWidth, double tileXLeft, double tileXRight) {
-		double tileWidth = tileXRight - tileXLeft;
-		double widthOffset = Math.abs(tileWidth - imageWidth) / 2;
-		if (tileWidth > imageWidth)
-			return tileXLeft + widthOffset;
-		else
-			return tileXLeft - widthOffset;
+	private void placeSprite(ImageView imageView, Image image, View view, int row, int tile) {
+		placeSprite(imageView, image, view.getLevel(row), view.getScale(row), view.getAnchorX(row, tile),
+				view.getAnchorY(row));
 	}
 
-	/*
-	 * Get the Y point of each image on the board, based on the rows and cols of
-	 * the image location, and being relative to the players position
+	/**
+	 * Show an image sliding from one tile to another, i.e. scaled and centred
+	 * part way between where it would be on either tile
 	 * 
-	 * @param imageHeight
+	 * @param imageView
+	 * @param image
+	 * @param view
+	 * @param row
+	 * @param tile
+	 *            the tile it's sliding to
+	 * @param from
+	 *            the position it's sliding from
+	 * @param self
+	 * @param direction
+	 * @param worldMap
+	 * @param motion
+	 */
+	private void slideSprite(ImageView imageView, Image image, View view, int row, int tile, Position from,
+			Position self, Direction direction, char[][] worldMap, Interpolator motion) {
+		// how far in front of the current player, and how far to the right
+		int fromRow;
+		int fromLateral;
+		switch (direction) {
+		case North:
+			fromRow = from.y;
+			fromLateral = from.x - self.x;
+			break;
+		case South:
+			fromRow = worldMap.length - 1 - from.y;
+			fromLateral = self.x - from.x;
+			break;
+		case East:
+			fromRow = worldMap[0].length - 1 - from.x;
+			fromLateral = from.y - self.y;
+			break;
+		default:
+			fromRow = from.x;
+			fromLateral = self.y - from.y;
+			break;
+		}
+		int fromTile = fromRow >= 0 && fromRow < view.getDepth() ? view.tileAt(fromLateral) : -1;
+		if (fromTile < 0) {
+			// it's coming from behind, or out of sight
+			placeSprite(imageView, image, view, row, tile);
+			return;
+		}
+
+		double scale = motion.lerp(view.getScale(fromRow), view.getScale(row));
+		double anchorX = motion.lerp(view.getAnchorX(fromRow, fromTile), view.getAnchorX(row, tile));
+		double anchorY = motion.lerp(view.getAnchorY(fromRow), view.getAnchorY(row));
+		// it's only pre-rendered at the scale of a row
+		int level = fromRow == row ? view.getLevel(row) : -1;
+		placeSprite(imageView, image, level, scale, anchorX, anchorY);
+	}
+
+	/**
+	 * Show an image at the given scale, with the bottom in the middle at the
+	 * given anchor
 	 * 
-	 * @param tileBottom
+	 * @param imageView
+	 * @param image
+	 * @param level
+	 *            the depth level of the scale, or -1 if it's in between
+	 * @param scale
+	 * @param anchorX
+	 * @param anchorY
+	 */
+	private void placeSprite(ImageView imageView, Image image, int level, double scale, double anchorX,
+			double anchorY) {
+		Image sprite = level < 0 ? null : Images.getSprite(image, level, scale, brightnessBand);
+		if (sprite != null) {
+			double xPoint = Math.round(anchorX - sprite.getWidth() / 2);
+			double yPoint = Math.round(anchorY - sprite.getHeight() + imageOffset);
+			setEffect(imageView, null);
+			placeImage(imageView, sprite, sprite.getWidth(), sprite.getHeight(), xPoint, yPoint);
+		} else {
+			double height = image.getHeight() * scale;
+			double width = image.getWidth() * scale;
+			double xPoint = anchorX - width / 2;
+			double yPoint = anchorY - height;
+			setEffect(imageView, colorAdjust);
+			placeImage(imageView, image, width, height, xPoint, yPoint + imageOffset);
+		}
+	}
+
+	/**
+	 * Sets the effect of an image view, unless it's already there
 	 * 
-	 * @param tileTop
+	 * @param imageView
+	 * @param effect
+	 */
+	private void setEffect(ImageView imageView, Effect effect) {
+		if (imageView.getEffect() != effect) {
+			imageView.setEffect(effect);
+		}
+	}
+
+	/**
+	 * Creates an image view for the pool, with the brightness effect shared by
+	 * every image
 	 * 
-	 * @return
+	 * @return the image view
 	 */
-	private double getImageY(double imageHeight, double tileBottom, double tileTop) {
-		double tileHeight = tileBottom - tileTop;
-		double heightOffset = tileHeight / 2;
-		return tileBottom - heightOffset - imageHeight;
+	private ImageView createImageView() {
+		ImageView imageView = new ImageView();
+		imageView.setEffect(colorAdjust);
+		return imageView;
 	}
 
 	/**
-	 * Given the provided arguments, add an image into the renderGroup for it to
-	 * be redrawn
+	 * Given the provided arguments, show an image in a pooled image view
 	 * 
-	 * @param renderGroup
+	 * @param imageView
 	 * @param image
 	 * @param width
 	 * @param height
 	 * @param setX
 	 * @param setY
-	 * @param hourOfTime
 	 */
-	private void addImage(Pane renderGroup, Image image, double width, double height, double setX, double setY,
-			int hourOfTime) {
-		ImageView imageView = new ImageView();
-		double brightness = getImageBrightness(hourOfTime);
-		changeImageBrightness(brightness);
+	private void placeImage(ImageView imageView, Image image, double width, double height, double setX,
+			double setY) {
 		imageView.setImage(image);
 		imageView.setFitHeight(height);
 		imageView.setFitWidth(width);
 		imageView.setX(setX);
 		imageView.setY(setY);
-		imageView.setEffect(colorAdjust);
-		renderGroup.getChildren().add(imageView);
+		imageView.setVisible(true);
 	}
 
 	/**
@@ -491,7 +686,11 @@ public class Rendering {
 	 */
 	public void updateAreaDescription(String areaDescription) {
 		mapDescription.setText(areaDescription);
-		renderGroup.getChildren().add(mapDescription);
+		ObservableList<Node> children = renderGroup.getChildren();
+		if (children.isEmpty() || children.get(children.size() - 1) != mapDescription) {
+			children.remove(mapDescription);
+			children.add(mapDescription);
+		}
 	}
 
 	/**
@@ -514,6 +713,45 @@ public class Rendering {
 		this.renderGroup = renderGroup;
 	}
 
+	/**
+	 * A slot of the pool, holding the nodes drawn on one tile: the tile
+	 * itself, the object on it, and the avatars on it.
+	 */
+	private static class Slot {
+
+		/**
+		 * The group of every node in this slot.
+		 */
+		private final Group group = new Group();
+
+		/**
+		 * The tile, which is always drawn.
+		 */
+		private final Polygon tile = new Polygon(0, 0, 0, 0, 0, 0, 0, 0);
+
+		/**
+		 * The object on the tile, which is hidden if there is none.
+		 */
+		private ImageView object;
+
+		/**
+		 * The avatars on the tile. Only the first avatarsUsed are visible.
+		 */
+		private final List<ImageView> avatars = new ArrayList<>();
+
+		/**
+		 * The number of avatars drawn on the tile in this frame.
+		 */
+		private int avatarsUsed;
+
+		/**
+		 * Constructor
+		 */
+		Slot() {
+			tile.setLayoutY(10);
+		}
+	}
+
 	/**
 	 * Generic toString method.
 	 */
@@ -2,9 +2,12 @@ package client.view;
 
 import java.io.IOException;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
@@ -15,10 +18,15 @@ import javafx.scene.input.MouseEvent;
 import javafx.stage.WindowEvent;
 
 import client.Client;
+import client.ClientWorldState;
+import client.Interpolator;
+import client.MovePredictor;
 import client.ParserUtilities;
+import client.SnapshotReader;
 import client.rendering.Images;
 import client.rendering.Rendering;
 import server.Packet;
+import server.Snapshot;
 import server.game.player.Avatar;
 import server.game.player.Direction;
 import server.game.player.Position;
@@ -37,11 +45,6 @@ import server.game.player.Virus;
  */
 public class ClientUI {
 
-	/**
-	 * The period between every update
-	 */
-	public static final int DEFAULT_CLK_PERIOD = 50;
-
 	// ============ info fields =================
 	/**
 	 * User id of this connection.
@@ -63,6 +66,8 @@ public class ClientUI {
 	 */
 	private Virus virus;
 
+	// ====== written by the network thread, published in state ======
+
 	/**
 	 * The health left. This is updated by server broadcast.
 	 */
@@ -88,6 +93,12 @@ public class ClientUI {
 	 */
 	private String time;
 
+	/**
+	 * The sequence number of the last command applied by the server. This is
+	 * updated by server broadcast.
+	 */
+	private int ackedSequence = -1;
+
 	/**
 	 * This map keeps track of all player's avatars. Renderer can look for which
 	 * avatar to render from here.
@@ -123,6 +134,73 @@ public class ClientUI {
 	 */
 	private List<String> inventory;
 
+	/**
+	 * Whether positions have changed since the last state was published.
+	 */
+	private boolean isPositionsChanged = false;
+
+	/**
+	 * Whether torch status has changed since the last state was published.
+	 */
+	private boolean isTorchStatusChanged = false;
+
+	/**
+	 * Whether aliveness has changed since the last state was published.
+	 */
+	private boolean isAlivenessChanged = false;
+
+	/**
+	 * Whether anything else in state has changed since the last state was
+	 * published.
+	 */
+	private boolean isStateChanged = false;
+
+	// ====== read by the FX thread ======
+
+	/**
+	 * The latest state published by the network thread. The GUI and renderer
+	 * only read the game status from here, so every redraw is consistent.
+	 */
+	private volatile ClientWorldState state = ClientWorldState.EMPTY;
+
+	/**
+	 * The version of the state drawn last time, or -1 to force the next
+	 * redraw. It's only used on the FX thread.
+	 */
+	private long drawnVersion = -1;
+
+	/**
+	 * The recent states, which other players are shown sliding between. It's
+	 * only used on the FX thread.
+	 */
+	private final Interpolator interpolator = new Interpolator();
+
+	/**
+	 * Were players sliding in the last frame? It's only used on the FX thread.
+	 */
+	private boolean wasSliding;
+
+	/**
+	 * Where this player is predicted to be after the moves and turns not
+	 * processed by the server yet. It's created when the game starts, and only
+	 * used on the FX thread.
+	 */
+	private MovePredictor predictor;
+
+	/**
+	 * The version of the state the prediction was last reconciled with.
+	 */
+	private long reconciledVersion = -1;
+
+	/**
+	 * Every player's position as drawn, i.e. with this player's predicted
+	 * position, and the positions and the prediction it's made from. It's
+	 * only made again when either changes, so that it stays the same map when
+	 * nothing moves.
+	 */
+	private Map<Integer, Position> shownPositions, shownFrom;
+	private Position shownPrediction;
+
 	/**
 	 * This is a mirror of the field, Map<Integer, Area> areas, in Game class,
 	 * except the area is represented as a char[][]. Renderer can look for what
@@ -170,9 +248,45 @@ public class ClientUI {
 	private Client client;
 
 	/**
-	 * A clock thread for generating constant pulse to update rendering and GUI.
+	 * The most frames drawn in a second. Snapshots may arrive at any rate, and
+	 * frames are drawn at no more than this rate, from whatever state is the
+	 * latest then.
+	 */
+	private static final int MAX_FRAMES_PER_SECOND = 30;
+
+	/**
+	 * The least time between two frames, in nanoseconds.
+	 */
+	private static final long MIN_FRAME_INTERVAL = 1_000_000_000L / MAX_FRAMES_PER_SECOND;
+
+	/**
+	 * How early a pulse can be and still draw a frame, in nanoseconds, so that
+	 * a bit of jitter in pulses doesn't skip a frame.
+	 */
+	private static final long FRAME_TOLERANCE = 2_000_000L;
+
+	/**
+	 * Draws frames on the FX thread, once per pulse at most, and no more often
+	 * than {@link #MAX_FRAMES_PER_SECOND}. A pulse does nothing if the latest
+	 * state has been drawn, and no player is sliding.
 	 */
-	private ClockThread clockThread;
+	private final AnimationTimer frameTimer = new AnimationTimer() {
+
+		/**
+		 * When the next frame can be drawn.
+		 */
+		private long nextFrameTime;
+
+		@Override
+		public void handle(long now) {
+			if (now < nextFrameTime - FRAME_TOLERANCE) {
+				return;
+			}
+			// keep to the rate, but don't catch up after a long frame
+			nextFrameTime = Math.max(nextFrameTime + MIN_FRAME_INTERVAL, now);
+			updateRenderAndGui(now);
+		}
+	};
 
 	// ============ Event Handlers ==============
 
@@ -207,6 +321,7 @@ public class ClientUI {
 		positions = new HashMap<>();
 		alivenessMap = new HashMap<>();
 		torchStatus = new HashMap<>();
+		inventory = Collections.emptyList();
 
 		render = new Rendering();
 		gui = new GUI(this, render);
@@ -310,15 +425,19 @@ public class ClientUI {
 	}
 
 	/**
-	 * When the client receives the string recording all players positions from
-	 * the server, this method will update the local table which records every
-	 * player's position.
+	 * When the client receives the players field or the nearby field of a
+	 * snapshot from the server, this method will update the local tables which
+	 * record every player's position, status of holding torch, and aliveness.
 	 *
-	 * @param posStr
-	 *            --- a string representation of all positions of players.
+	 * @param reader
+	 *            --- the reader of snapshots, positioned at the players field
+	 *            or the nearby field of a snapshot.
 	 */
-	public void parsePosition(String posStr) {
-		ParserUtilities.parsePosition(positions, posStr);
+	public void parsePlayers(SnapshotReader reader) {
+		int changed = reader.readPlayers(areas, positions, torchStatus, alivenessMap);
+		isPositionsChanged |= (changed & Snapshot.PLAYER_POSITION) != 0;
+		isTorchStatusChanged |= (changed & Snapshot.PLAYER_TORCH) != 0;
+		isAlivenessChanged |= (changed & Snapshot.PLAYER_ALIVE) != 0;
 	}
 
 	/**
@@ -342,11 +461,11 @@ public class ClientUI {
 	 */
 	public void parseTime(String timeStr) {
 		// update the hour, so the renderer knows when to do day/night shift
-		String[] timeStrs = timeStr.split(":");
-		hourOfTime = Integer.valueOf(timeStrs[0]);
+		hourOfTime = (timeStr.charAt(0) - '0') * 10 + (timeStr.charAt(1) - '0');
 
 		// update the time
 		time = timeStr;
+		isStateChanged = true;
 	}
 
 	/**
@@ -358,6 +477,7 @@ public class ClientUI {
 	 */
 	public void parseHealth(int health) {
 		this.health = health;
+		isStateChanged = true;
 	}
 
 	/**
@@ -369,42 +489,31 @@ public class ClientUI {
 	 */
 	public void parseVisibility(int visibility) {
 		this.visibility = visibility;
+		isStateChanged = true;
 	}
 
 	/**
 	 * When the client receives a inventory update from the server, this method
 	 * will update the local inventory.
 	 *
-	 * @param invenStr
-	 *            --- a string representation of inventory items.
+	 * @param buffer
+	 *            --- a buffer positioned at the inventory field of a snapshot.
 	 */
-	public void parseInventory(String invenStr) {
-		inventory = ParserUtilities.parseInventory(invenStr);
+	public void parseInventory(ByteBuffer buffer) {
+		inventory = Collections.unmodifiableList(ParserUtilities.parseSnapshotInventory(buffer));
+		isStateChanged = true;
 	}
 
 	/**
-	 * When the client receives the string recording all players aliveness from
-	 * the server, this method will update the local table which records every
-	 * player's aliveness.
+	 * When the client receives the sequence number of the last command applied
+	 * by the server, this method will update the local record.
 	 *
-	 * @param alivenessString
-	 *            --- a string representation of the aliveness of all players.
+	 * @param sequence
+	 *            --- the sequence number
 	 */
-	public void parseAliveStatus(String alivenessString) {
-		ParserUtilities.parseAliveness(alivenessMap, alivenessString);
-	}
-
-	/**
-	 * When the client receives the string recording the status of player
-	 * holding torch from the server, this method will update the local table
-	 * which records every player's status of holding torch.
-	 *
-	 * @param torchStatusStr
-	 *            --- a string representation of the status of player holding
-	 *            torch
-	 */
-	public void parseTorchStatus(String torchStatusStr) {
-		ParserUtilities.parseTorchStatus(torchStatus, torchStatusStr);
+	public void parseAck(int sequence) {
+		this.ackedSequence = sequence;
+		isStateChanged = true;
 	}
 
 	/**
@@ -513,32 +622,95 @@ public class ClientUI {
 	 */
 
 	/**
-	 * This method is called by ClockThread periodically to update the renderer
-	 * and GUI.
+	 * This method is called by the network thread every time a snapshot has
+	 * been applied. If the snapshot has changed anything, a new version of
+	 * state is published, which the next frame draws. Whatever hasn't changed
+	 * is shared with the previous version, including each of the player maps
+	 * which hasn't changed, so players moving around only copy the positions.
 	 */
-	public void updateRenderAndGui() {
+	public void publishState() {
+		if (!isPositionsChanged && !isTorchStatusChanged && !isAlivenessChanged && !isStateChanged) {
+			return;
+		}
+
+		ClientWorldState previous = state;
+		Map<Integer, Position> newPositions = previous.getPositions();
+		Map<Integer, Boolean> newTorchStatus = previous.getTorchStatus();
+		Map<Integer, Boolean> newAliveness = previous.getAliveness();
+		if (isPositionsChanged) {
+			newPositions = Collections.unmodifiableMap(new HashMap<>(positions));
+		}
+		if (isTorchStatusChanged) {
+			newTorchStatus = Collections.unmodifiableMap(new HashMap<>(torchStatus));
+		}
+		if (isAlivenessChanged) {
+			newAliveness = Collections.unmodifiableMap(new HashMap<>(alivenessMap));
+		}
+
+		state = new ClientWorldState(previous.getVersion() + 1, System.nanoTime(), newPositions, newTorchStatus,
+				newAliveness, inventory, health, visibility, hourOfTime, time, ackedSequence);
+		isPositionsChanged = false;
+		isTorchStatusChanged = false;
+		isAlivenessChanged = false;
+		isStateChanged = false;
+	}
+
+	/**
+	 * This method is called on the FX thread by the frame timer to update the
+	 * renderer and GUI from the latest state. It does nothing if that version
+	 * has been drawn, and no player is sliding. If only players are sliding,
+	 * only the minimap and the renderer are updated.
+	 *
+	 * @param now
+	 *            --- the time of this frame, as given by
+	 *            <i>System.nanoTime()</i>
+	 */
+	public void updateRenderAndGui(long now) {
 		// 0. necessary variables
+		ClientWorldState current = state;
+		interpolator.add(current);
+		boolean isSliding = interpolator.sample(now);
+		reconcilePrediction(current);
+		boolean isNewVersion = current.getVersion() != drawnVersion;
+		if (!isNewVersion && !isSliding && !wasSliding) {
+			return;
+		}
+		Map<Integer, Position> positions = getShownPositions(current);
 		Position playerLoc = positions.get(uid);
+		if (playerLoc == null) {
+			// not in any snapshot yet.
+			return;
+		}
+		// draw one more frame after sliding stops, so players end up still
+		wasSliding = isSliding;
+		drawnVersion = current.getVersion();
 		int areaId = playerLoc.areaId;
 		char[][] worldMap = areas.get(areaId);
+		int health = current.getHealth();
 
 		// 1. update minimap
-		gui.updateMinimap(playerLoc, uid, worldMap, visibility, positions);
+		gui.updateMinimap(playerLoc, uid, worldMap, current.getVisibility(), positions, interpolator);
 
 		// 2. update the renderer
-		render.render(playerLoc, worldMap, visibility, uid, avatars, positions, torchStatus, hourOfTime, alivenessMap);
+		render.render(playerLoc, worldMap, current.getVisibility(), uid, avatars, positions,
+				current.getTorchStatus(), current.getHourOfTime(), current.getAliveness(), interpolator);
+
+		if (!isNewVersion) {
+			// nothing else has changed
+			return;
+		}
 
 		// 3. update the health bar
 		gui.updateHealth(health);
 
 		// 4. update the inventory
-		gui.setInventory(inventory);
+		gui.setInventory(current.getInventory());
 
 		// 5. update area/room description
 		render.updateAreaDescription(descriptions.get(areaId));
 
 		// 6. display the time
-		gui.displayTime(time);
+		gui.displayTime(current.getTime());
 
 		// 6. update the map object description
 		if (descriptionToggle) {
@@ -558,6 +730,70 @@ public class ClientUI {
 
 	}
 
+	/**
+	 * Reconcile the prediction with the latest state, if it's a new version.
+	 * If the predicted position changes, the next frame redraws everything.
+	 *
+	 * @param current
+	 *            --- the latest state
+	 */
+	private void reconcilePrediction(ClientWorldState current) {
+		if (predictor == null || current.getVersion() == reconciledVersion) {
+			return;
+		}
+		Position before = predictor.getPosition();
+		Boolean isAlive = current.getAliveness().get(uid);
+		predictor.reconcile(current.getPositions().get(uid), current.getAckedSequence(), areas,
+				current.getPositions(), isAlive != null && isAlive);
+		reconciledVersion = current.getVersion();
+		if (before != null && !before.equals(predictor.getPosition())) {
+			drawnVersion = -1;
+		}
+	}
+
+	/**
+	 * Get every player's position as drawn, i.e. with this player at the
+	 * predicted position.
+	 *
+	 * @param current
+	 *            --- the latest state
+	 * @return --- every player's position, which is the same map as last time
+	 *         if nothing has moved.
+	 */
+	private Map<Integer, Position> getShownPositions(ClientWorldState current) {
+		Map<Integer, Position> from = current.getPositions();
+		Position prediction = predictor == null ? null : predictor.getPosition();
+		if (prediction == null || prediction.equals(from.get(uid))) {
+			return from;
+		}
+		if (from != shownFrom || !prediction.equals(shownPrediction)) {
+			Map<Integer, Position> positions = new HashMap<>(from);
+			positions.put(uid, prediction);
+			shownPositions = Collections.unmodifiableMap(positions);
+			shownFrom = from;
+			shownPrediction = prediction;
+		}
+		return shownPositions;
+	}
+
+	/**
+	 * Send a move or a turn to the server, and predict it, so that it's drawn
+	 * straight away.
+	 *
+	 * @param action
+	 *            --- the move or the turn
+	 */
+	private void sendMove(Packet action) {
+		int sequence = client.send(action);
+		if (predictor != null) {
+			ClientWorldState current = state;
+			Boolean isAlive = current.getAliveness().get(uid);
+			if (predictor.predict(action, sequence, areas, current.getPositions(), isAlive != null && isAlive)) {
+				drawnVersion = -1;
+			}
+		}
+	}
+
 	/**
 	 * Alert the Renderer and GUI to start the game.
 	 */
@@ -566,8 +802,8 @@ public class ClientUI {
 			@Override
 			public void run() {
 				gui.startGame();
-				clockThread = new ClockThread(DEFAULT_CLK_PERIOD, ClientUI.this);
-				clockThread.start();
+				predictor = new MovePredictor(uid);
+				frameTimer.start();
 			}
 		});
 		gui.setHealthBar(health, virus, userName, avatar);
@@ -666,6 +902,7 @@ public class ClientUI {
 					// toggle on/off the description
 					descriptionToggle = !descriptionToggle;
 					gui.setDescriptionOn(descriptionToggle);
+					drawnVersion = -1;
 				}
 			}
 		};
@@ -682,17 +919,17 @@ public class ClientUI {
 				KeyCode keyCode = event.getCode();
 				// getSorce will give the control which caused the event
 				if (keyCode == KeyCode.LEFT || keyCode == KeyCode.A) {
-					client.send(Packet.Left);
+					sendMove(Packet.Left);
 				} else if (keyCode == KeyCode.RIGHT || keyCode == KeyCode.D) {
-					client.send(Packet.Right);
+					sendMove(Packet.Right);
 				} else if (keyCode == KeyCode.UP || keyCode == KeyCode.W) {
-					client.send(Packet.Forward);
+					sendMove(Packet.Forward);
 				} else if (keyCode == KeyCode.DOWN || keyCode == KeyCode.S) {
-					client.send(Packet.Backward);
+					sendMove(Packet.Backward);
 				} else if (keyCode == KeyCode.Q) {
-					client.send(Packet.TurnLeft);
+					sendMove(Packet.TurnLeft);
 				} else if (keyCode == KeyCode.E) {
-					client.send(Packet.TurnRight);
+					sendMove(Packet.TurnRight);
 				} else if (keyCode == KeyCode.F) {
 					client.send(Packet.Unlock);
 				} else if (keyCode == KeyCode.G) {
@@ -730,13 +967,13 @@ public class ClientUI {
 			public void handle(MouseEvent event) {
 				if (event.toString().contains("Grid") && event.isSecondaryButtonDown() == false) {
 					// right click on inventory
-					if (inventory.size() != 0) {
+					if (state.getInventory().size() != 0) {
 						int itemX = (int) (event.getX() / 60);
 						int itemY = (int) (event.getY() / 60);
 						gui.setItemDescription(itemX, itemY);
 					}
 				} else if (event.getButton() == MouseButton.SECONDARY) {
-					if (inventory.size() != 0) {
+					if (state.getInventory().size() != 0) {
 						int itemX = (int) (event.getX() / 60);
 						int itemY = (int) (event.getY() / 60);
 						String item = gui.getItemDescription(itemX, itemY);
@@ -804,7 +1041,10 @@ public class ClientUI {
 	 *         out of boundary, a '\0' will be returned.
 	 */
 	private char getFrontMapElement() {
-		Position selfPos = positions.get(uid);
+		Position selfPos = getShownPositions(state).get(uid);
+		if (selfPos == null) {
+			return '\0';
+		}
 		Direction selfDir = selfPos.getDirection();
 		int currentAreaId = selfPos.areaId;
 		char[][] currentMap = areas.get(currentAreaId);
@@ -13,6 +13,7 @@ import javafx.scene.control.ProgressBar;
 import javafx.scene.control.TextField;
 import javafx.scene.control.TitledPane;
 import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
 import javafx.stage.Stage;
 import javafx.scene.Group;
 import javafx.scene.layout.BorderPane;
@@ -36,22 +37,17 @@ import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import java.awt.Point;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import javax.sound.sampled.AudioInputStream;
-import javax.sound.sampled.AudioSystem;
-import javax.sound.sampled.Clip;
-import javax.sound.sampled.LineUnavailableException;
-import javax.sound.sampled.UnsupportedAudioFileException;
 
 import server.game.player.Avatar;
 import server.game.player.Direction;
 import server.game.player.Player;
 import server.game.player.Position;
 import server.game.player.Virus;
+import client.Interpolator;
 import client.rendering.Images;
 import client.rendering.Rendering;
 import client.rendering.Side;
@@ -69,6 +65,8 @@ public class GUI extends Application {
 	private static final String STYLE_CSS = "/main.css";
 	// music file
 	private static final String BACKGROUND_MUSIC = "/background.wav";
+	// plays music and sound effects off the JavaFX application thread
+	private final SoundPlayer soundPlayer = new SoundPlayer();
 	/**
 	 * Constant width of the window
 	 */
@@ -93,6 +91,16 @@ public class GUI extends Application {
 	// controls
 	private Label objectNotificationLabel;
 	private Canvas miniMapCanvas;
+	// the whole area pre-rendered for the minimap, the area, and the size of
+	// each cell it's rendered at
+	private WritableImage minimapBase;
+	private char[][] minimapBaseArea;
+	private double minimapBaseCellSize;
+	// what the minimap shows now, so that it isn't redrawn for nothing
+	private char[][] minimapArea;
+	private int minimapVisibility = -1;
+	private Map<Integer, Position> minimapPositions;
+	private boolean minimapWasSliding;
 	private Label textAreaLable;
 	private TextField chatMessage;
 
@@ -821,7 +829,13 @@ public class GUI extends Application {
 	}
 
 	/**
-	 * This method draws a minimap on the minimap panel.
+	 * This method draws a minimap on the minimap panel. The cells are copied
+	 * from the whole area pre-rendered once, and only the arrows are drawn,
+	 * and nothing is drawn if neither the positions, the visibility nor the
+	 * area has changed, and no one is sliding. Other players are drawn
+	 * sliding from the cell they were on. The player is always in the middle
+	 * and cells keep their size next to the edge of the area, so the area is
+	 * only pre-rendered again when the area or the visibility changes.
 	 * 
 	 * @param playerLoc
 	 *            --- player's location
@@ -833,11 +847,21 @@ public class GUI extends Application {
 	 *            --- the visibility
 	 * @param positions
 	 *            --- a collection of every player's location.
+	 * @param motion
+	 *            --- where other players are shown sliding between snapshots
 	 * 
 	 * @author Hector (Fang Zhao 300364061)
 	 */
 	public void updateMinimap(Position playerLoc, int uId, char[][] areaMap, int visibility,
-			Map<Integer, Position> positions) {
+			Map<Integer, Position> positions, Interpolator motion) {
+		// nothing to redraw if no one has moved, including yourself. The map of
+		// positions is replaced whenever anyone moves.
+		boolean isSliding = motion.getAlpha() < 1;
+		if (!isSliding && !minimapWasSliding && areaMap == minimapArea && visibility == minimapVisibility
+				&& positions == minimapPositions) {
+			return;
+		}
+
 		// player's coordinate on board, and direction.
 		Position selfPosition = positions.get(uId);
 		int selfAreaId = selfPosition.areaId;
@@ -850,8 +874,6 @@ public class GUI extends Application {
 
 		// set up the canvas
 		GraphicsContext gc = miniMapCanvas.getGraphicsContext2D();
-		gc.setStroke(Color.BLACK);
-		gc.setLineWidth(1);
 
 		// clear the old drawing
 		gc.setFill(Color.rgb(50, 54, 57));
@@ -863,52 +885,107 @@ public class GUI extends Application {
 		int bound_left = selfX - visibility < 0 ? 0 : selfX - visibility;
 		int bound_right = selfX + visibility + 1 > width ? width : selfX + visibility + 1;
 
-		int divider = (bound_bottom - bound_top) > (bound_right - bound_left) ? bound_bottom - bound_top
-				: bound_right - bound_left;
-		double size = MINIMAP_CANVAS_SIZE / (divider);
-
-		// draw the minimap
-		Color color = null;
-		for (int row = bound_top; row < bound_bottom; row++) {
-			for (int col = bound_left; col < bound_right; col++) {
-				color = Images.MINIMAP_COLOR_TABLE.get(areaMap[row][col]);
-				if (color == null) {
-					// This is an unknown character/MapElement, shouldn't happen
-					color = Color.BLACK;
-				}
-				gc.setFill(color);
-				// draw the map elements
-				gc.fillRect((col - bound_left) * size, (row - bound_top) * size, size, size);
-				gc.strokeRect((col - bound_left) * size, (row - bound_top) * size, size, size);
-			}
+		// the cell size comes from the whole window, not the part of it left
+		// inside the area, so it only changes with the visibility, and the
+		// player stays in the middle even next to the edge of the area.
+		int origin_left = selfX - visibility;
+		int origin_top = selfY - visibility;
+		double size = MINIMAP_CANVAS_SIZE / (2 * visibility + 1);
+
+		// draw the visible part of the pre-rendered area
+		if (areaMap != minimapBaseArea || size != minimapBaseCellSize) {
+			minimapBase = renderMinimapBase(areaMap, size);
+			minimapBaseArea = areaMap;
+			minimapBaseCellSize = size;
 		}
-		// draw player arrow on map
-		for (Position p : positions.values()) {
-			// if this player is not in the same map,skip.
-			if (p.areaId != selfAreaId) {
+		double visibleWidth = (bound_right - bound_left) * size;
+		double visibleHeight = (bound_bottom - bound_top) * size;
+		gc.drawImage(minimapBase, bound_left * size, bound_top * size, visibleWidth, visibleHeight,
+				(bound_left - origin_left) * size, (bound_top - origin_top) * size, visibleWidth, visibleHeight);
+
+		// arrows still loading are drawn as nothing, so draw again next time.
+		boolean isComplete = true;
+		// draw other players' arrows on map, where they are sliding
+		for (Map.Entry<Integer, Position> entry : motion.getTo().entrySet()) {
+			Position p = entry.getValue();
+			// if this player is yourself, or not in the same map,skip.
+			if (entry.getKey() == uId || p.areaId != selfAreaId) {
 				continue;
 			}
 			// this player's x, y, and direction
 			int x = p.x;
 			int y = p.y;
-			Direction dir = p.getDirection();
+			Direction dir = motion.getFacing(entry.getKey());
 			// if this player isn't within visible distance, skip
 			if (Math.abs(x - selfX) > visibility || Math.abs(y - selfY) > visibility) {
 				continue;
 			}
-			Image img;
-			if (x == selfX && y == selfY) {
-				// it's yourself
-				img = Images.GREEN_ARROW.get(selDir);
-			} else {
-				// it's your enemy
-				img = Images.RED_ARROW.get(dir);
+			double cellX = x;
+			double cellY = y;
+			Position from = motion.getSlidingFrom(entry.getKey());
+			if (from != null) {
+				cellX = motion.lerp(from.x, x);
+				cellY = motion.lerp(from.y, y);
 			}
 
-			// draw arrows for players
-			gc.drawImage(img, (x - bound_left) * size, (y - bound_top) * size, size, size);
+			// it's your enemy
+			Image img = Images.RED_ARROW.get(dir);
+			gc.drawImage(img, (cellX - origin_left) * size, (cellY - origin_top) * size, size, size);
+			isComplete &= img.getProgress() >= 1;
+		}
+
+		// it's yourself, drawn on top
+		Image selfImg = Images.GREEN_ARROW.get(selDir);
+		gc.drawImage(selfImg, (selfX - origin_left) * size, (selfY - origin_top) * size, size, size);
+		isComplete &= selfImg.getProgress() >= 1;
+
+		// draw once more after sliding stops, so players end up still
+		minimapWasSliding = isSliding;
+		if (isComplete) {
+			minimapArea = areaMap;
+			minimapVisibility = visibility;
+			minimapPositions = positions;
+		} else {
+			minimapPositions = null;
 		}
+	}
+
+	/**
+	 * This method draws every cell of an area, as the minimap draws the
+	 * visible part of it, into an image. The minimap then only needs to copy
+	 * the visible part of the image.
+	 * 
+	 * @param areaMap
+	 *            --- the area map as a char[][]
+	 * @param size
+	 *            --- the size of each cell
+	 * @return --- the image of the whole area
+	 * 
+	 * @author Hector (Fang Zhao 300364061)
+	 */
+	private WritableImage renderMinimapBase(char[][] areaMap, double size) {
+		int width = areaMap[0].length;
+		int height = areaMap.length;
+		Canvas canvas = new Canvas(width * size, height * size);
+		GraphicsContext gc = canvas.getGraphicsContext2D();
+		gc.setStroke(Color.BLACK);
+		gc.setLineWidth(1);
 
+		Color color = null;
+		for (int row = 0; row < height; row++) {
+			for (int col = 0; col < width; col++) {
+				color = Images.MINIMAP_COLOR_TABLE.get(areaMap[row][col]);
+				if (color == null) {
+					// This is an unknown character/MapElement, shouldn't happen
+					color = Color.BLACK;
+				}
+				gc.setFill(color);
+				// draw the map elements
+				gc.fillRect(col * size, row * size, size, size);
+				gc.strokeRect(col * size, row * size, size, size);
+			}
+		}
+		return canvas.snapshot(null, null);
 	}
 
 	/**
@@ -1148,50 +1225,21 @@ public class GUI extends Application {
 
 	/**
 	 * this method is used to start the background music used thought out the
-	 * game.
+	 * game. It's played on the audio thread.
 	 */
 	public void startMusic() {
-		new Thread() {
-			public void run() {
-				try {
-					Clip clip = AudioSystem.getClip();
-					AudioInputStream ais = AudioSystem
-							.getAudioInputStream(this.getClass().getResource(BACKGROUND_MUSIC));
-					clip.open(ais);
-					clip.loop(Clip.LOOP_CONTINUOUSLY);
-				} catch (LineUnavailableException e) {
-					e.printStackTrace();
-				} catch (UnsupportedAudioFileException e) {
-					e.printStackTrace();
-				} catch (IOException e) {
-
-					e.printStackTrace();
-				}
-			}
-		}.start();
-
+		soundPlayer.loop(BACKGROUND_MUSIC);
 	}
 
 	/**
-	 * this method is used to play different sound effect during the game
+	 * this method is used to play different sound effect during the game. It
+	 * returns straight away, and the sound is played on the audio thread.
 	 * 
 	 * @param file
 	 *            --sound file name
 	 */
 	public void soundEffect(String file) {
-		try {
-			Clip clip = AudioSystem.getClip();
-			AudioInputStream ais = AudioSystem.getAudioInputStream(this.getClass().getResource(file));
-			clip.open(ais);
-			clip.start();
-		} catch (LineUnavailableException e) {
-			e.printStackTrace();
-		} catch (UnsupportedAudioFileException e) {
-			e.printStackTrace();
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-
+		soundPlayer.play(file);
 	}
 
 	/**
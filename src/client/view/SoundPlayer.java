@@ -0,0 +1,231 @@
+package client.view;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.Clip;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * This class plays sounds on its own thread, so that whoever asks for a sound,
+ * usually a key handler on the JavaFX application thread, never waits for
+ * disk I/O, decoding, or the audio device.
+ *
+ * <p>
+ * Every sound is read and decoded once, the first time it's played, and a
+ * small pool of clips is opened for it. Playing a sound starts a clip of the
+ * pool which isn't playing, or restarts the one started the longest ago if
+ * they all are, so a sound can overlap itself a few times without opening
+ * anything. If too many sounds are waiting to be played, e.g.
+ * a key is held down, new ones are dropped instead of piling up.
+ *
+ * <p>
+ * Sounds which can't be found or played are logged once, and then ignored.
+ *
+ * @author Hector (Fang Zhao 300364061)
+ *
+ */
+public class SoundPlayer {
+
+	/**
+	 * The number of clips opened for every sound, i.e. how many times a sound
+	 * can overlap itself.
+	 */
+	private static final int CLIPS_PER_SOUND = 3;
+
+	/**
+	 * The number of sounds allowed to wait to be played. More sounds are
+	 * dropped.
+	 */
+	private static final int MAX_PENDING = 8;
+
+	/**
+	 * The thread everything about sounds is done on.
+	 */
+	private final ExecutorService audioThread;
+
+	/**
+	 * The pool of clips of every sound, where the key is the sound path. A
+	 * sound which can't be played is mapped to null. It's only touched on the
+	 * audio thread.
+	 */
+	private final Map<String, ClipPool> pools = new HashMap<>();
+
+	/**
+	 * The number of sounds waiting to be played.
+	 */
+	private final AtomicInteger numPending = new AtomicInteger();
+
+	/**
+	 * Constructor
+	 */
+	public SoundPlayer() {
+		audioThread = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "Audio");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Play a sound once. It returns straight away.
+	 *
+	 * @param file
+	 *            --- the sound path
+	 */
+	public void play(String file) {
+		if (numPending.incrementAndGet() > MAX_PENDING) {
+			numPending.decrementAndGet();
+			return;
+		}
+
+		audioThread.execute(() -> {
+			try {
+				ClipPool pool = poolOf(file, CLIPS_PER_SOUND);
+				if (pool != null) {
+					pool.next().start();
+				}
+			} finally {
+				numPending.decrementAndGet();
+			}
+		});
+	}
+
+	/**
+	 * Play a sound over and over, e.g. the background music. It never
+	 * overlaps itself, so only one clip is opened for it. It returns straight
+	 * away.
+	 *
+	 * @param file
+	 *            --- the sound path
+	 */
+	public void loop(String file) {
+		audioThread.execute(() -> {
+			ClipPool pool = poolOf(file, 1);
+			if (pool != null) {
+				pool.next().loop(Clip.LOOP_CONTINUOUSLY);
+			}
+		});
+	}
+
+	/**
+	 * Get the pool of clips of a sound, and decode it if it's the first time.
+	 * This is only called on the audio thread.
+	 *
+	 * @param file
+	 *            --- the sound path
+	 * @param numClips
+	 *            --- the number of clips to open if it's the first time
+	 * @return --- the pool, or null if the sound can't be played.
+	 */
+	private ClipPool poolOf(String file, int numClips) {
+		if (pools.containsKey(file)) {
+			return pools.get(file);
+		}
+
+		ClipPool pool = null;
+		URL url = SoundPlayer.class.getResource(file);
+		if (url == null) {
+			System.out.println("[Log] Can't find sound " + file + ".");
+		} else {
+			try {
+				pool = new ClipPool(url, numClips);
+			} catch (LineUnavailableException | UnsupportedAudioFileException | IOException
+					| IllegalArgumentException e) {
+				// IllegalArgumentException is thrown if there is no audio
+				// device supporting the sound
+				System.out.println("[Log] Can't play sound " + file + ": " + e);
+			}
+		}
+		pools.put(file, pool);
+		return pool;
+	}
+
+	/**
+	 * A pool of clips of one sound, which share the decoded sound.
+	 */
+	private static class ClipPool {
+
+		/**
+		 * The clips, opened with the decoded sound.
+		 */
+		private final Clip[] clips;
+
+		/**
+		 * When every clip was last started, in nanoseconds.
+		 */
+		private final long[] startTimes;
+
+		/**
+		 * Constructor. The sound is read and decoded once, and every clip is
+		 * opened with it.
+		 *
+		 * @param url
+		 *            --- where the sound is
+		 * @param numClips
+		 *            --- the number of clips
+		 * @throws LineUnavailableException
+		 * @throws UnsupportedAudioFileException
+		 * @throws IOException
+		 */
+		ClipPool(URL url, int numClips) throws LineUnavailableException, UnsupportedAudioFileException, IOException {
+			AudioFormat format;
+			byte[] data;
+			try (AudioInputStream ais = AudioSystem.getAudioInputStream(url)) {
+				format = ais.getFormat();
+				data = ais.readAllBytes();
+			}
+
+			clips = new Clip[numClips];
+			startTimes = new long[numClips];
+			try {
+				for (int i = 0; i < clips.length; i++) {
+					clips[i] = AudioSystem.getClip();
+					clips[i].open(format, data, 0, data.length);
+				}
+			} catch (LineUnavailableException | RuntimeException e) {
+				for (Clip clip : clips) {
+					if (clip != null) {
+						clip.close();
+					}
+				}
+				throw e;
+			}
+		}
+
+		/**
+		 * Get a clip to play, which is rewound. It's one which isn't playing,
+		 * or the one started the longest ago if they all are.
+		 *
+		 * @return --- the clip
+		 */
+		Clip next() {
+			int chosen = 0;
+			for (int i = 0; i < clips.length; i++) {
+				if (!clips[i].isRunning()) {
+					chosen = i;
+					break;
+				}
+				if (startTimes[i] < startTimes[chosen]) {
+					chosen = i;
+				}
+			}
+
+			Clip clip = clips[chosen];
+			clip.stop();
+			clip.setFramePosition(0);
+			startTimes[chosen] = System.nanoTime();
+			return clip;
+		}
+	}
+
+}
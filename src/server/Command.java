@@ -0,0 +1,94 @@
+package server;
+
+/**
+ * This class represents a fully decoded Packet received from a client, waiting
+ * in the queue of {@link server.GameLoop GameLoop} to be applied to the game.
+ * An instance is immutable, so it can be handed from an I/O thread to the game
+ * thread safely.
+ *
+ * @author Hector (Fang Zhao 300364061)
+ *
+ */
+public class Command {
+
+	/**
+	 * The unique id of the client who sent the packet.
+	 */
+	public final int uid;
+
+	/**
+	 * The user name of the client who sent the packet.
+	 */
+	public final String userName;
+
+	/**
+	 * The packet
+	 */
+	public final Packet packet;
+
+	/**
+	 * The index following the packet, or -1 if the packet doesn't carry one.
+	 */
+	public final int index;
+
+	/**
+	 * The message following the packet, or null if the packet doesn't carry
+	 * one.
+	 */
+	public final String message;
+
+	/**
+	 * The sequence number of the command in its connection, or -1 if it's not
+	 * sent by the client, e.g. a disconnection noticed by the server. See
+	 * {@link server.InputFrame InputFrame}.
+	 */
+	public final int sequence;
+
+	/**
+	 * Constructor
+	 *
+	 * @param uid
+	 *            --- the unique id of the client who sent the packet
+	 * @param userName
+	 *            --- the user name of the client who sent the packet
+	 * @param packet
+	 *            --- the packet
+	 * @param index
+	 *            --- the index following the packet, or -1 if the packet
+	 *            doesn't carry one.
+	 * @param message
+	 *            --- the message following the packet, or null if the packet
+	 *            doesn't carry one.
+	 */
+	public Command(int uid, String userName, Packet packet, int index, String message) {
+		this(uid, userName, packet, index, message, -1);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param uid
+	 *            --- the unique id of the client who sent the packet
+	 * @param userName
+	 *            --- the user name of the client who sent the packet
+	 * @param packet
+	 *            --- the packet
+	 * @param index
+	 *            --- the index following the packet, or -1 if the packet
+	 *            doesn't carry one.
+	 * @param message
+	 *            --- the message following the packet, or null if the packet
+	 *            doesn't carry one.
+	 * @param sequence
+	 *            --- the sequence number of the command in its connection
+	 */
+	public Command(int uid, String userName, Packet packet, int index, String message, int sequence) {
+		this.uid = uid;
+		this.userName = userName;
+		this.packet = packet;
+		this.index = index;
+		this.message = message;
+		this.sequence = sequence;
+	}
+
+}
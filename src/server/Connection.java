@@ -0,0 +1,457 @@
+package server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import server.game.player.Avatar;
+import server.game.player.Player;
+import server.game.world.Area;
+
+/**
+ * This class represents a connected client when the server runs on a selector.
+ * It plays the same role as Receptionist, and speaks exactly the same protocol,
+ * but it never blocks: incoming bytes are buffered until a complete packet has
+ * arrived, and outgoing bytes are queued until the channel is writable.
+ *
+ * @author Hector (Fang Zhao 300364061)
+ *
+ */
+public class Connection {
+
+	/**
+	 * The stages a connection goes through, from being accepted to playing.
+	 */
+	private enum Stage {
+		/**
+		 * Maps and uid are sent, waiting for the avatar and the user name.
+		 */
+		Joining,
+
+		/**
+		 * The player has joined the game, waiting for others to join.
+		 */
+		Joined,
+
+		/**
+		 * In the lobby, waiting for the client to be ready.
+		 */
+		Lobby,
+
+		/**
+		 * The client is ready, waiting for others to be ready.
+		 */
+		Ready,
+
+		/**
+		 * The game is running.
+		 */
+		Playing
+	}
+
+	/**
+	 * The initial size of the buffer for incoming bytes. It grows if a longer
+	 * packet (e.g. a long chat message) arrives.
+	 */
+	private static final int INITIAL_BUFFER_SIZE = 1024;
+
+	/**
+	 * The server
+	 */
+	private final ServerMain server;
+
+	/**
+	 * The communicating channel.
+	 */
+	private final SocketChannel channel;
+
+	/**
+	 * The key of this channel registered with the selector.
+	 */
+	private final SelectionKey key;
+
+	/**
+	 * User (client) id of this connection.
+	 */
+	private final int uid;
+
+	/**
+	 * User (client) specified name of this connection.
+	 */
+	private String userName;
+
+	/**
+	 * Which stage this connection is in.
+	 */
+	private Stage stage;
+
+	/**
+	 * Bytes received from the client but not decoded yet. It is always kept in
+	 * write mode.
+	 */
+	private ByteBuffer incoming;
+
+	/**
+	 * Bytes being written to the client. It is in read mode, or null if
+	 * nothing is being written.
+	 */
+	private ByteBuffer outgoing;
+
+	/**
+	 * Bytes queued to be written to the client after <i>outgoing</i>.
+	 */
+	private final ByteArrayOutputStream staging;
+
+	/**
+	 * The stream used to encode data into <i>staging</i>, which keeps the
+	 * encoding identical to the blocking path.
+	 */
+	private final DataOutputStream output;
+
+	/**
+	 * The commands of the frame being decoded. It's reused for every frame.
+	 */
+	private final List<Command> frame = new ArrayList<>();
+
+	/**
+	 * The encoder of game status broadcast to the client.
+	 */
+	private final SnapshotEncoder snapshotEncoder;
+
+	/**
+	 * Constructor. It also registers the channel with the selector.
+	 *
+	 * @param server
+	 *            --- the server
+	 * @param channel
+	 *            --- the channel used to connect to client, in non-blocking
+	 *            mode.
+	 * @param selector
+	 *            --- the selector
+	 * @param uid
+	 *            --- the unique id of this client
+	 * @throws IOException
+	 */
+	public Connection(ServerMain server, SocketChannel channel, Selector selector, int uid) throws IOException {
+		this.server = server;
+		this.channel = channel;
+		this.uid = uid;
+		this.stage = Stage.Joining;
+		this.incoming = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+		this.staging = new ByteArrayOutputStream();
+		this.output = new DataOutputStream(staging);
+		this.snapshotEncoder = new SnapshotEncoder(uid);
+		this.key = channel.register(selector, SelectionKey.OP_READ, this);
+	}
+
+	/**
+	 * Send the game world maps as strings to client, and tell the client his
+	 * id.
+	 *
+	 * @throws IOException
+	 */
+	public void sendMapID() throws IOException {
+		// tell the client all maps
+		Map<Integer, Area> areas = server.getGame().getAreas();
+		for (Area map : areas.values()) {
+			output.writeUTF(map.toString());
+		}
+		output.writeUTF("Fin");
+
+		// tell the client his uid
+		output.writeInt(uid);
+		flush();
+	}
+
+	/**
+	 * Send the player's virus type to the client, and enter the lobby.
+	 *
+	 * @throws IOException
+	 */
+	public void sendVirusType() throws IOException {
+		output.writeInt(server.getGame().getPlayerVirus(uid).ordinal());
+		flush();
+		stage = Stage.Lobby;
+		decode();
+	}
+
+	/**
+	 * Send each player's avatar to the client.
+	 *
+	 * @throws IOException
+	 */
+	public void sendAvatars() throws IOException {
+		output.writeUTF(server.getGame().getAvatarsString());
+		flush();
+	}
+
+	/**
+	 * Tell the client that the game starts.
+	 *
+	 * @throws IOException
+	 */
+	public void setGameRunning() throws IOException {
+		output.writeByte(Packet.Ready.toByte());
+		flush();
+		stage = Stage.Playing;
+		decode();
+	}
+
+	/**
+	 * Broadcast the game status to the client. If the client hasn't received
+	 * the last broadcast yet, this one is skipped, because it's going to be
+	 * out of date anyway.
+	 *
+	 * @throws IOException
+	 */
+	public void sendGameState() throws IOException {
+		if (isBacklogged()) {
+			return;
+		}
+		snapshotEncoder.writeSnapshot(output, server, server.getSharedSnapshot());
+		flush();
+	}
+
+	/**
+	 * Has the player joined the game, i.e. the avatar and the user name are
+	 * received?
+	 *
+	 * @return --- true/false for yes/no
+	 */
+	public boolean hasJoined() {
+		return stage != Stage.Joining;
+	}
+
+	/**
+	 * Is this client ready to enter game?
+	 *
+	 * @return --- true/false for yes/no
+	 */
+	public boolean isReady() {
+		return stage == Stage.Ready || stage == Stage.Playing;
+	}
+
+	/**
+	 * Get the unique id of this client.
+	 *
+	 * @return --- the unique id of this client
+	 */
+	public int getUid() {
+		return uid;
+	}
+
+	/**
+	 * This method is called when the channel is readable. It reads everything
+	 * available, and handles every complete packet.
+	 *
+	 * @throws IOException
+	 *             --- if the client has disconnected.
+	 */
+	public void read() throws IOException {
+		while (true) {
+			if (!incoming.hasRemaining()) {
+				// a long packet, make some room for it
+				ByteBuffer larger = ByteBuffer.allocate(incoming.capacity() * 2);
+				incoming.flip();
+				larger.put(incoming);
+				incoming = larger;
+			}
+
+			int n = channel.read(incoming);
+			if (n < 0) {
+				throw new IOException("End of stream");
+			} else if (n == 0) {
+				break;
+			}
+		}
+
+		decode();
+	}
+
+	/**
+	 * This method is called when the channel is writable, or when something
+	 * new is queued. It writes as much as the channel can take, and asks the
+	 * selector to tell us when the channel is writable again if anything is
+	 * left.
+	 *
+	 * @throws IOException
+	 */
+	public void flush() throws IOException {
+		while (true) {
+			if (outgoing == null || !outgoing.hasRemaining()) {
+				if (staging.size() == 0) {
+					break;
+				}
+				outgoing = ByteBuffer.wrap(staging.toByteArray());
+				staging.reset();
+			}
+
+			channel.write(outgoing);
+
+			if (outgoing.hasRemaining()) {
+				// the socket buffer is full, try again when it's writable.
+				key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+				return;
+			}
+		}
+
+		key.interestOps(SelectionKey.OP_READ);
+	}
+
+	/**
+	 * Close the connection, and let the game loop disconnect the player.
+	 */
+	public void close() {
+		server.addCommand(new Command(uid, userName, Packet.Disconnect, -1, null));
+		key.cancel();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			System.out.println("I/O error. But who cares, Clients disconnected anyway. ");
+		}
+		System.err.println("Player " + uid + " disconnected.");
+	}
+
+	/**
+	 * Is there anything queued but not written to the client yet?
+	 *
+	 * @return --- true/false for yes/no
+	 */
+	private boolean isBacklogged() {
+		return (outgoing != null && outgoing.hasRemaining()) || staging.size() > 0;
+	}
+
+	/**
+	 * Decode and handle every complete packet in the buffer. Bytes that arrive
+	 * earlier than the current stage expects are kept in the buffer, just like
+	 * they would be kept in the stream on the blocking path.
+	 *
+	 * @throws IOException
+	 */
+	private void decode() throws IOException {
+		incoming.flip();
+		try {
+			while (incoming.hasRemaining()) {
+				if (stage == Stage.Joining) {
+					// avatar index, then user name
+					if (incoming.remaining() < 1 + 2) {
+						break;
+					}
+					int start = incoming.position();
+					byte avatarIndex = incoming.get();
+					String name = readUTF();
+					if (name == null) {
+						incoming.position(start);
+						break;
+					}
+					userName = name;
+					server.getGame().joinPlayer(new Player(uid, Avatar.get(avatarIndex), name));
+					stage = Stage.Joined;
+					System.out.println("initialisation done. joined player: " + uid + " with avatar " + avatarIndex);
+				} else if (stage == Stage.Lobby) {
+					// wait until the user is ready
+					if (Packet.fromByte(incoming.get()) == Packet.Ready) {
+						stage = Stage.Ready;
+					}
+				} else if (stage == Stage.Playing) {
+					// a whole frame of commands, see InputFrame
+					int start = incoming.position();
+					if (!decodeFrame()) {
+						incoming.position(start);
+						break;
+					}
+				} else {
+					// not expecting anything at this stage
+					break;
+				}
+			}
+		} finally {
+			incoming.compact();
+		}
+	}
+
+	/**
+	 * Decode a frame of commands from the buffer, and let the game loop apply
+	 * them. Nothing is applied unless the whole frame has arrived.
+	 *
+	 * @return --- true if the frame is decoded, or false if it hasn't
+	 *         completely arrived yet, in which case the buffer position is
+	 *         undefined.
+	 * @throws IOException
+	 *             if the client disconnects
+	 */
+	private boolean decodeFrame() throws IOException {
+		if (incoming.remaining() < InputFrame.HEADER_SIZE) {
+			return false;
+		}
+		int sequence = incoming.getInt();
+		int count = incoming.get() & 0xFF;
+
+		frame.clear();
+		for (int i = 0; i < count; i++) {
+			if (!incoming.hasRemaining()) {
+				return false;
+			}
+			Packet packet = Packet.fromByte(incoming.get());
+
+			// read the index or message following it, if there is any
+			int index = -1;
+			String message = null;
+			if (packet.hasIndex()) {
+				if (incoming.remaining() < 4) {
+					return false;
+				}
+				index = incoming.getInt();
+			} else if (packet.hasString()) {
+				message = readUTF();
+				if (message == null) {
+					return false;
+				}
+			}
+			frame.add(new Command(uid, userName, packet, index, message, sequence + i));
+		}
+
+		// let the game loop apply them
+		for (Command command : frame) {
+			if (command.packet == Packet.Disconnect) {
+				throw new IOException("Client disconnected");
+			}
+			server.addCommand(command);
+		}
+		return true;
+	}
+
+	/**
+	 * Read a String written by <i>DataOutputStream.writeUTF()</i> from the
+	 * buffer.
+	 *
+	 * @return --- the String, or null if it hasn't completely arrived yet, in
+	 *         which case the buffer position is undefined.
+	 * @throws IOException
+	 */
+	private String readUTF() throws IOException {
+		if (incoming.remaining() < 2) {
+			return null;
+		}
+
+		int length = incoming.getShort() & 0xFFFF;
+		if (incoming.remaining() < length) {
+			return null;
+		}
+
+		byte[] bytes = new byte[2 + length];
+		incoming.position(incoming.position() - 2);
+		incoming.get(bytes);
+		return new DataInputStream(new ByteArrayInputStream(bytes)).readUTF();
+	}
+
+}
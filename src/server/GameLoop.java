@@ -0,0 +1,243 @@
+package server;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import server.game.Game;
+
+/**
+ * This class is the only thread that changes the game once it starts. I/O
+ * threads decode packets into {@link server.Command Command}s and put them in
+ * a lock-free queue; on every tick the game loop drains the queue, applies
+ * every command in a batch, advances the world time, and builds the shared
+ * snapshot for the broadcast. Game is not thread-safe, and this way it doesn't
+ * need to be.
+ *
+ * @author Hector (Fang Zhao 300364061)
+ *
+ */
+public class GameLoop extends Thread {
+
+	/**
+	 * The period between every tick, in milliseconds.
+	 */
+	public static final int TICK_PERIOD = ServerMain.DEFAULT_BROADCAST_CLK_PERIOD;
+
+	/**
+	 * The period between every time the world advances, in milliseconds, i.e.
+	 * the tick rate of the world. See {@link server.game.Game #tick() tick}.
+	 * It is one second unless set otherwise by the system property
+	 * <i>plague.worldTickPeriod</i>.
+	 */
+	public static final int WORLD_TICK_PERIOD = Math.max(1, Integer.getInteger("plague.worldTickPeriod", 1000));
+
+	/**
+	 * The server
+	 */
+	private final ServerMain server;
+
+	/**
+	 * Commands waiting to be applied. Any thread can put commands in, only the
+	 * game loop takes them out.
+	 */
+	private final Queue<Command> commands;
+
+	/**
+	 * The sequence number of the last command applied from every client, where
+	 * the key is the player id. It's only touched on the game loop thread.
+	 */
+	private final Map<Integer, Integer> processedSequences = new HashMap<>();
+
+	/**
+	 * Called after every tick, or null if nobody cares.
+	 */
+	private volatile Runnable tickListener;
+
+	/**
+	 * A flag indicating whether the game loop is running or not.
+	 */
+	private volatile boolean isRunning = true;
+
+	/**
+	 * The number of ticks run so far.
+	 */
+	private volatile long ticks = 0;
+
+	/**
+	 * The number of commands applied so far.
+	 */
+	private volatile long commandsApplied = 0;
+
+	/**
+	 * The largest number of commands applied in a single tick.
+	 */
+	private volatile int maxBatchSize = 0;
+
+	/**
+	 * Constructor
+	 *
+	 * @param server
+	 *            --- the server
+	 */
+	public GameLoop(ServerMain server) {
+		super("GameLoop");
+		this.server = server;
+		this.commands = new ConcurrentLinkedQueue<>();
+	}
+
+	/**
+	 * Set what to do after every tick, e.g. to tell the I/O thread a new
+	 * snapshot is ready. It is called on the game loop thread.
+	 *
+	 * @param tickListener
+	 *            --- the listener, or null if nobody cares.
+	 */
+	public void setTickListener(Runnable tickListener) {
+		this.tickListener = tickListener;
+	}
+
+	/**
+	 * Put a command in the queue. It will be applied on the next tick, or on
+	 * the first tick if the game loop hasn't started yet. This method can be
+	 * called from any thread.
+	 *
+	 * @param command
+	 *            --- the command
+	 */
+	public void enqueue(Command command) {
+		commands.offer(command);
+	}
+
+	/**
+	 * Stop the game loop after the current tick.
+	 */
+	public void shutdown() {
+		isRunning = false;
+		LockSupport.unpark(this);
+	}
+
+	/**
+	 * Get the number of ticks run so far.
+	 *
+	 * @return --- the number of ticks
+	 */
+	public long getTicks() {
+		return ticks;
+	}
+
+	/**
+	 * Get the number of commands applied so far.
+	 *
+	 * @return --- the number of commands
+	 */
+	public long getCommandsApplied() {
+		return commandsApplied;
+	}
+
+	/**
+	 * Get the largest number of commands applied in a single tick.
+	 *
+	 * @return --- the largest batch size
+	 */
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	/**
+	 * Get the sequence number of the last command applied from every client.
+	 * It must be called on the game loop thread, e.g. while building the
+	 * snapshot.
+	 *
+	 * @return --- the sequence numbers, where the key is the player id. A
+	 *         client which hasn't sent any command isn't in it.
+	 */
+	public Map<Integer, Integer> getProcessedSequences() {
+		return processedSequences;
+	}
+
+	/**
+	 * This method is called when the game loop thread runs. It ticks at a
+	 * fixed rate until it's shut down.
+	 */
+	@Override
+	public void run() {
+		long tickNanos = TimeUnit.MILLISECONDS.toNanos(TICK_PERIOD);
+		long worldTickNanos = TimeUnit.MILLISECONDS.toNanos(WORLD_TICK_PERIOD);
+		long nextTick = System.nanoTime();
+		long nextWorldTick = nextTick + worldTickNanos;
+
+		while (isRunning) {
+			long now = System.nanoTime();
+
+			// 1. apply every command received since last tick.
+			int batchSize = applyCommands();
+
+			// 2. advance the world time, if it's time to.
+			Game game = server.getGame();
+			while (now - nextWorldTick >= 0) {
+				game.tick();
+				nextWorldTick += worldTickNanos;
+			}
+
+			// 3. build the snapshot to broadcast.
+			server.buildSharedSnapshot();
+
+			ticks++;
+			commandsApplied += batchSize;
+			if (batchSize > maxBatchSize) {
+				maxBatchSize = batchSize;
+			}
+
+			Runnable listener = tickListener;
+			if (listener != null) {
+				listener.run();
+			}
+
+			// a nap till the next tick. If we're falling behind, don't try to
+			// catch up with a burst of ticks.
+			nextTick += tickNanos;
+			if (nextTick - System.nanoTime() < 0) {
+				nextTick = System.nanoTime();
+			}
+			while (isRunning) {
+				long wait = nextTick - System.nanoTime();
+				if (wait <= 0) {
+					break;
+				}
+				LockSupport.parkNanos(this, wait);
+			}
+		}
+
+		System.out.println("[Log] Game loop stopped. " + commandsApplied + " commands applied in " + ticks
+				+ " ticks, at most " + maxBatchSize + " in a tick.");
+	}
+
+	/**
+	 * Drain the queue, and apply every command to the game.
+	 *
+	 * @return --- the number of commands applied
+	 */
+	private int applyCommands() {
+		int count = 0;
+		Command command;
+		while ((command = commands.poll()) != null) {
+			try {
+				PacketHandler.handle(server, server.getGame(), command.uid, command.userName, command.packet,
+						command.index, command.message);
+			} catch (RuntimeException e) {
+				// one bad command shouldn't stop the game for everyone.
+				e.printStackTrace();
+			}
+			if (command.sequence >= 0) {
+				processedSequences.put(command.uid, command.sequence);
+			}
+			count++;
+		}
+		return count;
+	}
+
+}
@@ -0,0 +1,55 @@
+package server;
+
+/**
+ * This class defines the binary format of the commands sent from client to
+ * server while the game is running. The client sends commands in frames, and
+ * every command queued since the previous frame goes in the next one, so a
+ * burst of key presses is written and flushed once instead of once per key.
+ *
+ * <p>
+ * Every command of a connection has a sequence number, which starts from 0
+ * and increases by one for every command. The commands in a frame are
+ * numbered one after another from the sequence number of the frame. The
+ * server tells every client the sequence number of the last command it has
+ * applied, see {@link server.Snapshot#ACK Snapshot.ACK}, so that the client
+ * knows which of its commands have taken effect.
+ *
+ * <p>
+ * The format of a frame is:
+ * <li>int: the sequence number of the first command
+ * <li>byte: the number of commands, from 1 to {@link #MAX_COMMANDS
+ * MAX_COMMANDS}, unsigned
+ * <li>the commands, one after another.
+ *
+ * <p>
+ * The format of a command is:
+ * <li>byte: the {@link server.Packet Packet}
+ * <li>int: the index, if the packet has one, see
+ * {@link server.Packet#hasIndex() hasIndex}
+ * <li>string: the message, if the packet has one, see
+ * {@link server.Packet#hasString() hasString}. A string is written by
+ * <i>DataOutputStream.writeUTF()</i>.
+ *
+ * @author Hector (Fang Zhao 300364061)
+ *
+ */
+public class InputFrame {
+
+	/**
+	 * The most commands in a frame. More commands go in the next frame.
+	 */
+	public static final int MAX_COMMANDS = 255;
+
+	/**
+	 * The size of the header, i.e. the sequence number and the number of
+	 * commands.
+	 */
+	public static final int HEADER_SIZE = 5;
+
+	/**
+	 * Private constructor. No instantiation is allowed.
+	 */
+	private InputFrame() {
+	}
+
+}
@@ -0,0 +1,153 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import server.SharedSnapshot.PlayerStatus;
+import server.game.IntMap;
+import server.game.player.Position;
+
+/**
+ * This class buckets players by where they are, so that the players near
+ * someone, i.e. in his area of interest, can be found by looking at a few
+ * buckets around him rather than at every player in game. Every area is
+ * divided into square buckets of {@link #BUCKET_SIZE} tiles, and a bucket
+ * only exists if someone is in it.
+ *
+ * <p>
+ * The area of interest of a player is every tile in his area within
+ * {@link #radiusOf(int)} tiles of him in both directions, which covers
+ * everything his client can show. A client is told the position and torch
+ * status of the players in it, so the work done per client grows with how
+ * crowded it is around the player, not with how many players are in game.
+ *
+ * <p>
+ * It's built once per tick by {@link server.SnapshotBuilder
+ * SnapshotBuilder}, and then only read, so it can be safely read by any
+ * thread once it's published in a {@link server.SharedSnapshot
+ * SharedSnapshot}.
+ *
+ * @author Hector (Fang Zhao 300364061)
+ *
+ */
+public class InterestGrid {
+
+	/**
+	 * The width and the height of a bucket, in tiles.
+	 */
+	public static final int BUCKET_SIZE = 8;
+
+	/**
+	 * The number of bits a bucket coordinate takes in the key.
+	 */
+	private static final int COORDINATE_BITS = 16;
+
+	/**
+	 * The mask of a bucket coordinate in the key.
+	 */
+	private static final int COORDINATE_MASK = (1 << COORDINATE_BITS) - 1;
+
+	/**
+	 * The players in every bucket of every area, where the outer key is the
+	 * area id, and the inner key is made of the coordinates of the bucket, see
+	 * {@link #keyOf(int, int)}. Both are int keys, so finding a bucket never
+	 * boxes anything.
+	 */
+	private final IntMap<IntMap<List<PlayerStatus>>> areas = new IntMap<>();
+
+	/**
+	 * Get how far the area of interest of a player reaches, for the given
+	 * visibility. The view shows one row beyond the visibility, and it widens
+	 * with the distance, to about twice as many columns either side as rows
+	 * ahead, so the area of interest reaches twice that far.
+	 *
+	 * @param visibility
+	 *            --- the visibility of the player
+	 * @return --- the number of tiles the area of interest reaches in every
+	 *         direction
+	 */
+	public static int radiusOf(int visibility) {
+		return 2 * (visibility + 1);
+	}
+
+	/**
+	 * Put a player in the bucket he is in. Nothing is done if he isn't
+	 * anywhere yet. It's only called while the grid is being built.
+	 *
+	 * @param status
+	 *            --- the status of the player
+	 */
+	void add(PlayerStatus status) {
+		Position pos = status.position;
+		if (pos == null) {
+			return;
+		}
+
+		IntMap<List<PlayerStatus>> buckets = areas.get(pos.areaId);
+		if (buckets == null) {
+			buckets = new IntMap<>();
+			areas.put(pos.areaId, buckets);
+		}
+
+		int key = keyOf(pos.x / BUCKET_SIZE, pos.y / BUCKET_SIZE);
+		List<PlayerStatus> bucket = buckets.get(key);
+		if (bucket == null) {
+			bucket = new ArrayList<>();
+			buckets.put(key, bucket);
+		}
+		bucket.add(status);
+	}
+
+	/**
+	 * Find every player in the area of interest around the given position,
+	 * including the player at it.
+	 *
+	 * @param center
+	 *            --- the position in the middle of the area of interest
+	 * @param radius
+	 *            --- how many tiles it reaches in every direction
+	 * @param result
+	 *            --- where the players found are added
+	 */
+	public void collect(Position center, int radius, List<PlayerStatus> result) {
+		IntMap<List<PlayerStatus>> buckets = areas.get(center.areaId);
+		if (buckets == null) {
+			return;
+		}
+
+		int left = Math.max(0, center.x - radius) / BUCKET_SIZE;
+		int right = (center.x + radius) / BUCKET_SIZE;
+		int top = Math.max(0, center.y - radius) / BUCKET_SIZE;
+		int bottom = (center.y + radius) / BUCKET_SIZE;
+
+		for (int by = top; by <= bottom; by++) {
+			for (int bx = left; bx <= right; bx++) {
+				List<PlayerStatus> bucket = buckets.get(keyOf(bx, by));
+				if (bucket == null) {
+					continue;
+				}
+				for (int i = 0; i < bucket.size(); i++) {
+					PlayerStatus status = bucket.get(i);
+					Position pos = status.position;
+					if (Math.abs(pos.x - center.x) <= radius && Math.abs(pos.y - center.y) <= radius) {
+						result.add(status);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Make the key of a bucket in its area.
+	 *
+	 * @param bx
+	 *            --- the x coordinate of the bucket
+	 * @param by
+	 *            --- the y coordinate of the bucket
+	 * @return --- the key
+	 */
+	private static int keyOf(int bx, int by) {
+		return ((by & COORDINATE_MASK) << COORDINATE_BITS) | (bx & COORDINATE_MASK);
+	}
+
+}
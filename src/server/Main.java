@@ -4,7 +4,8 @@ import client.view.ClientUI;
 
 /**
  * This is the main class of "Plague". Run server with "-server" argument, or
- * run client with "-client" argument.
+ * run client with "-client" argument. Add "-blocking" after "-server" to run
+ * one thread per client instead of the selector.
  * 
  * @author Hector (Fang Zhao 300364061)
  * 
@@ -16,9 +17,15 @@ public class Main {
 	 * 
 	 * @param args
 	 *            --- the argument. Run server with "-server" argument, or run
-	 *            client with "-client" argument.
+	 *            client with "-client" argument. Add "-blocking" after
+	 *            "-server" to run one thread per client.
 	 */
 	public static void main(String[] args) {
+		if (args.length == 2 && "-server".equals(args[0]) && "-blocking".equals(args[1])) {
+			new ServerMain(true);
+			return;
+		}
+
 		if (args.length != 1) {
 			System.out.println("use \"-server\" to start server, and use \"-client\" to start client");
 			return;
@@ -111,6 +111,26 @@ public enum Packet {
 		return (byte) this.ordinal();
 	}
 
+	/**
+	 * Is this packet followed by an integer? Such an integer is an index in
+	 * inventory.
+	 *
+	 * @return --- true/false for yes/no
+	 */
+	public boolean hasIndex() {
+		return this == UseItem || this == DestroyItem || this == PutItemIntoContainer;
+	}
+
+	/**
+	 * Is this packet followed by a String? Such a String is an extra message,
+	 * e.g. a chat message.
+	 *
+	 * @return --- true/false for yes/no
+	 */
+	public boolean hasString() {
+		return this == Chat;
+	}
+
 	/**
 	 * Convert a byte back to a Packet.
 	 *
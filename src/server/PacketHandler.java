@@ -0,0 +1,113 @@
+package server;
+
+import server.game.Game;
+
+/**
+ * This class applies the commands received from clients to the game. It is
+ * called by the {@link server.GameLoop GameLoop} for commands from both the
+ * blocking Receptionist threads and the selector-based server, so both I/O
+ * paths understand exactly the same set of Packets.
+ *
+ * @author Hector (Fang Zhao 300364061)
+ *
+ */
+public class PacketHandler {
+
+	/**
+	 * Private constructor. No instantiation is allowed.
+	 */
+	private PacketHandler() {
+	}
+
+	/**
+	 * Apply a packet received from a client to the game. The packet should be
+	 * fully decoded, i.e. the index or message following it (if there is any)
+	 * has already been read from the connection. For Disconnect, the player is
+	 * removed from the game, but closing the connection is the job of the I/O
+	 * layer.
+	 *
+	 * @param server
+	 *            --- the server
+	 * @param game
+	 *            --- the game instance
+	 * @param uid
+	 *            --- the unique id of the client who sent the packet
+	 * @param userName
+	 *            --- the user name of the client who sent the packet
+	 * @param packet
+	 *            --- the packet
+	 * @param index
+	 *            --- the index following the packet, see
+	 *            {@link server.Packet #hasIndex() hasIndex}. It is ignored if
+	 *            the packet doesn't carry one.
+	 * @param message
+	 *            --- the message following the packet, see
+	 *            {@link server.Packet #hasString() hasString}. It is ignored if
+	 *            the packet doesn't carry one.
+	 */
+	public static void handle(ServerMain server, Game game, int uid, String userName, Packet packet, int index,
+			String message) {
+		// what did the client want?
+		switch (packet) {
+		case Forward:
+			game.playerMoveForward(uid);
+			break;
+		case Backward:
+			game.playerMoveBackward(uid);
+			break;
+		case Left:
+			game.playerMoveLeft(uid);
+			break;
+		case Right:
+			game.playerMoveRight(uid);
+			break;
+		case TurnLeft:
+			game.playerTurnLeft(uid);
+			break;
+		case TurnRight:
+			game.playerTurnRight(uid);
+			break;
+		case Transit:
+			if (!game.playerTransit(uid)) {
+				server.addNotification(uid, "Can't enter/exit the room");
+			}
+			break;
+		case UseItem:
+			game.playerUseItem(uid, index);
+			break;
+		case DestroyItem:
+			game.playerDestroyItem(uid, index);
+			break;
+		case TakeOutItem:
+			if (!game.playerTakeItemsFromContainer(uid)) {
+				server.addNotification(uid, "T");
+			}
+			break;
+		case PutItemIntoContainer:
+			if (!game.playerPutItemIntoContainer(uid, index)) {
+				server.addNotification(uid, "P");
+			}
+			break;
+		case Unlock:
+			if (!game.playerUnlockLockable(uid)) {
+				server.addNotification(uid, "You don't have correct key.");
+			}
+			break;
+		case Save:
+			server.save(uid);
+			break;
+		case Load:
+			server.load(uid);
+			break;
+		case Chat:
+			server.addMessage("[" + userName + "] " + message);
+			break;
+		case Disconnect:
+			game.disconnectPlayer(uid);
+			break;
+		default:
+			break;
+		}
+	}
+
+}
@@ -7,6 +7,8 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.Socket;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
 
 import server.game.Game;
 import server.game.player.Avatar;
@@ -60,16 +62,37 @@ public class Receptionist extends Thread {
 	private DataOutputStream output;
 
 	/**
-	 * A flag indicating whether this client is ready to enter game. If it's
-	 * false, the server will keep this client in lobby waiting for all clients
-	 * ready.
+	 * This latch is released when this client is ready to enter game, or has
+	 * gone. Until then, the server keeps this client in lobby waiting for all
+	 * clients ready.
 	 */
-	private boolean isClientReady = false;
+	private final CountDownLatch clientReady = new CountDownLatch(1);
+
+	/**
+	 * A flag indicating whether this client is ready to enter game.
+	 */
+	private volatile boolean isClientReady = false;
+
+	/**
+	 * This latch is released when the server tells the client to enter game.
+	 */
+	private final CountDownLatch gameStarted = new CountDownLatch(1);
 
 	/**
 	 * A flag indicating whether the game is running or not.
 	 */
-	private boolean isGameRunning = false;
+	private volatile boolean isGameRunning = false;
+
+	/**
+	 * The thread reading commands from the client while the game is running.
+	 * This thread, meanwhile, writes snapshots to the client.
+	 */
+	private Thread reader;
+
+	/**
+	 * The encoder of game status broadcast to the client.
+	 */
+	private final SnapshotEncoder snapshotEncoder;
 
 	/**
 	 * Constructor. It also initialises the socket input and output.
@@ -88,6 +111,7 @@ public class Receptionist extends Thread {
 		this.game = game;
 		this.socket = socket;
 		this.uid = uid;
+		this.snapshotEncoder = new SnapshotEncoder(uid);
 
 		// create the output and input stream.
 		try {
@@ -180,259 +204,138 @@ public class Receptionist extends Thread {
 		return isClientReady;
 	}
 
+	/**
+	 * Wait until this client is ready to enter game, or has gone.
+	 *
+	 * @throws InterruptedException
+	 */
+	public void awaitReady() throws InterruptedException {
+		clientReady.await();
+	}
+
 	/**
 	 * This method usually is called by server to tell the client ready to enter
 	 * game.
 	 */
 	public void setGameRunning() {
 		this.isGameRunning = true;
+		gameStarted.countDown();
 	}
 
 	/**
-	 * This method is called when the server Receptionist thread runs. It
-	 * broadcast the pre-configuration informations like area maps, in-game
-	 * player avatars, etc, and runs in loop to constantly broadcast the new
-	 * game state.
+	 * This method is called by the game loop every time a new snapshot has
+	 * been built. It wakes up this thread to send it, if it's waiting.
+	 */
+	public void snapshotReady() {
+		LockSupport.unpark(this);
+	}
+
+	/**
+	 * This method is called when the server Receptionist thread runs. It waits
+	 * in lobby until the client and then the game are ready. While the game is
+	 * running, this thread sends every new snapshot as soon as the game loop
+	 * builds it, and another thread blocks on reading commands from the
+	 * client.
 	 */
 	@Override
 	public void run() {
 		try {
-
-			// wait until all users are ready
-			while (true) {
-				if (input.available() > 0) {
-					Packet packet = Packet.fromByte(input.readByte());
-					if (packet == Packet.Ready) {
-						isClientReady = true;
-						break;
-					}
-				}
-
-				try {
-					Thread.sleep(ServerMain.DEFAULT_BROADCAST_CLK_PERIOD);
-				} catch (InterruptedException e) {
-					// Should never happen
-				}
+			// wait until the client is ready
+			while (Packet.fromByte(input.readByte()) != Packet.Ready) {
+				// nothing else is expected in lobby
 			}
+			isClientReady = true;
+			clientReady.countDown();
 
 			// don't start the game until server tell us to start.
 			// (when all clients are ready).
-			while (true) {
-				if (isGameRunning) {
-					output.writeByte(Packet.Ready.toByte());
-					output.flush();
-					break;
-				}
+			gameStarted.await();
+			output.writeByte(Packet.Ready.toByte());
+			output.flush();
 
-				try {
-					Thread.sleep(ServerMain.DEFAULT_BROADCAST_CLK_PERIOD);
-				} catch (InterruptedException e) {
-					// Should never happen
-				}
-			}
+			reader = new Thread(this::readCommands, getName() + "-reader");
+			reader.start();
 
-			// last, let the receptionist constantly communicate with clients.
+			// last, send every snapshot built by the game loop.
+			long sentTick = -1;
 			while (isGameRunning) {
-				// broadcast the game status.
-				String str = gameToString();
-				output.writeUTF(str);
-				output.flush();
-
-				// check if clients has requested anything
-				if (input.available() > 0) {
-					// read input from client
-					byte b = input.readByte();
-					Packet packet = Packet.fromByte(b);
-
-					// what did the client want?
-					switch (packet) {
-					case Forward:
-						game.playerMoveForward(uid);
-						break;
-					case Backward:
-						game.playerMoveBackward(uid);
-						break;
-					case Left:
-						game.playerMoveLeft(uid);
-						break;
-					case Right:
-						game.playerMoveRight(uid);
-						break;
-					case TurnLeft:
-						game.playerTurnLeft(uid);
-						break;
-					case TurnRight:
-						game.playerTurnRight(uid);
-						break;
-					case Transit:
-						if (!game.playerTransit(uid)) {
-							server.addNotification(uid, "Can't enter/exit the room");
-						}
-						break;
-					case UseItem:
-						int index_1 = input.readInt();
-						game.playerUseItem(uid, index_1);
-						break;
-					case DestroyItem:
-						int index_2 = input.readInt();
-						game.playerDestroyItem(uid, index_2);
-						break;
-					case TakeOutItem:
-						if (!game.playerTakeItemsFromContainer(uid)) {
-							server.addNotification(uid, "T");
-						}
-						break;
-					case PutItemIntoContainer:
-						int index_3 = input.readInt();
-						if (!game.playerPutItemIntoContainer(uid, index_3)) {
-							server.addNotification(uid, "P");
-						}
-						break;
-					case Unlock:
-						if (!game.playerUnlockLockable(uid)) {
-							server.addNotification(uid, "You don't have correct key.");
-						}
-						break;
-					case Save:
-						server.save(uid);
-						break;
-					case Load:
-						server.load(uid);
-						break;
-					case Chat:
-						String message = "[" + userName + "] " + input.readUTF();
-						server.addMessage(message);
-						break;
-					case Disconnect:
-						input.close();
-						output.close();
-						break;
-					default:
-						break;
-					}
+				SharedSnapshot shared = server.getSharedSnapshot();
+				if (shared == null || shared.getTick() == sentTick) {
+					// nothing new, wait for the next tick.
+					LockSupport.park(this);
+					continue;
 				}
 
-				// a little nap
-				Thread.sleep(ServerMain.DEFAULT_BROADCAST_CLK_PERIOD);
+				sentTick = shared.getTick();
+				snapshotEncoder.writeSnapshot(output, server, shared);
+				output.flush();
 			}
 		} catch (IOException e) {
-			System.err.println("Player " + uid + " disconnected.");
+			// the connection is gone, or closed by the reading thread.
 		} catch (InterruptedException e) {
-			System.err.println("Thread sleep interrupted. No big deal.");
+			System.err.println("Thread interrupted. No big deal.");
 		} catch (RuntimeException e) {
 			e.printStackTrace();
 		} finally {
-			game.disconnectPlayer(uid);
+			isGameRunning = false;
+			clientReady.countDown();
 			try {
 				socket.close();
 			} catch (IOException e) {
 				System.out.println("I/O error. But who cares, Clients disconnected anyway. ");
 			}
+			if (reader != null) {
+				try {
+					reader.join();
+				} catch (InterruptedException e) {
+					// Should never happen
+				}
+			}
+			System.err.println("Player " + uid + " disconnected.");
+			server.addCommand(new Command(uid, userName, Packet.Disconnect, -1, null));
 		}
 	}
 
 	/**
-	 * This method generates a String representation of the game status. The
-	 * format of it is:
-	 *
-	 * <p>
-	 * Mandatory informations:
-	 * <li>1. Time
-	 * <li>2. Health
-	 * <li>3. Visibility
-	 * <li>4. Positions of all players
-	 * <li>5. The inventory of the player in this client
-	 * <li>6. The status of player holding torch or not.
-	 * <li>7. alive or not for all players.
-	 * <li>8. win/loose
-	 * 
-	 * <p>
-	 * optional informations:
-	 * <li>9. Chat message if there is any.
-	 * <li>10. notification message if there is any.
-	 *
-	 * <p>
-	 * Each one of them is separated by a new line character '\n'. The format of
-	 * each part should refer to
-	 * {@link client.ParserUtilities #parseTime(String) parseTime},
-	 * {@link client.ParserUtilities #parsePosition(java.util.Map, String)
-	 * parsePosition}, {@link client.ParserUtilities #parseInventory(String)
-	 * parseInventory},
-	 * {@link client.ParserUtilities #parseTorchStatus(Map, String)
-	 * parseTorchStatus}, and
-	 * {@link client.ParserUtilities #parseAliveness(Map, String)
-	 * parseAliveness}.
-	 *
-	 * 
-	 * @return --- a String representation of the game status
+	 * Block on reading frames of commands from the client, and let the game
+	 * loop apply them, until the client disconnects. The format of frames is
+	 * described in {@link server.InputFrame InputFrame}.
 	 */
-	private String gameToString() {
-		StringBuilder gameString = new StringBuilder();
-
-		// 1. time
-		String time = game.getClockString();
-		gameString.append(time);
-		gameString.append('\n');
-
-		// 2. health
-		int health = game.getPlayerHealth(uid);
-		gameString.append(health);
-		gameString.append('\n');
-
-		// 3. visibility
-		int visibility = game.getPlayerVisibility(uid);
-		gameString.append(visibility);
-		gameString.append('\n');
-
-		// 4. positions of all players
-		for (Player p : game.getPlayers().values()) {
-			String s = p.getGeographicString();
-			gameString.append(s);
-			gameString.append('|');
-		}
-		gameString.append('\n');
-
-		// 5. inventory
-		String inventory = game.getPlayerInventoryString(uid);
-		gameString.append(inventory);
-		gameString.append('\n');
-
-		// 6. holding torch or not for all players.
-		String torchStatus = game.getTorchStatusString();
-		gameString.append(torchStatus);
-		gameString.append('\n');
-
-		// 7. alive or not for all players
-		String aliveStatus = game.getAliveString();
-		gameString.append(aliveStatus);
-		gameString.append('\n');
-
-		// 8. win/loose
-		String winStatus = game.getWinString();
-		gameString.append(winStatus);
-		gameString.append('\n');
-
-		// ======= optional message broadcast =======
-
-		// 9. chat message
-		String message = server.retrieveMessage();
-		if (message != null) {
-			// prefix a 'M' for message
-			gameString.append('M');
-			gameString.append(message);
-			gameString.append('\n');
-		}
+	private void readCommands() {
+		try {
+			boolean isDisconnected = false;
+			while (isGameRunning && !isDisconnected) {
+				int sequence = input.readInt();
+				int count = input.readUnsignedByte();
 
-		// 10. notification
-		String nMsg = server.retrieveNotification(uid);
-		if (nMsg != null) {
-			// prefix a 'N' for message
-			gameString.append('N');
-			gameString.append(nMsg);
-			gameString.append('\n');
-		}
+				for (int i = 0; i < count; i++) {
+					Packet packet = Packet.fromByte(input.readByte());
+
+					// read the index or message following it, if there is any
+					int index = packet.hasIndex() ? input.readInt() : -1;
+					String message = packet.hasString() ? input.readUTF() : null;
+
+					if (packet == Packet.Disconnect) {
+						isDisconnected = true;
+						break;
+					}
 
-		return gameString.toString();
+					// let the game loop apply it
+					server.addCommand(new Command(uid, userName, packet, index, message, sequence + i));
+				}
+			}
+		} catch (IOException e) {
+			// the connection is gone, or closed by the writing thread.
+		} finally {
+			// stop the writing thread as well.
+			isGameRunning = false;
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// Clients disconnected anyway.
+			}
+			LockSupport.unpark(this);
+		}
 	}
 
 	/**
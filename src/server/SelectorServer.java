@@ -0,0 +1,280 @@
+package server;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * This class runs the server on a single selector thread. Instead of one
+ * Receptionist thread per client, one event loop accepts connections, reads
+ * packets from every client and broadcasts the game status to every client,
+ * so the number of threads stays the same however many clients are connected.
+ * Packets are handed to the {@link server.GameLoop GameLoop}, which is the
+ * only thread that changes the game.
+ *
+ * @author Hector (Fang Zhao 300364061)
+ *
+ */
+public class SelectorServer {
+
+	/**
+	 * The server
+	 */
+	private final ServerMain server;
+
+	/**
+	 * The server channel waiting for connection.
+	 */
+	private final ServerSocketChannel serverChannel;
+
+	/**
+	 * The selector
+	 */
+	private final Selector selector;
+
+	/**
+	 * The number of players.
+	 */
+	private final int numPlayers;
+
+	/**
+	 * This map keeps track of every connected client. The key is the unique id
+	 * of each client
+	 */
+	private final Map<Integer, Connection> connections;
+
+	/**
+	 * A flag indicating whether the server is still accepting connections.
+	 */
+	private boolean isAccepting = true;
+
+	/**
+	 * A flag indicating whether virus types and avatars are sent, i.e. clients
+	 * are in the lobby.
+	 */
+	private boolean isLobbyOpen = false;
+
+	/**
+	 * A flag indicating whether the game is running or not.
+	 */
+	private boolean isGameRunning = false;
+
+	/**
+	 * The tick of the last snapshot broadcast.
+	 */
+	private long lastBroadcastTick = 0;
+
+	/**
+	 * Constructor
+	 *
+	 * @param server
+	 *            --- the server
+	 * @param serverChannel
+	 *            --- the server channel, which is already bound.
+	 * @param numPlayers
+	 *            --- the number of players
+	 * @throws IOException
+	 */
+	public SelectorServer(ServerMain server, ServerSocketChannel serverChannel, int numPlayers) throws IOException {
+		this.server = server;
+		this.serverChannel = serverChannel;
+		this.numPlayers = numPlayers;
+		this.selector = Selector.open();
+		this.connections = new HashMap<>();
+	}
+
+	/**
+	 * Run the event loop. It accepts clients, lets them join and get ready in
+	 * the lobby, starts the game when all of them are ready, and then
+	 * constantly broadcasts the game status until all clients are gone.
+	 *
+	 * @throws IOException
+	 */
+	public void run() throws IOException {
+		serverChannel.configureBlocking(false);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+		while (isAccepting || !connections.isEmpty()) {
+			// the game loop wakes us up when a new snapshot is ready.
+			selector.select(ServerMain.DEFAULT_BROADCAST_CLK_PERIOD);
+
+			Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+			while (it.hasNext()) {
+				SelectionKey key = it.next();
+				it.remove();
+
+				if (!key.isValid()) {
+					continue;
+				}
+
+				if (key.isAcceptable()) {
+					accept();
+					continue;
+				}
+
+				Connection connection = (Connection) key.attachment();
+				try {
+					if (key.isReadable()) {
+						connection.read();
+					}
+					if (key.isValid() && key.isWritable()) {
+						connection.flush();
+					}
+				} catch (IOException | RuntimeException e) {
+					disconnect(connection);
+				}
+			}
+
+			// everybody joined, let them know each other.
+			if (!isAccepting && !isLobbyOpen && allJoined()) {
+				openLobby();
+			}
+
+			// everybody is ready, now enter the game.
+			if (isLobbyOpen && !isGameRunning && allReady()) {
+				startGame();
+			}
+
+			// broadcast the game status, once per tick of the game loop.
+			SharedSnapshot shared = server.getSharedSnapshot();
+			if (isGameRunning && shared != null && shared.getTick() != lastBroadcastTick) {
+				lastBroadcastTick = shared.getTick();
+				for (Connection c : new ArrayList<>(connections.values())) {
+					try {
+						c.sendGameState();
+					} catch (IOException | RuntimeException e) {
+						disconnect(c);
+					}
+				}
+			}
+		}
+
+		server.stopGameLoop();
+		selector.close();
+	}
+
+	/**
+	 * Accept a client connection, and send the maps and the uid to it. When
+	 * all clients are accepted, stop listening.
+	 *
+	 * @throws IOException
+	 */
+	private void accept() throws IOException {
+		SocketChannel channel = serverChannel.accept();
+		if (channel == null) {
+			return;
+		}
+
+		channel.configureBlocking(false);
+		// packets are small and sent as soon as they are ready, don't let
+		// them wait for each other.
+		channel.socket().setTcpNoDelay(true);
+		int uId = channel.socket().getPort();
+
+		System.out.println("[Log] Accepted connection from: " + channel.socket().getInetAddress().toString()
+				+ ". uId is: " + uId + ".");
+
+		Connection connection = new Connection(server, channel, selector, uId);
+		connections.put(uId, connection);
+		try {
+			// send the map to client
+			connection.sendMapID();
+		} catch (IOException e) {
+			disconnect(connection);
+		}
+
+		if (connections.size() == numPlayers) {
+			isAccepting = false;
+			serverChannel.close();
+			System.out.println("[Log] All clients accepted, now entering lobby, wait till all players are ready");
+		}
+	}
+
+	/**
+	 * Broadcast each client's virus type and every player's avatar, so that
+	 * clients enter the lobby.
+	 */
+	private void openLobby() {
+		for (Connection c : new ArrayList<>(connections.values())) {
+			try {
+				c.sendVirusType();
+			} catch (IOException | RuntimeException e) {
+				disconnect(c);
+			}
+		}
+
+		for (Connection c : new ArrayList<>(connections.values())) {
+			try {
+				c.sendAvatars();
+			} catch (IOException | RuntimeException e) {
+				disconnect(c);
+			}
+		}
+
+		isLobbyOpen = true;
+	}
+
+	/**
+	 * Tell every client that the game starts, and start timing.
+	 */
+	private void startGame() {
+		for (Connection c : new ArrayList<>(connections.values())) {
+			try {
+				c.setGameRunning();
+			} catch (IOException | RuntimeException e) {
+				disconnect(c);
+			}
+		}
+
+		isGameRunning = true;
+		System.out.println("[Log] Game started");
+		server.startGameLoop(() -> selector.wakeup());
+	}
+
+	/**
+	 * Have all connected players joined the game?
+	 *
+	 * @return --- true/false for yes/no
+	 */
+	private boolean allJoined() {
+		for (Connection c : connections.values()) {
+			if (!c.hasJoined()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Are all connected clients ready to enter game?
+	 *
+	 * @return --- true/false for yes/no
+	 */
+	private boolean allReady() {
+		for (Connection c : connections.values()) {
+			if (!c.isReady()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Close the connection with a client, and forget about it.
+	 *
+	 * @param connection
+	 *            --- the connection
+	 */
+	private void disconnect(Connection connection) {
+		if (connections.remove(connection.getUid()) != null) {
+			connection.close();
+		}
+	}
+
+}
@@ -2,8 +2,10 @@ package server;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Queue;
@@ -22,6 +24,11 @@ import server.view.ServerGui;
  * listens to client connection, and when all clients are connected, the game
  * starts simultaneously for all clients.
  *
+ * <p>
+ * By default all clients are served by a single selector thread (see
+ * {@link server.SelectorServer SelectorServer}). The old blocking path, which
+ * runs one Receptionist thread per client, is still available for comparison.
+ *
  * @author Rafaela (300350087)
  * @author Hector (Fang Zhao 300364061)
  *
@@ -33,6 +40,14 @@ public class ServerMain {
 	 */
 	public static final int DEFAULT_BROADCAST_CLK_PERIOD = 50;
 
+	/**
+	 * How many seconds the world time advances on every tick. It is
+	 * {@link server.game.Game#TIME_ADVANCING_SPEED TIME_ADVANCING_SPEED}
+	 * unless set otherwise by the system property <i>plague.timeScale</i>.
+	 */
+	public static final int TIME_SCALE = Math.max(0,
+			Integer.getInteger("plague.timeScale", Game.TIME_ADVANCING_SPEED));
+
 	/**
 	 * A series of port number, in case the default port is used.
 	 */
@@ -43,6 +58,12 @@ public class ServerMain {
 	 */
 	private ServerSocket serverSocket;
 
+	/**
+	 * A flag indicating whether to run the blocking path, i.e. one
+	 * Receptionist thread per client, instead of the selector.
+	 */
+	private final boolean isBlocking;
+
 	/**
 	 * The game
 	 */
@@ -71,12 +92,42 @@ public class ServerMain {
 	private HashMap<Integer, Receptionist> receptionists;
 
 	/**
-	 * Constructor
+	 * The only thread that changes the game once it starts.
+	 */
+	private final GameLoop gameLoop;
+
+	/**
+	 * The builder of the part of snapshots shared by every client.
+	 */
+	private final SnapshotBuilder snapshotBuilder;
+
+	/**
+	 * The part of snapshots shared by every client, built on the latest
+	 * broadcast tick.
+	 */
+	private volatile SharedSnapshot sharedSnapshot;
+
+	/**
+	 * Constructor. The server runs on a selector.
 	 */
 	public ServerMain() {
+		this(false);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param isBlocking
+	 *            --- true to run one Receptionist thread per client, or false
+	 *            to run all clients on a selector.
+	 */
+	public ServerMain(boolean isBlocking) {
+		this.isBlocking = isBlocking;
 		receptionists = new HashMap<>();
 		messages = new ConcurrentLinkedQueue<>();
 		notificationMsg = new ConcurrentHashMap<>();
+		snapshotBuilder = new SnapshotBuilder();
+		gameLoop = new GameLoop(this);
 
 		// how many players?
 		System.out.println("How many players (at least 2):");
@@ -84,12 +135,17 @@ public class ServerMain {
 
 		// load from game maker
 		game = InitialGameLoader.makeGame();
+		game.setTimeScale(TIME_SCALE);
 
 		// just for integration day demo
 		XmlFunctions.saveInitialFile(game);
 
 		// run the server
-		runServer(numPlayers);
+		if (isBlocking) {
+			runServer(numPlayers);
+		} else {
+			runSelectorServer(numPlayers);
+		}
 	}
 
 	/**
@@ -101,19 +157,7 @@ public class ServerMain {
 	 */
 	private void runServer(int numPlayers) {
 		serverSocket = createServerSocket();
-		// display the server address and port.
-		System.out.println("Plague server is listening on IP address: " + serverSocket.getInetAddress().toString()
-				+ ", port: " + serverSocket.getLocalPort());
-
-		// A simple GUI to display server running.
-		new Thread() {
-			public void run() {
-				ServerGui.port = serverSocket.getLocalPort();
-				String[] ipAdress = serverSocket.getInetAddress().toString().split("/");
-				ServerGui.ip = ipAdress[1];
-				ServerGui.launch(ServerGui.class);
-			}
-		}.start();
+		showServerAddress();
 
 		int count = 0;
 		try {
@@ -148,6 +192,51 @@ public class ServerMain {
 		}
 	}
 
+	/**
+	 * This method runs all client connections on a single selector thread.
+	 * Clients go through the same initialisation process and lobby as on the
+	 * blocking path, and the game starts when all clients are ready.
+	 *
+	 * @param numPlayers
+	 *            --- the number of players
+	 */
+	private void runSelectorServer(int numPlayers) {
+		ServerSocketChannel serverChannel = createServerChannel();
+		serverSocket = serverChannel.socket();
+		showServerAddress();
+
+		try {
+			new SelectorServer(this, serverChannel, numPlayers).run();
+		} catch (IOException e) {
+			System.err.println("I/O error: " + e.getMessage());
+		} finally {
+			try {
+				serverChannel.close();
+			} catch (IOException e) {
+				System.err.println("I/O error: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Display the server address and port, in console and in a simple GUI.
+	 */
+	private void showServerAddress() {
+		// display the server address and port.
+		System.out.println("Plague server is listening on IP address: " + serverSocket.getInetAddress().toString()
+				+ ", port: " + serverSocket.getLocalPort());
+
+		// A simple GUI to display server running.
+		new Thread() {
+			public void run() {
+				ServerGui.port = serverSocket.getLocalPort();
+				String[] ipAdress = serverSocket.getInetAddress().toString().split("/");
+				ServerGui.ip = ipAdress[1];
+				ServerGui.launch(ServerGui.class);
+			}
+		}.start();
+	}
+
 	/**
 	 * Start the multi-player game.
 	 */
@@ -175,18 +264,12 @@ public class ServerMain {
 		// ======= Enter the lobby, waiting for everyone ready ========
 
 		// do not start timing until everybody is ready.
-		outer: while (true) {
-			for (Receptionist r : receptionists.values()) {
-				if (!r.isReady()) {
-					try {
-						Thread.sleep(DEFAULT_BROADCAST_CLK_PERIOD);
-					} catch (InterruptedException e) {
-						// Should never happen
-					}
-					continue outer;
-				}
+		for (Receptionist r : receptionists.values()) {
+			try {
+				r.awaitReady();
+			} catch (InterruptedException e) {
+				// Should never happen
 			}
-			break;
 		}
 
 		// ====== everybody is ready, now enter the game ========
@@ -196,7 +279,23 @@ public class ServerMain {
 
 		System.out.println("[Log] Game started");
 
-		game.startTiming();
+		// every receptionist sends a snapshot as soon as it's built.
+		startGameLoop(() -> {
+			for (Receptionist r : receptionists.values()) {
+				r.snapshotReady();
+			}
+		});
+
+		// wait until all clients are gone.
+		for (Receptionist r : receptionists.values()) {
+			try {
+				r.join();
+			} catch (InterruptedException e) {
+				// Should never happen
+			}
+		}
+
+		stopGameLoop();
 	}
 
 	/**
@@ -225,6 +324,35 @@ public class ServerMain {
 		}
 	}
 
+	/**
+	 * This method creates a server channel for the selector. If it is not
+	 * successfully created, a GameError is thrown.
+	 *
+	 * @return --- the server channel.
+	 */
+	private ServerSocketChannel createServerChannel() {
+		// try to bind a port number from pre-defined array.
+		for (int i = 0; i < PORT_NUM.length; i++) {
+			ServerSocketChannel channel = null;
+			try {
+				channel = ServerSocketChannel.open();
+				channel.bind(new InetSocketAddress(InetAddress.getLocalHost(), PORT_NUM[i]), 50);
+				return channel;
+			} catch (IOException e) {
+				if (channel != null) {
+					try {
+						channel.close();
+					} catch (IOException e1) {
+						// nothing we can do
+					}
+				}
+				continue;
+			}
+		}
+
+		throw new GameError("Cannot create server socket, all predefined ports are used");
+	}
+
 	/**
 	 * Add a message into the queue, ready for the server to broadcast.
 	 *
@@ -232,9 +360,7 @@ public class ServerMain {
 	 *            --- the message
 	 */
 	public void addMessage(String message) {
-		for (int i = 0; i < numPlayers; i++) {
-			messages.offer(message);
-		}
+		messages.offer(message);
 	}
 
 	/**
@@ -247,6 +373,56 @@ public class ServerMain {
 		return messages.poll();
 	}
 
+	/**
+	 * Start the game loop, i.e. start applying commands and timing.
+	 *
+	 * @param tickListener
+	 *            --- called on the game loop thread after every tick, or null
+	 *            if nobody cares.
+	 */
+	public void startGameLoop(Runnable tickListener) {
+		gameLoop.setTickListener(tickListener);
+		gameLoop.start();
+	}
+
+	/**
+	 * Stop the game loop.
+	 */
+	public void stopGameLoop() {
+		gameLoop.shutdown();
+	}
+
+	/**
+	 * Put a command received from a client in the queue of the game loop. This
+	 * method can be called from any thread.
+	 *
+	 * @param command
+	 *            --- the command
+	 */
+	public void addCommand(Command command) {
+		gameLoop.enqueue(command);
+	}
+
+	/**
+	 * Build the part of snapshots shared by every client for a new broadcast
+	 * tick. It takes one chat message from the queue, which is then broadcast
+	 * to everybody. It's called by the game loop.
+	 */
+	public void buildSharedSnapshot() {
+		sharedSnapshot = snapshotBuilder.build(game, retrieveMessage(), gameLoop.getProcessedSequences());
+	}
+
+	/**
+	 * Get the part of snapshots shared by every client, built on the latest
+	 * broadcast tick.
+	 *
+	 * @return --- the shared part of snapshots, or null if none has been built
+	 *         yet.
+	 */
+	public SharedSnapshot getSharedSnapshot() {
+		return sharedSnapshot;
+	}
+
 	/**
 	 * Add a notification message into the map, then the client can get
 	 * notification back.
@@ -323,7 +499,9 @@ public class ServerMain {
 
 		// Reset players map
 		newGame.resetPlayers(newPlayers);
+		newGame.setTimeScale(TIME_SCALE);
 		notificationMsg = new ConcurrentHashMap<>();
+		game = newGame;
 
 		// make sure every client get access to the new game instance,
 		for (Receptionist r : receptionists.values()) {
@@ -334,6 +512,15 @@ public class ServerMain {
 		return true;
 	}
 
+	/**
+	 * Get the game instance currently running on server.
+	 *
+	 * @return --- the game instance
+	 */
+	public Game getGame() {
+		return game;
+	}
+
 	/**
 	 * Save game
 	 *
@@ -348,9 +535,11 @@ public class ServerMain {
 	 * Main function for testing, start the server.
 	 *
 	 * @param args
+	 *            --- run with "-blocking" argument to run one Receptionist
+	 *            thread per client.
 	 */
 	public static void main(String args[]) {
-		new ServerMain();
+		new ServerMain(args.length > 0 && "-blocking".equals(args[0]));
 	}
 
 }
@@ -0,0 +1,237 @@
+package server;
+
+import java.util.Map;
+
+import server.game.player.Position;
+
+/**
+ * This class is the part of a snapshot shared by every client, i.e. the world
+ * time, every player's aliveness, the winner, and the chat message. It is
+ * built once per broadcast by {@link server.SnapshotBuilder SnapshotBuilder},
+ * and every connection copies the pre-encoded bytes into its own snapshot.
+ *
+ * <p>
+ * It comes in two encodings: a delta, which only carries what has changed
+ * since the previous SharedSnapshot, and a full one, which carries everything
+ * and is used for clients who haven't received the previous one.
+ *
+ * <p>
+ * It also captures the status of each player, i.e. position, torch status,
+ * health, visibility and inventory, and which players are near each other, so
+ * that connections encode their private part from it rather than reading the
+ * game, which is only ever touched by the game loop.
+ *
+ * <p>
+ * An instance is immutable once built, so it can be safely read by any thread.
+ *
+ * @author Hector (Fang Zhao 300364061)
+ *
+ */
+public class SharedSnapshot {
+
+	/**
+	 * The tick this snapshot is built on. Ticks are numbered consecutively
+	 * from 1.
+	 */
+	private final long tick;
+
+	/**
+	 * The mask of fields present in the delta encoding.
+	 */
+	private final int deltaMask;
+
+	/**
+	 * The delta encoding.
+	 */
+	private final byte[] delta;
+
+	/**
+	 * The mask of fields present in the full encoding.
+	 */
+	private final int fullMask;
+
+	/**
+	 * The full encoding.
+	 */
+	private final byte[] full;
+
+	/**
+	 * The status of each player. The key is the player id.
+	 */
+	private final Map<Integer, PlayerStatus> statuses;
+
+	/**
+	 * Every player with a position, bucketed by where he is.
+	 */
+	private final InterestGrid interest;
+
+	/**
+	 * Constructor
+	 *
+	 * @param tick
+	 *            --- the tick this snapshot is built on
+	 * @param deltaMask
+	 *            --- the mask of fields present in the delta encoding
+	 * @param delta
+	 *            --- the delta encoding
+	 * @param fullMask
+	 *            --- the mask of fields present in the full encoding
+	 * @param full
+	 *            --- the full encoding
+	 * @param statuses
+	 *            --- the status of each player, which is not modified
+	 *            afterwards.
+	 * @param interest
+	 *            --- every player with a position, which is not modified
+	 *            afterwards.
+	 */
+	SharedSnapshot(long tick, int deltaMask, byte[] delta, int fullMask, byte[] full,
+			Map<Integer, PlayerStatus> statuses, InterestGrid interest) {
+		this.tick = tick;
+		this.deltaMask = deltaMask;
+		this.delta = delta;
+		this.fullMask = fullMask;
+		this.full = full;
+		this.statuses = statuses;
+		this.interest = interest;
+	}
+
+	/**
+	 * Get the tick this snapshot is built on.
+	 *
+	 * @return --- the tick
+	 */
+	public long getTick() {
+		return tick;
+	}
+
+	/**
+	 * Get the mask of fields present in the delta encoding.
+	 *
+	 * @return --- the mask
+	 */
+	public int getDeltaMask() {
+		return deltaMask;
+	}
+
+	/**
+	 * Get the delta encoding. The returned array must not be modified.
+	 *
+	 * @return --- the encoded bytes
+	 */
+	byte[] getDelta() {
+		return delta;
+	}
+
+	/**
+	 * Get the mask of fields present in the full encoding.
+	 *
+	 * @return --- the mask
+	 */
+	public int getFullMask() {
+		return fullMask;
+	}
+
+	/**
+	 * Get the full encoding. The returned array must not be modified.
+	 *
+	 * @return --- the encoded bytes
+	 */
+	byte[] getFull() {
+		return full;
+	}
+
+	/**
+	 * Get the status of a player.
+	 *
+	 * @param uid
+	 *            --- the player id
+	 * @return --- the status, or null if the player is not in game.
+	 */
+	public PlayerStatus getPlayerStatus(int uid) {
+		return statuses.get(uid);
+	}
+
+	/**
+	 * Get every player with a position, bucketed by where he is, so that the
+	 * players near someone can be found without going through everybody.
+	 *
+	 * @return --- the grid
+	 */
+	public InterestGrid getInterestGrid() {
+		return interest;
+	}
+
+	/**
+	 * The status of a player, as it is on the tick.
+	 */
+	public static class PlayerStatus {
+
+		/**
+		 * The player id.
+		 */
+		public final int uid;
+
+		/**
+		 * The position, or null if the player isn't anywhere yet.
+		 */
+		public final Position position;
+
+		/**
+		 * Whether the player is holding a torch.
+		 */
+		public final boolean isHoldingTorch;
+
+		/**
+		 * The health left.
+		 */
+		public final int health;
+
+		/**
+		 * The visibility
+		 */
+		public final int visibility;
+
+		/**
+		 * The inventory, see {@link server.game.Game
+		 * #getPlayerInventoryString(int) getPlayerInventoryString}
+		 */
+		public final String inventory;
+
+		/**
+		 * The sequence number of the last command applied from the client, or
+		 * -1 if none has been.
+		 */
+		public final int processedSequence;
+
+		/**
+		 * Constructor
+		 *
+		 * @param uid
+		 *            --- the player id
+		 * @param position
+		 *            --- the position
+		 * @param isHoldingTorch
+		 *            --- whether the player is holding a torch
+		 * @param health
+		 *            --- the health left
+		 * @param visibility
+		 *            --- the visibility
+		 * @param inventory
+		 *            --- the inventory string
+		 * @param processedSequence
+		 *            --- the sequence number of the last command applied
+		 */
+		PlayerStatus(int uid, Position position, boolean isHoldingTorch, int health, int visibility,
+				String inventory, int processedSequence) {
+			this.uid = uid;
+			this.position = position;
+			this.isHoldingTorch = isHoldingTorch;
+			this.health = health;
+			this.visibility = visibility;
+			this.inventory = inventory;
+			this.processedSequence = processedSequence;
+		}
+	}
+
+}
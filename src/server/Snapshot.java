@@ -0,0 +1,159 @@
+package server;
+
+/**
+ * This class defines the binary format of the game status broadcast from
+ * server to client. The server encodes it with
+ * {@link server.SnapshotEncoder SnapshotEncoder}, and the client decodes it
+ * with the <i>parseSnapshot*</i> methods in
+ * {@link client.ParserUtilities ParserUtilities}.
+ *
+ * <p>
+ * A snapshot only carries what has changed since the previous snapshot sent to
+ * the same client. As snapshots are sent over TCP, every snapshot arrives, in
+ * order, so the previous snapshot is always the one the client has applied
+ * last. The first snapshot of a connection carries everything.
+ *
+ * <p>
+ * The fields shared by all clients come first, and are encoded only once per
+ * broadcast into a {@link server.SharedSnapshot SharedSnapshot}. The fields
+ * private to each client follow them.
+ *
+ * <p>
+ * The format of a snapshot is:
+ * <li>int: the length of everything below, in bytes
+ * <li>byte: the format version, see {@link #VERSION VERSION}
+ * <li>short: a mask of the fields present, see the field constants
+ * <li>the present fields, in the order of their bits.
+ *
+ * <p>
+ * Shared fields:
+ * <li>{@link #TIME TIME}: byte hour, byte minute, byte second
+ * <li>{@link #PLAYERS PLAYERS}: short count, then for each changed player an
+ * int uId, a byte mask of player fields, and the present player fields. Only
+ * {@link #PLAYER_ALIVE PLAYER_ALIVE} is carried here, as a summary of every
+ * player in game.
+ * <li>{@link #WINNER WINNER}: string, the winner's name
+ * <li>{@link #CHAT CHAT}: string, a chat message
+ *
+ * <p>
+ * Private fields:
+ * <li>{@link #HEALTH HEALTH}: int health
+ * <li>{@link #VISIBILITY VISIBILITY}: byte visibility
+ * <li>{@link #INVENTORY INVENTORY}: byte count, then each item as a string
+ * "A@B", refer to {@link server.game.Game #getPlayerInventoryString(int)
+ * getPlayerInventoryString}
+ * <li>{@link #NOTIFICATION NOTIFICATION}: string, a notification message
+ * <li>{@link #ACK ACK}: int, the sequence number of the last command applied
+ * from this client, see {@link server.InputFrame InputFrame}
+ * <li>{@link #NEARBY NEARBY}: the same as PLAYERS, for the players in the
+ * area of interest of this client, see {@link server.InterestGrid
+ * InterestGrid}. {@link #PLAYER_POSITION PLAYER_POSITION} and
+ * {@link #PLAYER_TORCH PLAYER_TORCH} are carried here, and
+ * {@link #PLAYER_GONE PLAYER_GONE} when a player leaves it.
+ *
+ * <p>
+ * Player fields:
+ * <li>{@link #PLAYER_POSITION PLAYER_POSITION}: short areaId, short x, short y,
+ * byte direction (ordinal number)
+ * <li>{@link #PLAYER_TORCH PLAYER_TORCH}: byte, 1 if holding a torch or 0 if
+ * not
+ * <li>{@link #PLAYER_ALIVE PLAYER_ALIVE}: byte, 1 if alive or 0 if dead
+ * <li>{@link #PLAYER_GONE PLAYER_GONE}: nothing
+ *
+ * <p>
+ * A string is an unsigned short length followed by that many bytes of UTF-8.
+ *
+ * @author Hector (Fang Zhao 300364061)
+ *
+ */
+public class Snapshot {
+
+	/**
+	 * The version of the format. It should be increased whenever the format
+	 * changes.
+	 */
+	public static final byte VERSION = 4;
+
+	/**
+	 * The world time.
+	 */
+	public static final int TIME = 1;
+
+	/**
+	 * Aliveness of players.
+	 */
+	public static final int PLAYERS = 1 << 1;
+
+	/**
+	 * The winner, if there is one.
+	 */
+	public static final int WINNER = 1 << 2;
+
+	/**
+	 * Chat message, if there is any.
+	 */
+	public static final int CHAT = 1 << 3;
+
+	/**
+	 * The health of the player in this client.
+	 */
+	public static final int HEALTH = 1 << 4;
+
+	/**
+	 * The visibility of the player in this client.
+	 */
+	public static final int VISIBILITY = 1 << 5;
+
+	/**
+	 * The inventory of the player in this client.
+	 */
+	public static final int INVENTORY = 1 << 6;
+
+	/**
+	 * Notification message, if there is any.
+	 */
+	public static final int NOTIFICATION = 1 << 7;
+
+	/**
+	 * The sequence number of the last command applied from this client.
+	 */
+	public static final int ACK = 1 << 8;
+
+	/**
+	 * Positions and torch status of players near the player in this client.
+	 */
+	public static final int NEARBY = 1 << 9;
+
+	/**
+	 * All fields shared by every client.
+	 */
+	public static final int SHARED = TIME | PLAYERS | WINNER | CHAT;
+
+	/**
+	 * The player's position, i.e. areaId, coordinates(x, y), and direction.
+	 */
+	public static final int PLAYER_POSITION = 1;
+
+	/**
+	 * Whether the player is holding a torch or not.
+	 */
+	public static final int PLAYER_TORCH = 1 << 1;
+
+	/**
+	 * Whether the player is alive or not.
+	 */
+	public static final int PLAYER_ALIVE = 1 << 2;
+
+	/**
+	 * The player has left the area of interest, so his position and torch
+	 * status are no longer known.
+	 */
+	public static final int PLAYER_GONE = 1 << 3;
+
+	/**
+	 * Private constructor. No instantiation is allowed.
+	 */
+	private Snapshot() {
+	}
+
+}
@@ -0,0 +1,165 @@
+package server;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * This class is a growable buffer that snapshots are encoded into. It is
+ * reused for every snapshot, so once it has grown big enough, encoding doesn't
+ * allocate any more buffers.
+ *
+ * @author Hector (Fang Zhao 300364061)
+ *
+ */
+class SnapshotBuffer {
+
+	/**
+	 * The initial size of the buffer. It grows if a snapshot doesn't fit.
+	 */
+	private static final int INITIAL_BUFFER_SIZE = 512;
+
+	/**
+	 * The underlying buffer.
+	 */
+	private ByteBuffer buffer;
+
+	/**
+	 * Constructor
+	 */
+	SnapshotBuffer() {
+		this.buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+	}
+
+	/**
+	 * Empty the buffer, ready for the next snapshot.
+	 */
+	void clear() {
+		buffer.clear();
+	}
+
+	/**
+	 * How many bytes have been put.
+	 *
+	 * @return --- the number of bytes put since last cleared.
+	 */
+	int position() {
+		return buffer.position();
+	}
+
+	/**
+	 * Discard everything put after the given position.
+	 *
+	 * @param position
+	 *            --- the new position
+	 */
+	void rewind(int position) {
+		buffer.position(position);
+	}
+
+	/**
+	 * Put a byte.
+	 *
+	 * @param b
+	 *            --- the byte
+	 */
+	void put(int b) {
+		ensureCapacity(1);
+		buffer.put((byte) b);
+	}
+
+	/**
+	 * Put a short.
+	 *
+	 * @param s
+	 *            --- the short
+	 */
+	void putShort(int s) {
+		ensureCapacity(2);
+		buffer.putShort((short) s);
+	}
+
+	/**
+	 * Overwrite a short already put, e.g. a count which is only known after
+	 * the items are put.
+	 *
+	 * @param index
+	 *            --- where the short is
+	 * @param s
+	 *            --- the short
+	 */
+	void putShort(int index, int s) {
+		buffer.putShort(index, (short) s);
+	}
+
+	/**
+	 * Put an int.
+	 *
+	 * @param i
+	 *            --- the int
+	 */
+	void putInt(int i) {
+		ensureCapacity(4);
+		buffer.putInt(i);
+	}
+
+	/**
+	 * Put a string, as an unsigned short length followed by UTF-8 bytes.
+	 *
+	 * @param str
+	 *            --- the string
+	 */
+	void putString(String str) {
+		byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+		int length = Math.min(bytes.length, 0xFFFF);
+		ensureCapacity(2 + length);
+		buffer.putShort((short) length);
+		buffer.put(bytes, 0, length);
+	}
+
+	/**
+	 * Copy everything put so far into a new array.
+	 *
+	 * @return --- the bytes put since last cleared
+	 */
+	byte[] toByteArray() {
+		return Arrays.copyOf(buffer.array(), buffer.position());
+	}
+
+	/**
+	 * Write everything put so far to the given stream.
+	 *
+	 * @param output
+	 *            --- the stream to write to
+	 * @throws IOException
+	 */
+	void writeTo(DataOutputStream output) throws IOException {
+		output.write(buffer.array(), 0, buffer.position());
+	}
+
+	/**
+	 * Make sure the buffer has room for the given number of bytes. If not, it
+	 * grows.
+	 *
+	 * @param bytes
+	 *            --- how many bytes to be put
+	 */
+	private void ensureCapacity(int bytes) {
+		if (buffer.remaining() >= bytes) {
+			return;
+		}
+
+		int capacity = buffer.capacity() * 2;
+		while (capacity - buffer.position() < bytes) {
+			capacity *= 2;
+		}
+
+		ByteBuffer larger = ByteBuffer.allocate(capacity);
+		buffer.flip();
+		larger.put(buffer);
+		buffer = larger;
+	}
+
+}
@@ -0,0 +1,262 @@
+package server;
+
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import server.SharedSnapshot.PlayerStatus;
+import server.game.Game;
+import server.game.player.Player;
+import server.game.player.Position;
+
+/**
+ * This class builds the part of snapshots shared by every client, once per
+ * broadcast. It remembers what the previous SharedSnapshot carried, so the
+ * delta encoding only carries what has changed. The work done per broadcast is
+ * proportional to the number of players, no matter how many clients the
+ * snapshot is then sent to.
+ *
+ * @author Hector (Fang Zhao 300364061)
+ *
+ */
+public class SnapshotBuilder {
+
+	/**
+	 * The buffer the delta encoding is built in.
+	 */
+	private final SnapshotBuffer delta;
+
+	/**
+	 * The buffer the full encoding is built in.
+	 */
+	private final SnapshotBuffer full;
+
+	/**
+	 * The tick of the last SharedSnapshot built.
+	 */
+	private long tick = 0;
+
+	/**
+	 * The world time in the last SharedSnapshot built.
+	 */
+	private LocalTime time;
+
+	/**
+	 * Whether the winner has been announced.
+	 */
+	private boolean hasWinner = false;
+
+	/**
+	 * What the last SharedSnapshot carried about every player. The key is the
+	 * player id.
+	 */
+	private final Map<Integer, PlayerRecord> players;
+
+	/**
+	 * Constructor
+	 */
+	public SnapshotBuilder() {
+		this.delta = new SnapshotBuffer();
+		this.full = new SnapshotBuffer();
+		this.players = new HashMap<>();
+	}
+
+	/**
+	 * Build the shared part of snapshots for the next tick. It must be called
+	 * on the thread that changes the game.
+	 *
+	 * @param game
+	 *            --- the game instance
+	 * @param chat
+	 *            --- a chat message, or null if there is none
+	 * @param processedSequences
+	 *            --- the sequence number of the last command applied from
+	 *            every client, where the key is the player id
+	 * @return --- the shared part of snapshots
+	 */
+	public SharedSnapshot build(Game game, String chat, Map<Integer, Integer> processedSequences) {
+		delta.clear();
+		full.clear();
+		int deltaMask = 0;
+		int fullMask = 0;
+
+		// 1. time
+		LocalTime clock = game.getClock();
+		if (!clock.equals(time)) {
+			time = clock;
+			putTime(delta, clock);
+			deltaMask |= Snapshot.TIME;
+		}
+		putTime(full, clock);
+		fullMask |= Snapshot.TIME;
+
+		// 2. aliveness of all players, and where everyone is
+		Map<Integer, PlayerStatus> statuses = new HashMap<>();
+		InterestGrid interest = new InterestGrid();
+		if (buildPlayers(game, processedSequences, statuses, interest)) {
+			deltaMask |= Snapshot.PLAYERS;
+		}
+		fullMask |= Snapshot.PLAYERS;
+
+		// 3. win/loose
+		if (game.hasWinner()) {
+			String winnerName = game.getWinner().getName();
+			if (!hasWinner) {
+				hasWinner = true;
+				delta.putString(winnerName);
+				deltaMask |= Snapshot.WINNER;
+			}
+			full.putString(winnerName);
+			fullMask |= Snapshot.WINNER;
+		}
+
+		// 4. chat message
+		if (chat != null) {
+			delta.putString(chat);
+			deltaMask |= Snapshot.CHAT;
+			full.putString(chat);
+			fullMask |= Snapshot.CHAT;
+		}
+
+		tick++;
+		return new SharedSnapshot(tick, deltaMask, delta.toByteArray(), fullMask, full.toByteArray(), statuses,
+				interest);
+	}
+
+	/**
+	 * Put the world time into the buffer.
+	 *
+	 * @param buffer
+	 *            --- the buffer
+	 * @param clock
+	 *            --- the world time
+	 */
+	private void putTime(SnapshotBuffer buffer, LocalTime clock) {
+		buffer.put(clock.getHour());
+		buffer.put(clock.getMinute());
+		buffer.put(clock.getSecond());
+	}
+
+	/**
+	 * Put every player's aliveness into the full encoding, and every player
+	 * whose aliveness has changed into the delta encoding. Meanwhile the
+	 * status of every player is captured, and bucketed by where he is.
+	 *
+	 * @param game
+	 *            --- the game instance
+	 * @param processedSequences
+	 *            --- the sequence number of the last command applied from
+	 *            every client
+	 * @param statuses
+	 *            --- where the status of every player is captured
+	 * @param interest
+	 *            --- where every player with a position is bucketed
+	 * @return --- true if any player has changed, or false if none has changed
+	 *         and nothing is put into the delta encoding.
+	 */
+	private boolean buildPlayers(Game game, Map<Integer, Integer> processedSequences,
+			Map<Integer, PlayerStatus> statuses, InterestGrid interest) {
+		int deltaStart = delta.position();
+		int fullStart = full.position();
+		delta.putShort(0);
+		full.putShort(0);
+		int deltaCount = 0;
+		int fullCount = 0;
+
+		for (Player p : game.getPlayers().values()) {
+			Position pos = p.getPosition();
+			Integer processed = processedSequences.get(p.getId());
+			PlayerStatus status = new PlayerStatus(p.getId(), pos, p.isHoldingTorch(), p.getHealthLeft(),
+					game.getPlayerVisibility(p.getId()), game.getPlayerInventoryString(p.getId()),
+					processed == null ? -1 : processed);
+			statuses.put(p.getId(), status);
+			interest.add(status);
+
+			if (pos == null) {
+				continue;
+			}
+
+			PlayerRecord record = players.get(p.getId());
+			if (record == null) {
+				record = new PlayerRecord();
+				players.put(p.getId(), record);
+			}
+
+			boolean alive = p.isAlive();
+			putPlayer(full, p.getId(), Snapshot.PLAYER_ALIVE, pos, false, alive);
+			fullCount++;
+
+			if (alive == record.isAlive && record.isKnown) {
+				continue;
+			}
+
+			putPlayer(delta, p.getId(), Snapshot.PLAYER_ALIVE, pos, false, alive);
+			deltaCount++;
+
+			record.isAlive = alive;
+			record.isKnown = true;
+		}
+
+		full.putShort(fullStart, fullCount);
+
+		if (deltaCount == 0) {
+			delta.rewind(deltaStart);
+			return false;
+		}
+
+		delta.putShort(deltaStart, deltaCount);
+		return true;
+	}
+
+	/**
+	 * Put a player into the buffer, in the format of the player fields of
+	 * {@link server.Snapshot Snapshot}.
+	 *
+	 * @param buffer
+	 *            --- the buffer
+	 * @param uid
+	 *            --- the player id
+	 * @param playerMask
+	 *            --- the mask of player fields to put
+	 * @param pos
+	 *            --- the player's position
+	 * @param torch
+	 *            --- whether the player is holding a torch
+	 * @param alive
+	 *            --- whether the player is alive
+	 */
+	static void putPlayer(SnapshotBuffer buffer, int uid, int playerMask, Position pos, boolean torch,
+			boolean alive) {
+		buffer.putInt(uid);
+		buffer.put(playerMask);
+		if ((playerMask & Snapshot.PLAYER_POSITION) != 0) {
+			buffer.putShort(pos.areaId);
+			buffer.putShort(pos.x);
+			buffer.putShort(pos.y);
+			buffer.put(pos.getDirection().ordinal());
+		}
+		if ((playerMask & Snapshot.PLAYER_TORCH) != 0) {
+			buffer.put(torch ? 1 : 0);
+		}
+		if ((playerMask & Snapshot.PLAYER_ALIVE) != 0) {
+			buffer.put(alive ? 1 : 0);
+		}
+	}
+
+	/**
+	 * What the last SharedSnapshot carried about a player.
+	 */
+	private static class PlayerRecord {
+
+		/**
+		 * Whether any SharedSnapshot has carried this player at all.
+		 */
+		boolean isKnown = false;
+
+		/**
+		 * Whether the player is alive.
+		 */
+		boolean isAlive;
+	}
+
+}
@@ -0,0 +1,334 @@
+package server;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import server.SharedSnapshot.PlayerStatus;
+import server.game.player.Position;
+
+/**
+ * This class encodes snapshots for one client. The part shared by every client
+ * is pre-encoded once per broadcast in a {@link server.SharedSnapshot
+ * SharedSnapshot}, and this class only encodes the part private to this
+ * client. It remembers what the client has been told, so every snapshot only
+ * carries the fields that have changed since the previous one. The format is
+ * described in {@link server.Snapshot Snapshot}.
+ *
+ * <p>
+ * The client is only told the position and torch status of the players in
+ * the area of interest of its player, see {@link server.InterestGrid
+ * InterestGrid}, and that a player has gone when he leaves it.
+ *
+ * @author Hector (Fang Zhao 300364061)
+ *
+ */
+public class SnapshotEncoder {
+
+	/**
+	 * The size of the header, i.e. the version and the mask.
+	 */
+	private static final int HEADER_SIZE = 3;
+
+	/**
+	 * The unique id of the client this encoder is for.
+	 */
+	private final int uid;
+
+	/**
+	 * The buffer the private part is encoded into. It is reused for every
+	 * snapshot.
+	 */
+	private final SnapshotBuffer buffer;
+
+	/**
+	 * The tick of the last SharedSnapshot the client has been sent.
+	 */
+	private long tick = -1;
+
+	/**
+	 * The last health the client has been told.
+	 */
+	private int health = Integer.MIN_VALUE;
+
+	/**
+	 * The last visibility the client has been told.
+	 */
+	private int visibility = Integer.MIN_VALUE;
+
+	/**
+	 * The last inventory the client has been told.
+	 */
+	private String inventory;
+
+	/**
+	 * The sequence number of the last command applied the client has been
+	 * told.
+	 */
+	private int processedSequence = -1;
+
+	/**
+	 * What the client has been told about every player in the area of
+	 * interest, where the key is the player id.
+	 */
+	private final Map<Integer, NearbyRecord> nearby = new HashMap<>();
+
+	/**
+	 * The players found in the area of interest. It's reused for every
+	 * snapshot.
+	 */
+	private final List<PlayerStatus> found = new ArrayList<>();
+
+	/**
+	 * Constructor
+	 *
+	 * @param uid
+	 *            --- the unique id of the client
+	 */
+	public SnapshotEncoder(int uid) {
+		this.uid = uid;
+		this.buffer = new SnapshotBuffer();
+	}
+
+	/**
+	 * Encode a snapshot of the game status, and write it to the given stream.
+	 * The stream is not flushed.
+	 *
+	 * @param output
+	 *            --- the stream to write to
+	 * @param server
+	 *            --- the server, where notifications are retrieved from.
+	 * @param shared
+	 *            --- the snapshot built on the latest tick, or null if none
+	 *            has been built yet, in which case nothing is written.
+	 * @throws IOException
+	 */
+	public void writeSnapshot(DataOutputStream output, ServerMain server, SharedSnapshot shared)
+			throws IOException {
+		if (shared == null) {
+			return;
+		}
+		writeSnapshot(output, shared, server.retrieveNotification(uid));
+	}
+
+	/**
+	 * Encode a snapshot of the game status with the given notification, and
+	 * write it to the given stream. The stream is not flushed.
+	 *
+	 * @param output
+	 *            --- the stream to write to
+	 * @param shared
+	 *            --- the snapshot built on the latest tick
+	 * @param notification
+	 *            --- a notification message, or null if there is none
+	 * @throws IOException
+	 */
+	public void writeSnapshot(DataOutputStream output, SharedSnapshot shared, String notification)
+			throws IOException {
+
+		// the shared part: nothing if already sent, the delta if the previous
+		// one is sent, or everything if the client missed any.
+		int sharedMask = 0;
+		byte[] sharedBytes = null;
+		if (shared.getTick() != tick) {
+			if (shared.getTick() == tick + 1) {
+				sharedMask = shared.getDeltaMask();
+				sharedBytes = shared.getDelta();
+			} else {
+				sharedMask = shared.getFullMask();
+				sharedBytes = shared.getFull();
+			}
+			tick = shared.getTick();
+		}
+
+		int privateMask = encode(shared, shared.getPlayerStatus(uid), notification);
+		int sharedLength = sharedBytes == null ? 0 : sharedBytes.length;
+
+		output.writeInt(HEADER_SIZE + sharedLength + buffer.position());
+		output.writeByte(Snapshot.VERSION);
+		output.writeShort(sharedMask | privateMask);
+		if (sharedBytes != null) {
+			output.write(sharedBytes);
+		}
+		buffer.writeTo(output);
+	}
+
+	/**
+	 * Encode the part private to this client into the buffer.
+	 *
+	 * @param shared
+	 *            --- the snapshot built on the latest tick
+	 * @param status
+	 *            --- the status of the player in this client, or null if the
+	 *            player is not in game.
+	 * @param notification
+	 *            --- a notification message, or null if there is none
+	 * @return --- the mask of fields encoded
+	 */
+	private int encode(SharedSnapshot shared, PlayerStatus status, String notification) {
+		buffer.clear();
+		int mask = 0;
+
+		if (status != null) {
+			mask |= encodeStatus(status);
+		}
+
+		// ======= optional message broadcast =======
+
+		// 4. notification
+		if (notification != null) {
+			buffer.putString(notification);
+			mask |= Snapshot.NOTIFICATION;
+		}
+
+		// 5. the last command applied
+		if (status != null && status.processedSequence != processedSequence) {
+			processedSequence = status.processedSequence;
+			buffer.putInt(processedSequence);
+			mask |= Snapshot.ACK;
+		}
+
+		// 6. the players in the area of interest
+		if (encodeNearby(shared, status)) {
+			mask |= Snapshot.NEARBY;
+		}
+
+		return mask;
+	}
+
+	/**
+	 * Encode the status of the player in this client, if it has changed.
+	 *
+	 * @param status
+	 *            --- the status of the player in this client
+	 * @return --- the mask of fields encoded
+	 */
+	private int encodeStatus(PlayerStatus status) {
+		int mask = 0;
+
+		// 1. health
+		int h = status.health;
+		if (h != health) {
+			health = h;
+			buffer.putInt(h);
+			mask |= Snapshot.HEALTH;
+		}
+
+		// 2. visibility
+		int v = status.visibility;
+		if (v != visibility) {
+			visibility = v;
+			buffer.put(v);
+			mask |= Snapshot.VISIBILITY;
+		}
+
+		// 3. inventory
+		String inv = status.inventory;
+		if (!inv.equals(inventory)) {
+			inventory = inv;
+			String[] items = inv.isEmpty() ? new String[0] : inv.split("\\|");
+			buffer.put(items.length);
+			for (String item : items) {
+				buffer.putString(item);
+			}
+			mask |= Snapshot.INVENTORY;
+		}
+
+		return mask;
+	}
+
+	/**
+	 * Encode the players in the area of interest of the player in this
+	 * client, whose position or torch status has changed since the client was
+	 * told, and the players who have left it.
+	 *
+	 * @param shared
+	 *            --- the snapshot built on the latest tick
+	 * @param status
+	 *            --- the status of the player in this client, or null if the
+	 *            player is not in game.
+	 * @return --- true if anything is encoded, or false if nothing has
+	 *         changed.
+	 */
+	private boolean encodeNearby(SharedSnapshot shared, PlayerStatus status) {
+		int start = buffer.position();
+		buffer.putShort(0);
+		int count = 0;
+		long current = shared.getTick();
+
+		found.clear();
+		if (status != null && status.position != null) {
+			shared.getInterestGrid().collect(status.position, InterestGrid.radiusOf(status.visibility), found);
+		}
+
+		for (PlayerStatus other : found) {
+			NearbyRecord record = nearby.get(other.uid);
+			if (record == null) {
+				record = new NearbyRecord();
+				nearby.put(other.uid, record);
+			}
+			record.tick = current;
+
+			int playerMask = 0;
+			if (!other.position.equals(record.position)) {
+				playerMask |= Snapshot.PLAYER_POSITION;
+			}
+			if (record.position == null || other.isHoldingTorch != record.isHoldingTorch) {
+				playerMask |= Snapshot.PLAYER_TORCH;
+			}
+			if (playerMask == 0) {
+				continue;
+			}
+
+			SnapshotBuilder.putPlayer(buffer, other.uid, playerMask, other.position, other.isHoldingTorch, false);
+			count++;
+			record.position = other.position;
+			record.isHoldingTorch = other.isHoldingTorch;
+		}
+
+		// the players not found this time have left
+		Iterator<Map.Entry<Integer, NearbyRecord>> iterator = nearby.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<Integer, NearbyRecord> entry = iterator.next();
+			if (entry.getValue().tick != current) {
+				SnapshotBuilder.putPlayer(buffer, entry.getKey(), Snapshot.PLAYER_GONE, null, false, false);
+				count++;
+				iterator.remove();
+			}
+		}
+
+		if (count == 0) {
+			buffer.rewind(start);
+			return false;
+		}
+
+		buffer.putShort(start, count);
+		return true;
+	}
+
+	/**
+	 * What the client has been told about a player in the area of interest.
+	 */
+	private static class NearbyRecord {
+
+		/**
+		 * The position, or null if the client hasn't been told yet.
+		 */
+		Position position;
+
+		/**
+		 * Whether the player is holding a torch.
+		 */
+		boolean isHoldingTorch;
+
+		/**
+		 * The tick the player was last found in the area of interest.
+		 */
+		long tick;
+	}
+
+}
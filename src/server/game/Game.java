@@ -14,8 +14,10 @@ import server.game.items.Destroyable;
 import server.game.items.Item;
 import server.game.items.Key;
 import server.game.items.Torch;
+import server.game.player.Direction;
 import server.game.player.Player;
 import server.game.player.Position;
+import server.game.player.PositionObserver;
 import server.game.player.Virus;
 import server.game.world.Area;
 import server.game.world.Container;
@@ -101,6 +103,12 @@ public class Game {
 	 */
 	private Map<Integer, Player> players;
 
+	/**
+	 * The same players as <i>players</i>, but they can be found by id without
+	 * boxing it, which is what every player action does first.
+	 */
+	private final IntMap<Player> playerIndex = new IntMap<>();
+
 	/**
 	 * A timer for world clock. It starts when the Game object is constructed.
 	 */
@@ -111,6 +119,26 @@ public class Game {
 	 */
 	private LocalTime clock;
 
+	/**
+	 * How many seconds the world time advances on every tick.
+	 */
+	private int timeScale = TIME_ADVANCING_SPEED;
+
+	/**
+	 * Players age and torches burn on this timing wheel, which advances on
+	 * every tick.
+	 */
+	private final TimingWheel wheel = new TimingWheel();
+
+	/**
+	 * It watches every player in game, and keeps the occupancy of areas up to
+	 * date whenever a player's position is set.
+	 */
+	private final PositionObserver occupancyTracker = (player, oldPosition, newPosition) -> {
+		vacate(oldPosition);
+		occupy(newPosition);
+	};
+
 	/**
 	 * Constructor a game world without any players inside. Note that the first
 	 * parameter is not really necessary, as the second parameter will contain
@@ -126,6 +154,7 @@ public class Game {
 
 		this.world = world;
 		this.areas = areas;
+		compactLargeAreas();
 
 		// a temporary random generator
 		Random ran = new Random();
@@ -154,6 +183,7 @@ public class Game {
 
 		this.world = world;
 		this.areas = areas;
+		compactLargeAreas();
 		this.players = players;
 		this.players = new HashMap<>();
 
@@ -170,6 +200,19 @@ public class Game {
 		clock = LocalTime.of(hour, minute, second);
 	}
 
+	/**
+	 * Switch every area with at least {@link Area#COMPACT_THRESHOLD
+	 * COMPACT_THRESHOLD} cells to the compact tile storage. Small areas are
+	 * left as they are.
+	 */
+	private void compactLargeAreas() {
+		for (Area a : areas.values()) {
+			if (a.getWidth() * a.getHeight() >= Area.COMPACT_THRESHOLD) {
+				a.compact();
+			}
+		}
+	}
+
 	/**
 	 * Joins a player in game.
 	 *
@@ -186,17 +229,25 @@ public class Game {
 		}
 
 		players.put(player.getId(), player);
+		playerIndex.put(player.getId(), player);
+
+		// from now on, keep the occupancy of areas updated with his position.
+		player.setPositionObserver(occupancyTracker);
+
+		// and he starts aging as the world ticks.
+		player.startAging(wheel);
 
 		/*
 		 * If player has a position, then it has been loaded from a previous
 		 * game, and does not need a new position.
 		 */
 		if (player.getPosition() != null) {
+			occupy(player.getPosition());
 			return;
 		}
 
 		// Let's spawn the player in a random location.
-		Position pos = world.getPlayerSpawnPos(this);
+		Position pos = world.getPlayerSpawnPos();
 
 		/*
 		 * This should never happen. In theory, if the whole world doesn't have
@@ -213,6 +264,11 @@ public class Game {
 	/**
 	 * Start the world time. The world time is constantly advancing. As long as
 	 * the server is running, no other events will stop it.
+	 *
+	 * <p>
+	 * Note that the timer ticks on its own thread. The server doesn't use it,
+	 * instead its game loop calls {@link #tick() tick} on the same thread that
+	 * applies player commands.
 	 */
 	public void startTiming() {
 		// start ticking
@@ -220,32 +276,62 @@ public class Game {
 		timer.scheduleAtFixedRate(new TimerTask() {
 			@Override
 			public void run() {
-				// decrease every player's life
-				for (Player p : players.values()) {
-					p.increaseHealth(-1);
-
-					// if the player is holding a torch, decrease torch's life
-					if (p.isHoldingTorch()) {
-						Torch t = p.getTorchInHand();
-						if (t != null && t.isFlaming()) {
-							t.Burn();
-
-							// if the torch dies out, destroy it
-							if (t.getTimeLeft() <= 0) {
-								p.extinguishTorch(t);
-								p.destroyItem(t);
-							}
-
-						}
-					}
-				}
-
-				// time advance by some amount
-				clock = clock.plusSeconds(TIME_ADVANCING_SPEED);
+				tick();
 			}
 		}, 1000, 1000);
 	}
 
+	/**
+	 * Advance the world by one tick, i.e. one second of real time by default:
+	 * every player loses one health, every flaming torch in hand burns, and
+	 * the world time advances by {@link #getTimeScale() the time scale}.
+	 *
+	 * <p>
+	 * Health and torch time are not counted down one by one. They are worked
+	 * out from the tick of the timing wheel, and the wheel only fires when
+	 * someone dies or a torch is used up, so a tick costs as much as the
+	 * events that actually happen on it.
+	 */
+	public void tick() {
+		wheel.advance();
+
+		// time advance by some amount
+		clock = clock.plusSeconds(timeScale);
+	}
+
+	/**
+	 * Get how many seconds the world time advances on every tick.
+	 *
+	 * @return --- the time scale
+	 */
+	public int getTimeScale() {
+		return timeScale;
+	}
+
+	/**
+	 * Set how many seconds the world time advances on every tick. The default
+	 * is {@link #TIME_ADVANCING_SPEED TIME_ADVANCING_SPEED}. If the time scale
+	 * is negative, a <i>GameError</i> is thrown.
+	 *
+	 * @param timeScale
+	 *            --- the time scale
+	 */
+	public void setTimeScale(int timeScale) {
+		if (timeScale < 0) {
+			throw new GameError("Time scale cannot be negative: " + timeScale);
+		}
+		this.timeScale = timeScale;
+	}
+
+	/**
+	 * Get the timing wheel that the world ticks on.
+	 *
+	 * @return --- the timing wheel
+	 */
+	public TimingWheel getTimingWheel() {
+		return wheel;
+	}
+
 	/**
 	 * Disconnect the player, and re-distribute all his keys to locked
 	 * containers.
@@ -257,6 +343,14 @@ public class Game {
 	public void disconnectPlayer(int playerId) {
 		// delete player from player list.
 		Player player = players.remove(playerId);
+		playerIndex.remove(playerId);
+
+		// he doesn't occupy anywhere any more.
+		if (player != null) {
+			player.setPositionObserver(null);
+			player.stopAging();
+			vacate(player.getPosition());
+		}
 
 		// this feature is disabled due to constraints from data storage part
 
@@ -279,7 +373,23 @@ public class Game {
 	 *            --- The new players map from integer id to Player object
 	 */
 	public void resetPlayers(Map<Integer, Player> map) {
+		for (Player p : players.values()) {
+			p.setPositionObserver(null);
+			p.stopAging();
+		}
+		for (Area a : areas.values()) {
+			a.clearOccupants();
+		}
+
 		this.players = map;
+		playerIndex.clear();
+
+		for (Player p : players.values()) {
+			playerIndex.put(p.getId(), p);
+			p.setPositionObserver(occupancyTracker);
+			p.startAging(wheel);
+			occupy(p.getPosition());
+		}
 	}
 
 	/**
@@ -295,60 +405,59 @@ public class Game {
 			return true;
 		}
 
-		for (Player p : players.values()) {
-			Position pos = p.getPosition();
-			if (pos == null) {
-				continue;
-			}
-
-			if (pos.areaId == position.areaId && pos.x == position.x && pos.y == position.y) {
-				return true;
-			}
-
+		Area area = areas.get(position.areaId);
+		if (area == null) {
+			return false;
 		}
-		return false;
+
+		return area.isOccupied(position.x, position.y);
 	}
 
 	/**
-	 * This method tries to move the given player one step forward.
+	 * Record that a player is standing at the given position.
 	 *
-	 * @param uid
-	 *            --- the id number of the player
-	 * @return --- true if successful, or false if the player cannot move
-	 *         forward for some reason, e.g. blocked by obstacle.
+	 * @param position
+	 *            --- the position, or null for nowhere.
 	 */
-	public boolean playerMoveForward(int uid) {
-		Player player = players.get(uid);
-
-		// dead man
-		if (!player.isAlive()) {
-			return false;
+	private void occupy(Position position) {
+		if (position == null) {
+			return;
 		}
 
-		Position currentPosition = player.getPosition();
-		Area currentArea = areas.get(currentPosition.areaId);
-		MapElement frontMapElement = currentArea.getFrontMapElement(player);
-
-		// check if there is obstacles in front
-		if (frontMapElement == null || frontMapElement instanceof Obstacle) {
-			return false;
+		Area area = areas.get(position.areaId);
+		if (area != null) {
+			area.addOccupant(position.x, position.y);
 		}
+	}
 
-		Position forwardPosition = currentPosition.frontPosition();
-
-		// check if it's out of board
-		if (!currentArea.isInBoard(forwardPosition)) {
-			return false;
+	/**
+	 * Record that a player has left the given position.
+	 *
+	 * @param position
+	 *            --- the position, or null for nowhere.
+	 */
+	private void vacate(Position position) {
+		if (position == null) {
+			return;
 		}
 
-		// check if there are other players in front
-		if (isOccupiedByOtherPlayer(forwardPosition)) {
-			return false;
+		Area area = areas.get(position.areaId);
+		if (area != null) {
+			area.removeOccupant(position.x, position.y);
 		}
+	}
 
-		// OK we can move him forward
-		player.setPosition(forwardPosition);
-		return true;
+	/**
+	 * This method tries to move the given player one step forward.
+	 *
+	 * @param uid
+	 *            --- the id number of the player
+	 * @return --- true if successful, or false if the player cannot move
+	 *         forward for some reason, e.g. blocked by obstacle.
+	 */
+	public boolean playerMoveForward(int uid) {
+		Player player = playerIndex.get(uid);
+		return playerMoveTowards(player, player.getDirection());
 	}
 
 	/**
@@ -360,37 +469,8 @@ public class Game {
 	 *         backward for some reason, e.g. blocked by obstacle.
 	 */
 	public boolean playerMoveBackward(int uid) {
-		Player player = players.get(uid);
-
-		// dead man
-		if (!player.isAlive()) {
-			return false;
-		}
-
-		Position currentPosition = player.getPosition();
-		Area currentArea = areas.get(currentPosition.areaId);
-		MapElement backMapElement = currentArea.getBackMapElement(player);
-
-		// check if there is obstacles in front
-		if (backMapElement == null || backMapElement instanceof Obstacle) {
-			return false;
-		}
-
-		Position backPosition = currentPosition.backPosition();
-
-		// check if it's out of board
-		if (!currentArea.isInBoard(backPosition)) {
-			return false;
-		}
-
-		// check if there are other players in front
-		if (isOccupiedByOtherPlayer(backPosition)) {
-			return false;
-		}
-
-		// OK we can move him forward
-		player.setPosition(backPosition);
-		return true;
+		Player player = playerIndex.get(uid);
+		return playerMoveTowards(player, player.getDirection().opposite());
 	}
 
 	/**
@@ -402,37 +482,8 @@ public class Game {
 	 *         for some reason, e.g. blocked by obstacle.
 	 */
 	public boolean playerMoveLeft(int uid) {
-		Player player = players.get(uid);
-
-		// dead man
-		if (!player.isAlive()) {
-			return false;
-		}
-
-		Position currentPosition = player.getPosition();
-		Area currentArea = areas.get(currentPosition.areaId);
-		MapElement leftMapElement = currentArea.getLeftMapElement(player);
-
-		// check if there is obstacles in front
-		if (leftMapElement == null || leftMapElement instanceof Obstacle) {
-			return false;
-		}
-
-		Position leftPosition = currentPosition.leftPosition();
-
-		// check if it's out of board
-		if (!currentArea.isInBoard(leftPosition)) {
-			return false;
-		}
-
-		// check if there are other players in front
-		if (isOccupiedByOtherPlayer(leftPosition)) {
-			return false;
-		}
-
-		// OK we can move him forward
-		player.setPosition(leftPosition);
-		return true;
+		Player player = playerIndex.get(uid);
+		return playerMoveTowards(player, player.getDirection().left());
 	}
 
 	/**
@@ -444,8 +495,24 @@ public class Game {
 	 *         for some reason, e.g. blocked by obstacle.
 	 */
 	public boolean playerMoveRight(int uid) {
-		Player player = players.get(uid);
+		Player player = playerIndex.get(uid);
+		return playerMoveTowards(player, player.getDirection().right());
+	}
 
+	/**
+	 * This method tries to move the given player one step towards the given
+	 * direction, without changing his facing direction. It creates no
+	 * objects: the target is worked out on primitive coordinates, and the
+	 * player is moved onto the area's shared Position.
+	 *
+	 * @param player
+	 *            --- the player
+	 * @param towards
+	 *            --- the direction to step towards
+	 * @return --- true if successful, or false if the player cannot move
+	 *         there for some reason, e.g. blocked by obstacle.
+	 */
+	private boolean playerMoveTowards(Player player, Direction towards) {
 		// dead man
 		if (!player.isAlive()) {
 			return false;
@@ -453,27 +520,22 @@ public class Game {
 
 		Position currentPosition = player.getPosition();
 		Area currentArea = areas.get(currentPosition.areaId);
-		MapElement rightMapElement = currentArea.getRightMapElement(player);
-
-		// check if there is obstacles in front
-		if (rightMapElement == null || rightMapElement instanceof Obstacle) {
-			return false;
-		}
-
-		Position rightPosition = currentPosition.rightPosition();
+		int x = currentPosition.x + towards.getDx();
+		int y = currentPosition.y + towards.getDy();
+		MapElement targetMapElement = currentArea.getMapElementAt(x, y);
 
-		// check if it's out of board
-		if (!currentArea.isInBoard(rightPosition)) {
+		// check if there is obstacles there, or it's out of board
+		if (targetMapElement == null || targetMapElement instanceof Obstacle) {
 			return false;
 		}
 
-		// check if there are other players in front
-		if (isOccupiedByOtherPlayer(rightPosition)) {
+		// check if there are other players there
+		if (currentArea.isOccupied(x, y)) {
 			return false;
 		}
 
-		// OK we can move him forward
-		player.setPosition(rightPosition);
+		// OK we can move him there
+		player.setPosition(currentArea.getPosition(x, y, currentPosition.getDirection()));
 		return true;
 	}
 
@@ -484,24 +546,17 @@ public class Game {
 	 *            --- the id number of the player
 	 */
 	public void playerTurnLeft(int uid) {
-		Player player = players.get(uid);
+		Player player = playerIndex.get(uid);
 
 		// dead man
 		if (!player.isAlive()) {
 			return;
 		}
 
-		// When transit we should keep player's direction unchanged.
 		Position currentPosition = player.getPosition();
 		Area currentArea = areas.get(currentPosition.areaId);
-		MapElement currentMapElement = currentArea.getMapElementAt(currentPosition.x, currentPosition.y);
-		if (currentMapElement instanceof TransitionSpace) {
-			player.setPosition(new Position(currentPosition.x, currentPosition.y, currentPosition.areaId,
-					player.getPosition().getDirection().left()));
-			return;
-		}
-
-		player.turnLeft();
+		player.setPosition(currentArea.getPosition(currentPosition.x, currentPosition.y,
+				currentPosition.getDirection().left()));
 	}
 
 	/**
@@ -511,24 +566,17 @@ public class Game {
 	 *            --- the id number of the player
 	 */
 	public void playerTurnRight(int uid) {
-		Player player = players.get(uid);
+		Player player = playerIndex.get(uid);
 
 		// dead man
 		if (!player.isAlive()) {
 			return;
 		}
 
-		// When transit we should keep player's direction unchanged.
 		Position currentPosition = player.getPosition();
 		Area currentArea = areas.get(currentPosition.areaId);
-		MapElement currentMapElement = currentArea.getMapElementAt(currentPosition.x, currentPosition.y);
-		if (currentMapElement instanceof TransitionSpace) {
-			player.setPosition(new Position(currentPosition.x, currentPosition.y, currentPosition.areaId,
-					player.getPosition().getDirection().right()));
-			return;
-		}
-
-		player.turnRight();
+		player.setPosition(currentArea.getPosition(currentPosition.x, currentPosition.y,
+				currentPosition.getDirection().right()));
 	}
 
 	/**
@@ -542,7 +590,7 @@ public class Game {
 	 *         facing the door, or he is too far from it.
 	 */
 	public boolean playerTransit(int uid) {
-		Player player = players.get(uid);
+		Player player = playerIndex.get(uid);
 
 		// dead man
 		if (!player.isAlive()) {
@@ -593,7 +641,7 @@ public class Game {
 	 *         to open it.
 	 */
 	public boolean playerUnlockLockable(int uid) {
-		Player player = players.get(uid);
+		Player player = playerIndex.get(uid);
 
 		// dead man
 		if (!player.isAlive()) {
@@ -641,7 +689,7 @@ public class Game {
 	 *         false if he has taken none from the container.
 	 */
 	public boolean playerTakeItemsFromContainer(int uid) {
-		Player player = players.get(uid);
+		Player player = playerIndex.get(uid);
 
 		// dead man
 		if (!player.isAlive()) {
@@ -672,7 +720,7 @@ public class Game {
 	 *         when the container is full or locked).
 	 */
 	public boolean playerPutItemIntoContainer(int uid, int index) {
-		Player player = players.get(uid);
+		Player player = playerIndex.get(uid);
 
 		// dead man
 		if (!player.isAlive()) {
@@ -701,7 +749,7 @@ public class Game {
 	 * @return --- true if the item is used, or false if the action failed.
 	 */
 	public boolean playerUseItem(int uid, int index) {
-		Player player = players.get(uid);
+		Player player = playerIndex.get(uid);
 
 		// dead man
 		if (!player.isAlive()) {
@@ -763,7 +811,7 @@ public class Game {
 	 * @return --- true if the item is destroyed, or false if the action failed.
 	 */
 	public boolean playerDestroyItem(int uid, int index) {
-		Player player = players.get(uid);
+		Player player = playerIndex.get(uid);
 
 		// dead man
 		if (!player.isAlive()) {
@@ -797,7 +845,7 @@ public class Game {
 	 *         night time if the player is holding a burning torch.
 	 */
 	public int getPlayerVisibility(int uid) {
-		Player player = players.get(uid);
+		Player player = playerIndex.get(uid);
 
 		if (clock.getHour() >= SUNRISE_TIME && clock.getHour() < SUNSET_TIME) {
 			// it's day time
@@ -859,7 +907,7 @@ public class Game {
 	 * @return --- the corresponding player.
 	 */
 	public Player getPlayerById(int uid) {
-		Player player = players.get(uid);
+		Player player = playerIndex.get(uid);
 		if (player == null) {
 			throw new GameError("Unknown player Id.");
 		}
@@ -875,7 +923,7 @@ public class Game {
 	 * @return --- the current health of this player.
 	 */
 	public int getPlayerHealth(int uid) {
-		Player player = players.get(uid);
+		Player player = playerIndex.get(uid);
 		return player.getHealthLeft();
 	}
 
@@ -887,7 +935,7 @@ public class Game {
 	 * @return --- the player's virus type.
 	 */
 	public Virus getPlayerVirus(int uid) {
-		Player player = players.get(uid);
+		Player player = playerIndex.get(uid);
 		return player.getVirus();
 	}
 
@@ -1055,7 +1103,7 @@ public class Game {
 	 *         inventory. This is used for network transmission.
 	 */
 	public String getPlayerInventoryString(int uid) {
-		Player player = players.get(uid);
+		Player player = playerIndex.get(uid);
 		List<Item> inv = player.getInventory();
 
 		StringBuilder sb = new StringBuilder();
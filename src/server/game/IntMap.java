@@ -0,0 +1,189 @@
+package server.game;
+
+/**
+ * This class maps int keys to values without boxing the keys into Integers,
+ * so that looking something up by a player id, a cell index, etc. on every
+ * command or snapshot doesn't create any garbage. Player ids are port numbers,
+ * which are mostly beyond the range of cached Integers. It's an open
+ * addressing hash table with linear probing, and null values are not allowed.
+ *
+ * <p>
+ * It's the one int-keyed map used wherever such a lookup is on a hot path, on
+ * both server and client side. It's not thread-safe.
+ *
+ * @author Hector (Fang Zhao 300364061)
+ *
+ * @param <V>
+ *            --- the type of values
+ */
+public class IntMap<V> {
+
+	/**
+	 * The initial capacity of the table. It must be a power of two.
+	 */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * Keys. A slot is empty if the value in the same slot is null.
+	 */
+	private int[] keys;
+
+	/**
+	 * Values, in the same slot as their key.
+	 */
+	private Object[] values;
+
+	/**
+	 * The number of entries in the table.
+	 */
+	private int size;
+
+	/**
+	 * Constructor
+	 */
+	public IntMap() {
+		keys = new int[INITIAL_CAPACITY];
+		values = new Object[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Find the value of the given key.
+	 *
+	 * @param key
+	 *            --- the key
+	 * @return --- the value, or null if there is no such key.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int key) {
+		int mask = keys.length - 1;
+		for (int i = hash(key) & mask; values[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				return (V) values[i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Put a value in the table. Any value with the same key is replaced.
+	 *
+	 * @param key
+	 *            --- the key
+	 * @param value
+	 *            --- the value, which must not be null
+	 */
+	public void put(int key, V value) {
+		// keep the load factor under a half
+		if ((size + 1) * 2 > keys.length) {
+			resize(keys.length * 2);
+		}
+		insert(key, value);
+	}
+
+	/**
+	 * Put a value in the table under the given key, assuming there is room.
+	 *
+	 * @param key
+	 *            --- the key
+	 * @param value
+	 *            --- the value
+	 */
+	private void insert(int key, Object value) {
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		while (values[i] != null) {
+			if (keys[i] == key) {
+				values[i] = value;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+
+		keys[i] = key;
+		values[i] = value;
+		size++;
+	}
+
+	/**
+	 * Remove the value of the given key from the table. It does nothing if
+	 * there is no such key.
+	 *
+	 * @param key
+	 *            --- the key
+	 */
+	public void remove(int key) {
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		while (values[i] != null && keys[i] != key) {
+			i = (i + 1) & mask;
+		}
+		if (values[i] == null) {
+			return;
+		}
+
+		values[i] = null;
+		size--;
+
+		// shift back the following entries in the same run, so that no one is
+		// cut off from its home slot by the hole just made.
+		int hole = i;
+		for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+			int home = hash(keys[j]) & mask;
+			if (((j - home) & mask) >= ((j - hole) & mask)) {
+				keys[hole] = keys[j];
+				values[hole] = values[j];
+				values[j] = null;
+				hole = j;
+			}
+		}
+	}
+
+	/**
+	 * Remove all entries from the table.
+	 */
+	public void clear() {
+		keys = new int[INITIAL_CAPACITY];
+		values = new Object[INITIAL_CAPACITY];
+		size = 0;
+	}
+
+	/**
+	 * @return --- the number of entries in the table
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Grow the table, and put every entry in again.
+	 *
+	 * @param capacity
+	 *            --- the new capacity, which must be a power of two.
+	 */
+	private void resize(int capacity) {
+		int[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new int[capacity];
+		values = new Object[capacity];
+		size = 0;
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldValues[i] != null) {
+				insert(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+
+	/**
+	 * Spread the bits of the key, so that consecutive keys, e.g. port numbers,
+	 * don't end up in one run.
+	 *
+	 * @param key
+	 *            --- the key
+	 * @return --- the hash
+	 */
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+}
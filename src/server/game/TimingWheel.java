@@ -0,0 +1,263 @@
+package server.game;
+
+/**
+ * This class is a hierarchical timing wheel, which fires timeouts scheduled a
+ * number of ticks ahead. Scheduling and cancelling take constant time, and a
+ * tick only costs as much as the timeouts that are due, no matter how many are
+ * pending. A timeout far ahead waits in a coarse wheel, and is moved down to a
+ * finer one as its time draws near.
+ *
+ * <p>
+ * Each of the {@link #LEVELS LEVELS} wheels has 64 slots, and a slot on one
+ * level spans a whole turn of the level below. Timeouts further ahead than all
+ * wheels together wait on the last slot, and are rescheduled from there.
+ *
+ * <p>
+ * Timeouts are linked into slots directly, so scheduling and firing them
+ * creates no garbage. This class is not thread-safe, it's only used by the
+ * thread that ticks the game.
+ *
+ * @author Hector (Fang Zhao 300364061)
+ *
+ */
+public class TimingWheel {
+
+	/**
+	 * The number of bits of a tick that each level covers.
+	 */
+	private static final int BITS = 6;
+
+	/**
+	 * The number of slots in each level.
+	 */
+	private static final int SLOTS = 1 << BITS;
+
+	/**
+	 * The number of levels.
+	 */
+	public static final int LEVELS = 4;
+
+	/**
+	 * The furthest a timeout can be put ahead in the wheels.
+	 */
+	private static final long SPAN = 1L << (BITS * LEVELS);
+
+	/**
+	 * Every slot of every level. Each slot is a circular list, and the head is
+	 * a timeout with no task.
+	 */
+	private final Timeout[][] slots;
+
+	/**
+	 * The number of ticks so far.
+	 */
+	private long now = 0;
+
+	/**
+	 * The number of timeouts pending.
+	 */
+	private int size = 0;
+
+	/**
+	 * Constructor
+	 */
+	public TimingWheel() {
+		slots = new Timeout[LEVELS][SLOTS];
+		for (int level = 0; level < LEVELS; level++) {
+			for (int i = 0; i < SLOTS; i++) {
+				Timeout head = new Timeout(null);
+				head.prev = head;
+				head.next = head;
+				slots[level][i] = head;
+			}
+		}
+	}
+
+	/**
+	 * Get the number of ticks so far.
+	 *
+	 * @return --- the current tick
+	 */
+	public long now() {
+		return now;
+	}
+
+	/**
+	 * Get the number of timeouts pending.
+	 *
+	 * @return --- the number of timeouts pending
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Schedule a timeout to fire after the given number of ticks. If it's
+	 * pending already, it's rescheduled.
+	 *
+	 * @param timeout
+	 *            --- the timeout
+	 * @param delay
+	 *            --- how many ticks from now. Anything less than 1 is taken as
+	 *            1, i.e. the next tick.
+	 */
+	public void schedule(Timeout timeout, long delay) {
+		cancel(timeout);
+		timeout.deadline = now + Math.max(delay, 1);
+		insert(timeout);
+		size++;
+	}
+
+	/**
+	 * Cancel a timeout. It does nothing if the timeout isn't pending.
+	 *
+	 * @param timeout
+	 *            --- the timeout
+	 */
+	public void cancel(Timeout timeout) {
+		if (timeout.isPending()) {
+			unlink(timeout);
+			size--;
+		}
+	}
+
+	/**
+	 * Advance by one tick, and fire every timeout that is due. A timeout is
+	 * no longer pending when its task runs, so the task can schedule it
+	 * again.
+	 *
+	 * @return --- the number of timeouts fired
+	 */
+	public int advance() {
+		now++;
+
+		// at the start of every turn of a level, bring the next slot of the
+		// level above down.
+		for (int level = 1; level < LEVELS; level++) {
+			if ((now & ((1L << (BITS * level)) - 1)) != 0) {
+				break;
+			}
+			cascade(slots[level][(int) (now >>> (BITS * level)) & (SLOTS - 1)]);
+		}
+
+		Timeout head = slots[0][(int) now & (SLOTS - 1)];
+		int fired = 0;
+		while (head.next != head) {
+			Timeout timeout = head.next;
+			unlink(timeout);
+			size--;
+			fired++;
+			timeout.task.run();
+		}
+		return fired;
+	}
+
+	/**
+	 * Put a timeout into the slot its deadline belongs to.
+	 *
+	 * @param timeout
+	 *            --- the timeout
+	 */
+	private void insert(Timeout timeout) {
+		long delay = timeout.deadline - now;
+		Timeout head;
+		if (delay >= SPAN) {
+			// too far ahead, wait on the last slot and try again from there.
+			head = slots[LEVELS - 1][(int) ((now + SPAN - 1) >>> (BITS * (LEVELS - 1))) & (SLOTS - 1)];
+		} else {
+			int level = 0;
+			while (delay >= (1L << (BITS * (level + 1)))) {
+				level++;
+			}
+			head = slots[level][(int) (timeout.deadline >>> (BITS * level)) & (SLOTS - 1)];
+		}
+
+		timeout.prev = head.prev;
+		timeout.next = head;
+		head.prev.next = timeout;
+		head.prev = timeout;
+	}
+
+	/**
+	 * Move every timeout in a slot to where it belongs now.
+	 *
+	 * @param head
+	 *            --- the head of the slot
+	 */
+	private void cascade(Timeout head) {
+		while (head.next != head) {
+			Timeout timeout = head.next;
+			unlink(timeout);
+			insert(timeout);
+		}
+	}
+
+	/**
+	 * Take a timeout out of its slot.
+	 *
+	 * @param timeout
+	 *            --- the timeout
+	 */
+	private static void unlink(Timeout timeout) {
+		timeout.prev.next = timeout.next;
+		timeout.next.prev = timeout.prev;
+		timeout.prev = null;
+		timeout.next = null;
+	}
+
+	/**
+	 * Something to be done at some tick in the future. A timeout is usually
+	 * created once by its owner, and scheduled again and again.
+	 */
+	public static class Timeout {
+
+		/**
+		 * What to do when it fires.
+		 */
+		private final Runnable task;
+
+		/**
+		 * The tick it fires on.
+		 */
+		private long deadline;
+
+		/**
+		 * The previous timeout in the same slot, or null if not pending.
+		 */
+		private Timeout prev;
+
+		/**
+		 * The next timeout in the same slot, or null if not pending.
+		 */
+		private Timeout next;
+
+		/**
+		 * Constructor
+		 *
+		 * @param task
+		 *            --- what to do when it fires
+		 */
+		public Timeout(Runnable task) {
+			this.task = task;
+		}
+
+		/**
+		 * Whether it's scheduled and yet to fire.
+		 *
+		 * @return --- true if pending, or false if not.
+		 */
+		public boolean isPending() {
+			return next != null;
+		}
+
+		/**
+		 * Get the tick it fires on. It's only meaningful while pending.
+		 *
+		 * @return --- the tick it fires on
+		 */
+		public long getDeadline() {
+			return deadline;
+		}
+	}
+
+}
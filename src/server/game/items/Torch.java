@@ -1,5 +1,8 @@
 package server.game.items;
 
+import server.game.TimingWheel;
+import server.game.TimingWheel.Timeout;
+
 /**
  * This class represents a torch.
  *
@@ -15,7 +18,8 @@ public class Torch extends Item implements Destroyable, Tradable {
 
 	/**
 	 * The "health" of this torch. The number indicates how many seconds left to
-	 * burn.
+	 * burn. While it's burning in the game, this is the time left when it
+	 * started burning.
 	 */
 	private int timeLimit;
 
@@ -24,6 +28,27 @@ public class Torch extends Item implements Destroyable, Tradable {
 	 */
 	private boolean isFlaming;
 
+	/**
+	 * The timing wheel this torch is burning on, or null if it isn't burning
+	 * in the game.
+	 */
+	private TimingWheel wheel;
+
+	/**
+	 * The tick this torch started burning on.
+	 */
+	private long burningSince;
+
+	/**
+	 * Fires when this torch is used up, created on first use.
+	 */
+	private Timeout burnOut;
+
+	/**
+	 * What to do when this torch is used up.
+	 */
+	private Runnable onBurntOut;
+
 	/**
 	 * Constructor
 	 *
@@ -69,20 +94,65 @@ public class Torch extends Item implements Destroyable, Tradable {
 	 *            --- true to light it, false to put it down.
 	 */
 	public void setIsFlaming(boolean isFlaming) {
-		if (timeLimit > 0) {
+		if (getTimeLeft() > 0) {
+			if (!isFlaming) {
+				stopBurning();
+			}
 			this.isFlaming = isFlaming;
 		}
 	}
 
 	/**
-	 * This method burns the torch (time left decreased by 1)
+	 * Let this lighted torch burn as the given timing wheel ticks, one second
+	 * per tick, until it's put down or used up. Nothing is done on each tick;
+	 * the time left is worked out from the tick it started, and a single
+	 * timeout fires when it's used up. It does nothing if the torch isn't
+	 * lighted.
+	 *
+	 * @param wheel
+	 *            --- the timing wheel of the game
+	 * @param onBurntOut
+	 *            --- what to do when it's used up, or null if nothing.
 	 */
-	public void Burn() {
-		if (timeLimit >= 0) {
-			timeLimit--;
-			if (timeLimit <= 0) {
-				isFlaming = false;
-			}
+	public void startBurning(TimingWheel wheel, Runnable onBurntOut) {
+		stopBurning();
+		if (!isFlaming || timeLimit <= 0) {
+			return;
+		}
+
+		if (burnOut == null) {
+			burnOut = new Timeout(this::burntOut);
+		}
+		this.wheel = wheel;
+		this.onBurntOut = onBurntOut;
+		burningSince = wheel.now();
+		wheel.schedule(burnOut, timeLimit);
+	}
+
+	/**
+	 * Stop burning on the timing wheel, and remember the time left. The torch
+	 * stays lighted. It does nothing if it isn't burning.
+	 */
+	public void stopBurning() {
+		if (wheel == null) {
+			return;
+		}
+
+		timeLimit = getTimeLeft();
+		wheel.cancel(burnOut);
+		wheel = null;
+		onBurntOut = null;
+	}
+
+	/**
+	 * This method is called when the torch is used up on the timing wheel.
+	 */
+	private void burntOut() {
+		Runnable r = onBurntOut;
+		stopBurning();
+		isFlaming = false;
+		if (r != null) {
+			r.run();
 		}
 	}
 
@@ -92,7 +162,10 @@ public class Torch extends Item implements Destroyable, Tradable {
 	 * @return --- how many seconds left for this torch to burn
 	 */
 	public int getTimeLeft() {
-		return timeLimit;
+		if (wheel == null) {
+			return timeLimit;
+		}
+		return timeLimit - (int) (wheel.now() - burningSince);
 	}
 
 	@Override
@@ -100,7 +173,7 @@ public class Torch extends Item implements Destroyable, Tradable {
 		final int prime = 31;
 		int result = super.hashCode();
 		result = prime * result + (isFlaming ? 1231 : 1237);
-		result = prime * result + timeLimit;
+		result = prime * result + getTimeLeft();
 		return result;
 	}
 
@@ -115,14 +188,14 @@ public class Torch extends Item implements Destroyable, Tradable {
 		Torch other = (Torch) obj;
 		if (isFlaming != other.isFlaming)
 			return false;
-		if (timeLimit != other.timeLimit)
+		if (getTimeLeft() != other.getTimeLeft())
 			return false;
 		return true;
 	}
 
 	@Override
 	public String toString() {
-		int minutesLeft = timeLimit / 60;
+		int minutesLeft = getTimeLeft() / 60;
 		String minutesLeftString = minutesLeft >= 1 ? String.valueOf(minutesLeft) : "less than 1";
 		return super.toString() + " I reckon it has about " + minutesLeftString + " minutes left to burn.";
 	}
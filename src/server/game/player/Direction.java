@@ -8,7 +8,56 @@ package server.game.player;
  */
 public enum Direction {
 
-	North, East, South, West;
+	North(0, -1), East(1, 0), South(0, 1), West(-1, 0);
+
+	/**
+	 * All directions in order. <i>values()</i> returns a new copy on every
+	 * call, so it's cached here.
+	 */
+	private static final Direction[] VALUES = values();
+
+	/**
+	 * The change of x coordinate when taking one step towards this direction.
+	 */
+	private final int dx;
+
+	/**
+	 * The change of y coordinate when taking one step towards this direction.
+	 */
+	private final int dy;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param dx
+	 *            --- the change of x coordinate of one step
+	 * @param dy
+	 *            --- the change of y coordinate of one step
+	 */
+	private Direction(int dx, int dy) {
+		this.dx = dx;
+		this.dy = dy;
+	}
+
+	/**
+	 * Get the change of x coordinate when taking one step towards this
+	 * direction.
+	 * 
+	 * @return --- -1, 0, or 1.
+	 */
+	public int getDx() {
+		return dx;
+	}
+
+	/**
+	 * Get the change of y coordinate when taking one step towards this
+	 * direction.
+	 * 
+	 * @return --- -1, 0, or 1.
+	 */
+	public int getDy() {
+		return dy;
+	}
 
 	/**
 	 * Get the left of current direction.
@@ -50,6 +99,26 @@ public enum Direction {
 		}
 	}
 
+	/**
+	 * Get the opposite of current direction.
+	 * 
+	 * @return --- the opposite of current direction.
+	 */
+	public Direction opposite() {
+		switch (this) {
+		case East:
+			return West;
+		case North:
+			return South;
+		case South:
+			return North;
+		case West:
+			return East;
+		default:
+			return null; // dead code
+		}
+	}
+
 	/**
 	 * Generate a random direction
 	 * 
@@ -80,11 +149,11 @@ public enum Direction {
 	 * @return --- the Direction at the given index.
 	 */
 	public static Direction fromOrdinal(int index) {
-		if (index < 0 || index >= Direction.values().length) {
+		if (index < 0 || index >= VALUES.length) {
 			throw new IndexOutOfBoundsException();
 		}
 
-		return Direction.values()[index];
+		return VALUES[index];
 	}
 
 	/**
@@ -3,6 +3,8 @@ package server.game.player;
 import java.util.ArrayList;
 import java.util.List;
 
+import server.game.TimingWheel;
+import server.game.TimingWheel.Timeout;
 import server.game.items.Antidote;
 import server.game.items.Destroyable;
 import server.game.items.Item;
@@ -93,6 +95,29 @@ public class Player {
 	 */
 	private boolean loading;
 
+	/**
+	 * Who is watching this player's position, or null if nobody is. It is set
+	 * by the game when the player joins.
+	 */
+	private PositionObserver positionObserver;
+
+	/**
+	 * The timing wheel this player is aging on, or null if he isn't in a
+	 * running game. While aging, <i>health</i> is the health left on tick
+	 * <i>healthSince</i>, and one health is lost on every tick after it.
+	 */
+	private TimingWheel wheel;
+
+	/**
+	 * The tick <i>health</i> was last worked out on.
+	 */
+	private long healthSince;
+
+	/**
+	 * Fires when this player runs out of health, created on first use.
+	 */
+	private Timeout death;
+
 	/**
 	 * Constructor
 	 *
@@ -161,13 +186,107 @@ public class Player {
 	 */
 	public void increaseHealth(int effect) {
 		if (isAlive) {
+			settleHealth();
 			health += effect;
 			if (health <= 0) {
-				isAlive = false;
+				die();
+			} else {
+				scheduleDeath();
 			}
 		}
 	}
 
+	/**
+	 * Let this player lose one health per tick of the given timing wheel,
+	 * until he dies or stops aging. Nothing is done on each tick; the health
+	 * left is worked out from the tick he started, and a single timeout fires
+	 * when he runs out. The torch in his hand, if lighted, burns on the same
+	 * wheel.
+	 *
+	 * @param wheel
+	 *            --- the timing wheel of the game
+	 */
+	public void startAging(TimingWheel wheel) {
+		stopAging();
+		this.wheel = wheel;
+		healthSince = wheel.now();
+		scheduleDeath();
+
+		if (isHoldingTorch && torchInHand != null) {
+			burnTorch(torchInHand);
+		}
+	}
+
+	/**
+	 * Stop aging, and remember the health left. The torch in his hand stops
+	 * burning too. It does nothing if he isn't aging.
+	 */
+	public void stopAging() {
+		if (wheel == null) {
+			return;
+		}
+
+		settleHealth();
+		if (death != null) {
+			wheel.cancel(death);
+		}
+		if (torchInHand != null) {
+			torchInHand.stopBurning();
+		}
+		wheel = null;
+	}
+
+	/**
+	 * Work out the health left up to now, and count from now on.
+	 */
+	private void settleHealth() {
+		if (wheel != null) {
+			health = getHealthLeft();
+			healthSince = wheel.now();
+		}
+	}
+
+	/**
+	 * Schedule the death of this player for when his health runs out.
+	 */
+	private void scheduleDeath() {
+		if (wheel == null || !isAlive) {
+			return;
+		}
+
+		if (death == null) {
+			death = new Timeout(this::die);
+		}
+		wheel.schedule(death, health - (wheel.now() - healthSince));
+	}
+
+	/**
+	 * This player is dead.
+	 */
+	private void die() {
+		settleHealth();
+		isAlive = false;
+		if (wheel != null && death != null) {
+			wheel.cancel(death);
+		}
+	}
+
+	/**
+	 * Let a lighted torch burn on the timing wheel this player is aging on. It
+	 * is put down and destroyed when used up.
+	 *
+	 * @param torch
+	 *            --- the torch
+	 */
+	private void burnTorch(Torch torch) {
+		if (wheel != null) {
+			torch.startBurning(wheel, () -> {
+				extinguishTorch(torch);
+				destroyItem(torch);
+			});
+		}
+	}
+
 	/**
 	 * This method let the player to drink a potion of antidote. If the
 	 * antidote's type matches the player's virus, then it prolongs the player's
@@ -224,6 +343,7 @@ public class Player {
 
 		isHoldingTorch = true;
 		torchInHand = torch;
+		burnTorch(torch);
 	}
 
 	/**
@@ -434,16 +554,14 @@ public class Player {
 	 * Let the player turn left.
 	 */
 	public void turnLeft() {
-		Direction d = position.getDirection();
-		position.setDirection(d.left());
+		setDirection(position.getDirection().left());
 	}
 
 	/**
 	 * Let the player turn right.
 	 */
 	public void turnRight() {
-		Direction d = position.getDirection();
-		position.setDirection(d.right());
+		setDirection(position.getDirection().right());
 	}
 
 	/**
@@ -453,7 +571,7 @@ public class Player {
 	 *            --- the direction.
 	 */
 	public void setDirection(Direction direction) {
-		position.setDirection(direction);
+		setPosition(new Position(position.x, position.y, position.areaId, direction));
 	}
 
 	/**
@@ -465,7 +583,23 @@ public class Player {
 	 *            --- the new position.
 	 */
 	public void setPosition(Position pos) {
+		Position oldPos = this.position;
 		this.position = pos;
+
+		if (positionObserver != null) {
+			positionObserver.positionChanged(this, oldPos, pos);
+		}
+	}
+
+	/**
+	 * Set who is watching this player's position. The observer is told every
+	 * time the position is set via {@link #setPosition(Position) setPosition}.
+	 *
+	 * @param observer
+	 *            --- the observer, or null to stop watching.
+	 */
+	public void setPositionObserver(PositionObserver observer) {
+		this.positionObserver = observer;
 	}
 
 	/**
@@ -473,7 +607,7 @@ public class Player {
 	 * comparing game states from before and after a game load.
 	 */
 	public void saveRecordOfHealth() {
-		this.healthSavingValue = health;
+		this.healthSavingValue = getHealthLeft();
 	}
 
 	/**
@@ -594,7 +728,10 @@ public class Player {
 	 * @return --- the health left
 	 */
 	public int getHealthLeft() {
-		return health;
+		if (wheel == null || !isAlive) {
+			return health;
+		}
+		return health - (int) (wheel.now() - healthSince);
 	}
 
 	/**
@@ -688,7 +825,7 @@ public class Player {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((avatar == null) ? 0 : avatar.hashCode());
-		result = prime * result + health;
+		result = prime * result + getHealthLeft();
 		result = prime * result + healthSavingValue;
 		result = prime * result + ((inventory == null) ? 0 : inventory.hashCode());
 		result = prime * result + (isAlive ? 1231 : 1237);
@@ -713,7 +850,7 @@ public class Player {
 		Player other = (Player) obj;
 		if (avatar != other.avatar)
 			return false;
-		if (health != other.health)
+		if (getHealthLeft() != other.getHealthLeft())
 			return false;
 		if (healthSavingValue != other.healthSavingValue)
 			return false;
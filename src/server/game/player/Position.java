@@ -5,6 +5,10 @@ package server.game.player;
  * contains a pair of (x, y) coordinates, the id number of current area, and a
  * facing direction.
  *
+ * <p>
+ * A Position is immutable, so the same instance can be shared, see
+ * {@link server.game.world.Area#getPosition(int, int, Direction) getPosition}.
+ *
  * @author Hector (Fang Zhao 300364061)
  *
  */
@@ -28,7 +32,7 @@ public class Position {
 	/**
 	 * The player's facing direction
 	 */
-	private Direction direction;
+	private final Direction direction;
 
 	/**
 	 * Constructor
@@ -58,16 +62,6 @@ public class Position {
 		return direction;
 	}
 
-	/**
-	 * Set the direction
-	 * 
-	 * @param direction
-	 *            --- the new direction
-	 */
-	public void setDirection(Direction direction) {
-		this.direction = direction;
-	}
-
 	/**
 	 * Get the position in front of this position. Direction remain unchanged.
 	 * 
@@ -75,18 +69,7 @@ public class Position {
 	 *         unchanged.
 	 */
 	public Position frontPosition() {
-		switch (direction) {
-		case East:
-			return new Position(x + 1, y, areaId, direction);
-		case North:
-			return new Position(x, y - 1, areaId, direction);
-		case South:
-			return new Position(x, y + 1, areaId, direction);
-		case West:
-			return new Position(x - 1, y, areaId, direction);
-		default:
-			return null; // dead code
-		}
+		return towards(direction);
 	}
 
 	/**
@@ -96,18 +79,7 @@ public class Position {
 	 *         unchanged.
 	 */
 	public Position backPosition() {
-		switch (direction) {
-		case East:
-			return new Position(x - 1, y, areaId, direction);
-		case North:
-			return new Position(x, y + 1, areaId, direction);
-		case South:
-			return new Position(x, y - 1, areaId, direction);
-		case West:
-			return new Position(x + 1, y, areaId, direction);
-		default:
-			return null; // dead code
-		}
+		return towards(direction.opposite());
 	}
 
 	/**
@@ -118,18 +90,7 @@ public class Position {
 	 *         unchanged.
 	 */
 	public Position leftPosition() {
-		switch (direction) {
-		case East:
-			return new Position(x, y - 1, areaId, direction);
-		case North:
-			return new Position(x - 1, y, areaId, direction);
-		case South:
-			return new Position(x + 1, y, areaId, direction);
-		case West:
-			return new Position(x, y + 1, areaId, direction);
-		default:
-			return null; // dead code
-		}
+		return towards(direction.left());
 	}
 
 	/**
@@ -140,18 +101,19 @@ public class Position {
 	 *         unchanged.
 	 */
 	public Position rightPosition() {
-		switch (direction) {
-		case East:
-			return new Position(x, y + 1, areaId, direction);
-		case North:
-			return new Position(x + 1, y, areaId, direction);
-		case South:
-			return new Position(x - 1, y, areaId, direction);
-		case West:
-			return new Position(x, y - 1, areaId, direction);
-		default:
-			return null; // dead code
-		}
+		return towards(direction.right());
+	}
+
+	/**
+	 * Get the position one step away from this position towards the given
+	 * direction. Direction remain unchanged.
+	 * 
+	 * @param towards
+	 *            --- the direction to step towards
+	 * @return --- The position one step away. Direction remain unchanged.
+	 */
+	private Position towards(Direction towards) {
+		return new Position(x + towards.getDx(), y + towards.getDy(), areaId, direction);
 	}
 
 	@Override
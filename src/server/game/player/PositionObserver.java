@@ -0,0 +1,27 @@
+package server.game.player;
+
+/**
+ * This interface is used to watch a player's position. The observer is told
+ * every time the player's position is set, so that anything indexed by
+ * position (e.g. the occupancy of areas) can be kept up to date.
+ *
+ * @author Hector (Fang Zhao 300364061)
+ *
+ */
+public interface PositionObserver {
+
+	/**
+	 * This method is called after the player's position is set.
+	 *
+	 * @param player
+	 *            --- the player
+	 * @param oldPosition
+	 *            --- the position before, or null if the player had no
+	 *            position.
+	 * @param newPosition
+	 *            --- the position after, or null if the player's position is
+	 *            cleared.
+	 */
+	void positionChanged(Player player, Position oldPosition, Position newPosition);
+
+}
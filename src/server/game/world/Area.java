@@ -2,10 +2,11 @@ package server.game.world;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
-import server.game.Game;
+import server.game.GameError;
+import server.game.IntMap;
 import server.game.player.Direction;
 import server.game.player.Player;
 import server.game.player.Position;
@@ -29,10 +30,23 @@ public class Area {
 	private int height;
 
 	/**
-	 * The map itself.
+	 * Areas with at least this many cells are switched to the compact tile
+	 * storage when a game is made of them, see {@link #compact() compact}.
+	 */
+	public static final int COMPACT_THRESHOLD = 64 * 64;
+
+	/**
+	 * The map itself, or null if this area has been switched to the compact
+	 * tile storage.
 	 */
 	protected MapElement[][] map;
 
+	/**
+	 * The compact tile storage of the map, or null if the map is stored as a
+	 * 2d-array of MapElement.
+	 */
+	private TileMap tiles;
+
 	/**
 	 * Each area has a unique ID number, which can be used for locating player.
 	 */
@@ -48,6 +62,52 @@ public class Area {
 	 */
 	private String description;
 
+	/**
+	 * How many players are standing on each cell, indexed by
+	 * <i>y * width + x</i>. It's maintained by the game when players move, so
+	 * that checking whether a cell is occupied is O(1).
+	 */
+	private int[] occupancy;
+
+	/**
+	 * Every position in this area, created on first use and shared afterwards,
+	 * indexed by row, and then by <i>x * 4 + direction</i>. Players walking
+	 * around reuse these instead of creating a new Position on every step. A
+	 * row is only allocated once someone steps into it, so a large area
+	 * doesn't pay for the rows nobody has visited.
+	 */
+	private Position[][] positions;
+
+	/**
+	 * The cell index, <i>y * width + x</i>, of every player portal, without
+	 * duplicates. The position of a portal in this array is its ordinal.
+	 */
+	private int[] portalCells;
+
+	/**
+	 * The ordinal of every player portal, where the key is its cell index. It
+	 * only holds the portals, so the spawn index costs nothing per cell that
+	 * isn't a portal.
+	 */
+	private IntMap<Integer> portalOrdinals;
+
+	/**
+	 * The ordinal of every player portal that nobody is standing on. Only the
+	 * first <i>freeCount</i> entries are in use.
+	 */
+	private int[] freePortals;
+
+	/**
+	 * The number of player portals that nobody is standing on.
+	 */
+	private int freeCount;
+
+	/**
+	 * Where each portal is in <i>freePortals</i>, indexed by its ordinal; or -1
+	 * if somebody is standing on it.
+	 */
+	private int[] freeSlots;
+
 	/**
 	 * Constructor.
 	 *
@@ -64,6 +124,9 @@ public class Area {
 		this.height = board.length;
 		this.areaId = areaID;
 		this.description = description;
+		this.occupancy = new int[width * height];
+		this.positions = new Position[height][];
+		indexFreeCells();
 	}
 
 	/**
@@ -85,6 +148,9 @@ public class Area {
 		this.areaId = areaID;
 		this.playerPortals = playerPortals;
 		this.description = description;
+		this.occupancy = new int[width * height];
+		this.positions = new Position[height][];
+		indexFreeCells();
 	}
 
 	/**
@@ -124,14 +190,48 @@ public class Area {
 	}
 
 	/**
-	 * Get the board.
+	 * Get the board. If this area has been switched to the compact tile
+	 * storage, the board is expanded into a new 2d-array, and changing it has
+	 * no effect on this area.
 	 *
 	 * @return --- the board as a 2d-array of MapElement
 	 */
 	public MapElement[][] getMap() {
+		if (tiles != null) {
+			return tiles.toBoard();
+		}
 		return this.map;
 	}
 
+	/**
+	 * Switch this area to the compact tile storage, where every cell is a
+	 * byte instead of a reference to its own MapElement. Cells with equal
+	 * plain GroundSpace or Obstacle end up sharing one instance, while
+	 * containers and transition spaces are kept as they are. It does nothing
+	 * if the area is compact already, or the map has too many kinds of
+	 * obstacles to be coded in a byte.
+	 *
+	 * @return --- true if this area is compact now, or false if not.
+	 */
+	public boolean compact() {
+		if (tiles == null) {
+			tiles = TileMap.of(map);
+			if (tiles != null) {
+				map = null;
+			}
+		}
+		return tiles != null;
+	}
+
+	/**
+	 * Whether this area is using the compact tile storage.
+	 *
+	 * @return --- true if it's compact, or false if not.
+	 */
+	public boolean isCompact() {
+		return tiles != null;
+	}
+
 	/**
 	 * Get the area ID
 	 *
@@ -146,32 +246,212 @@ public class Area {
 	 * spawned from one of them.
 	 */
 	public void registerPortals() {
-		for (int row = 0; row < map.length; row++) {
-			for (int col = 0; col < map[0].length; col++) {
-				if (map[row][col] instanceof GroundSpace) {
+		for (int row = 0; row < height; row++) {
+			for (int col = 0; col < width; col++) {
+				if (getMapElementAt(col, row) instanceof GroundSpace) {
 					playerPortals.add(new int[] { col, row });
 				}
 			}
 		}
+		indexFreeCells();
 	}
 
 	/**
-	 * Get a random empty position to spawn a player.
+	 * Get a random empty position to spawn a player. It takes constant time,
+	 * as the player portals nobody is standing on are kept in an index.
 	 *
-	 * @param game
-	 *            --- the game instance
 	 * @return --- an empty position to spawn player. If this area is so
 	 *         occupied that there is no empty space, null will be returned.
 	 */
-	public synchronized Position getPlayerSpawnPos(Game game) {
-		Collections.shuffle(playerPortals);
-		for (int[] e : playerPortals) {
-			Position p = new Position(e[0], e[1], areaId, Direction.randomDirection());
-			if (!game.isOccupiedByOtherPlayer(p)) {
-				return p;
+	public Position getPlayerSpawnPos() {
+		if (freeCount == 0) {
+			return null;
+		}
+
+		int cell = portalCells[freePortals[ThreadLocalRandom.current().nextInt(freeCount)]];
+		return getPosition(cell % width, cell / width, Direction.randomDirection());
+	}
+
+	/**
+	 * Build the index of player portals that nobody is standing on, from
+	 * <i>playerPortals</i> and the occupancy of cells. Portals out of current
+	 * map are ignored. Every array in it is sized by the number of portals, not
+	 * by the size of the map.
+	 */
+	private void indexFreeCells() {
+		int numPortals = playerPortals == null ? 0 : playerPortals.size();
+		portalCells = new int[numPortals];
+		portalOrdinals = new IntMap<>();
+		int count = 0;
+
+		if (playerPortals != null) {
+			for (int[] portal : playerPortals) {
+				int x = portal[0];
+				int y = portal[1];
+				if (x < 0 || x >= width || y < 0 || y >= height) {
+					continue;
+				}
+				int cell = y * width + x;
+				if (portalOf(cell) >= 0) {
+					continue;
+				}
+				portalCells[count] = cell;
+				portalOrdinals.put(cell, count);
+				count++;
+			}
+		}
+
+		if (count < numPortals) {
+			portalCells = Arrays.copyOf(portalCells, count);
+		}
+		freePortals = new int[count];
+		freeSlots = new int[count];
+		freeCount = 0;
+		for (int portal = 0; portal < count; portal++) {
+			freeSlots[portal] = -1;
+			if (occupancy[portalCells[portal]] == 0) {
+				freePortal(portal);
+			}
+		}
+	}
+
+	/**
+	 * Find the ordinal of the player portal at the given cell.
+	 *
+	 * @param cell
+	 *            --- the cell index
+	 * @return --- the ordinal, or -1 if the cell is not a player portal.
+	 */
+	private int portalOf(int cell) {
+		Integer portal = portalOrdinals.get(cell);
+		return portal == null ? -1 : portal;
+	}
+
+	/**
+	 * Put a player portal in the index of free player portals.
+	 *
+	 * @param portal
+	 *            --- the ordinal of the portal
+	 */
+	private void freePortal(int portal) {
+		freeSlots[portal] = freeCount;
+		freePortals[freeCount] = portal;
+		freeCount++;
+	}
+
+	/**
+	 * Take a player portal out of the index of free player portals, by moving
+	 * the last free portal into its slot.
+	 *
+	 * @param portal
+	 *            --- the ordinal of the portal
+	 */
+	private void takePortal(int portal) {
+		int slot = freeSlots[portal];
+		int last = freePortals[freeCount - 1];
+		freePortals[slot] = last;
+		freeSlots[last] = slot;
+		freeSlots[portal] = -1;
+		freeCount--;
+	}
+
+	/**
+	 * Get the shared Position at coordinate (x, y) in this area facing the
+	 * given direction. The same instance is returned every time, so it must
+	 * never be modified. If (x, y) is out of current map, a
+	 * <i>GameError</i> is thrown.
+	 *
+	 * @param x
+	 * @param y
+	 * @param direction
+	 *            --- the facing direction
+	 * @return --- the position
+	 */
+	public Position getPosition(int x, int y, Direction direction) {
+		if (x < 0 || x >= width || y < 0 || y >= height) {
+			throw new GameError("(" + x + ", " + y + ") is out of area " + areaId);
+		}
+
+		Position[] row = positions[y];
+		if (row == null) {
+			row = new Position[width * 4];
+			positions[y] = row;
+		}
+
+		int index = x * 4 + direction.ordinal();
+		Position position = row[index];
+		if (position == null) {
+			position = new Position(x, y, areaId, direction);
+			row[index] = position;
+		}
+		return position;
+	}
+
+	/**
+	 * Is there any player standing at coordinate (x, y)?
+	 *
+	 * @param x
+	 * @param y
+	 * @return --- true if there is at least one player there, or false if
+	 *         there is none or (x, y) is out of current map.
+	 */
+	public boolean isOccupied(int x, int y) {
+		if (x < 0 || x >= width || y < 0 || y >= height) {
+			return false;
+		}
+		return occupancy[y * width + x] > 0;
+	}
+
+	/**
+	 * Record that a player has arrived at coordinate (x, y). It does nothing if
+	 * (x, y) is out of current map.
+	 *
+	 * @param x
+	 * @param y
+	 */
+	public void addOccupant(int x, int y) {
+		if (x < 0 || x >= width || y < 0 || y >= height) {
+			return;
+		}
+		int cell = y * width + x;
+		occupancy[cell]++;
+		if (occupancy[cell] == 1) {
+			int portal = portalOf(cell);
+			if (portal >= 0) {
+				takePortal(portal);
+			}
+		}
+	}
+
+	/**
+	 * Record that a player has left coordinate (x, y). It does nothing if (x,
+	 * y) is out of current map, or nobody is there.
+	 *
+	 * @param x
+	 * @param y
+	 */
+	public void removeOccupant(int x, int y) {
+		if (x < 0 || x >= width || y < 0 || y >= height) {
+			return;
+		}
+		int cell = y * width + x;
+		if (occupancy[cell] > 0) {
+			occupancy[cell]--;
+			if (occupancy[cell] == 0) {
+				int portal = portalOf(cell);
+				if (portal >= 0) {
+					freePortal(portal);
+				}
 			}
 		}
-		return null;
+	}
+
+	/**
+	 * Forget about all players in this area.
+	 */
+	public void clearOccupants() {
+		Arrays.fill(occupancy, 0);
+		indexFreeCells();
 	}
 
 	/**
@@ -215,9 +495,27 @@ public class Area {
 			return null;
 		}
 
+		if (tiles != null) {
+			return tiles.get(x, y);
+		}
 		return map[y][x];
 	}
 
+	/**
+	 * Get the MapElement one step away from the given position towards the
+	 * given direction.
+	 *
+	 * @param position
+	 *            --- the position to step from
+	 * @param towards
+	 *            --- the direction to step towards
+	 * @return --- the MapElement there; or null if that place is out of
+	 *         current map.
+	 */
+	public MapElement getMapElementTowards(Position position, Direction towards) {
+		return getMapElementAt(position.x + towards.getDx(), position.y + towards.getDy());
+	}
+
 	/**
 	 * Get the MapElement type in front of the player.
 	 *
@@ -227,31 +525,7 @@ public class Area {
 	 *         place is out of current map.
 	 */
 	public MapElement getFrontMapElement(Player player) {
-		Position currentPos = player.getPosition();
-		int x = currentPos.x;
-		int y = currentPos.y;
-		Direction direction = player.getDirection();
-		MapElement frontMapElement;
-
-		switch (direction) {
-		case East:
-			frontMapElement = getMapElementAt(x + 1, y);
-			break;
-		case North:
-			frontMapElement = getMapElementAt(x, y - 1);
-			break;
-		case South:
-			frontMapElement = getMapElementAt(x, y + 1);
-			break;
-		case West:
-			frontMapElement = getMapElementAt(x - 1, y);
-			break;
-		default:
-			// this should not happen
-			frontMapElement = null;
-		}
-
-		return frontMapElement;
+		return getMapElementTowards(player.getPosition(), player.getDirection());
 	}
 
 	/**
@@ -263,31 +537,7 @@ public class Area {
 	 *         is out of current map.
 	 */
 	public MapElement getBackMapElement(Player player) {
-		Position currentPos = player.getPosition();
-		int x = currentPos.x;
-		int y = currentPos.y;
-		Direction direction = player.getDirection();
-		MapElement backPos;
-
-		switch (direction) {
-		case East:
-			backPos = getMapElementAt(x - 1, y);
-			break;
-		case North:
-			backPos = getMapElementAt(x, y + 1);
-			break;
-		case South:
-			backPos = getMapElementAt(x, y - 1);
-			break;
-		case West:
-			backPos = getMapElementAt(x + 1, y);
-			break;
-		default:
-			// this should not happen
-			backPos = null;
-		}
-
-		return backPos;
+		return getMapElementTowards(player.getPosition(), player.getDirection().opposite());
 	}
 
 	/**
@@ -299,31 +549,7 @@ public class Area {
 	 *         that space is out of current map.
 	 */
 	public MapElement getLeftMapElement(Player player) {
-		Position currentPos = player.getPosition();
-		int x = currentPos.x;
-		int y = currentPos.y;
-		Direction direction = player.getDirection();
-		MapElement leftPos;
-
-		switch (direction) {
-		case East:
-			leftPos = getMapElementAt(x, y - 1);
-			break;
-		case North:
-			leftPos = getMapElementAt(x - 1, y);
-			break;
-		case South:
-			leftPos = getMapElementAt(x + 1, y);
-			break;
-		case West:
-			leftPos = getMapElementAt(x, y + 1);
-			break;
-		default:
-			// this should not happen
-			leftPos = null;
-		}
-
-		return leftPos;
+		return getMapElementTowards(player.getPosition(), player.getDirection().left());
 	}
 
 	/**
@@ -335,31 +561,7 @@ public class Area {
 	 *         that space is out of current map.
 	 */
 	public MapElement getRightMapElement(Player player) {
-		Position currentPos = player.getPosition();
-		int x = currentPos.x;
-		int y = currentPos.y;
-		Direction direction = player.getDirection();
-		MapElement rightPos;
-
-		switch (direction) {
-		case East:
-			rightPos = getMapElementAt(x, y + 1);
-			break;
-		case North:
-			rightPos = getMapElementAt(x + 1, y);
-			break;
-		case South:
-			rightPos = getMapElementAt(x - 1, y);
-			break;
-		case West:
-			rightPos = getMapElementAt(x, y - 1);
-			break;
-		default:
-			// this should not happen
-			rightPos = null;
-		}
-
-		return rightPos;
+		return getMapElementTowards(player.getPosition(), player.getDirection().right());
 	}
 
 	@Override
@@ -368,7 +570,7 @@ public class Area {
 		int result = 1;
 		result = prime * result + areaId;
 		result = prime * result + height;
-		result = prime * result + Arrays.deepHashCode(map);
+		result = prime * result + Arrays.deepHashCode(getMap());
 		result = prime * result + ((playerPortals == null) ? 0 : playerPortals.hashCode());
 		result = prime * result + width;
 		return result;
@@ -387,7 +589,7 @@ public class Area {
 			return false;
 		if (height != other.height)
 			return false;
-		if (!Arrays.deepEquals(map, other.map))
+		if (!Arrays.deepEquals(getMap(), other.getMap()))
 			return false;
 		if (playerPortals == null) {
 			if (other.playerPortals != null)
@@ -415,9 +617,9 @@ public class Area {
 		sb.append("\n");
 
 		// chars
-		for (MapElement[] row : map) {
-			for (MapElement col : row) {
-				sb.append(col.getMapChar());
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				sb.append(tiles != null ? tiles.getMapChar(x, y) : map[y][x].getMapChar());
 			}
 			sb.append("\n");
 		}
@@ -0,0 +1,233 @@
+package server.game.world;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class is a compact storage of an area's board. Every cell is one byte,
+ * a tile code indexing a palette of map elements which carry no state of their
+ * own (plain GroundSpace and Obstacle), so that any number of cells can share
+ * one instance. Map elements with a state of their own, i.e. containers and
+ * transition spaces, are kept in a side table sorted by cell index.
+ *
+ * <p>
+ * Cells are indexed by <i>y * width + x</i>, so scanning the board row by row
+ * walks a single array.
+ *
+ * @author Hector (Fang Zhao 300364061)
+ *
+ */
+class TileMap {
+
+	/**
+	 * The tile code of a cell whose map element is in the side table.
+	 */
+	private static final int STATEFUL = 0;
+
+	/**
+	 * The largest number of distinct stateless map elements in a palette.
+	 */
+	private static final int MAX_PALETTE_SIZE = 255;
+
+	/**
+	 * Width of the board.
+	 */
+	private final int width;
+
+	/**
+	 * Height of the board.
+	 */
+	private final int height;
+
+	/**
+	 * The tile code of every cell.
+	 */
+	private final byte[] codes;
+
+	/**
+	 * The stateless map elements. The tile code of an element is its index
+	 * plus one.
+	 */
+	private final MapElement[] palette;
+
+	/**
+	 * The char of every map element in the palette, in the same order.
+	 */
+	private final char[] paletteChars;
+
+	/**
+	 * The cell index of every stateful map element, in ascending order.
+	 */
+	private final int[] statefulCells;
+
+	/**
+	 * Stateful map elements, in the same order as their cell index.
+	 */
+	private final MapElement[] statefulElements;
+
+	/**
+	 * Constructor
+	 *
+	 * @param width
+	 *            --- width of the board
+	 * @param height
+	 *            --- height of the board
+	 * @param codes
+	 *            --- the tile code of every cell
+	 * @param palette
+	 *            --- the stateless map elements
+	 * @param statefulCells
+	 *            --- the cell index of every stateful map element, in
+	 *            ascending order
+	 * @param statefulElements
+	 *            --- stateful map elements
+	 */
+	private TileMap(int width, int height, byte[] codes, MapElement[] palette, int[] statefulCells,
+			MapElement[] statefulElements) {
+		this.width = width;
+		this.height = height;
+		this.codes = codes;
+		this.palette = palette;
+		this.statefulCells = statefulCells;
+		this.statefulElements = statefulElements;
+
+		this.paletteChars = new char[palette.length];
+		for (int i = 0; i < palette.length; i++) {
+			paletteChars[i] = palette[i].getMapChar();
+		}
+	}
+
+	/**
+	 * Build the compact storage of the given board.
+	 *
+	 * @param board
+	 *            --- the board as a 2d-array of MapElement
+	 * @return --- the compact storage, or null if the board has too many
+	 *         distinct stateless map elements to be coded in a byte.
+	 */
+	static TileMap of(MapElement[][] board) {
+		int height = board.length;
+		int width = board[0].length;
+		byte[] codes = new byte[width * height];
+		List<MapElement> palette = new ArrayList<>();
+		List<Integer> statefulCells = new ArrayList<>();
+		List<MapElement> statefulElements = new ArrayList<>();
+
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				MapElement element = board[y][x];
+				int index = y * width + x;
+
+				if (!isStateless(element)) {
+					statefulCells.add(index);
+					statefulElements.add(element);
+					continue;
+				}
+
+				int code = indexOf(palette, element);
+				if (code < 0) {
+					if (palette.size() == MAX_PALETTE_SIZE) {
+						return null;
+					}
+					palette.add(element);
+					code = palette.size() - 1;
+				}
+				codes[index] = (byte) (code + 1);
+			}
+		}
+
+		int[] cells = new int[statefulCells.size()];
+		for (int i = 0; i < cells.length; i++) {
+			cells[i] = statefulCells.get(i);
+		}
+
+		return new TileMap(width, height, codes, palette.toArray(new MapElement[palette.size()]), cells,
+				statefulElements.toArray(new MapElement[statefulElements.size()]));
+	}
+
+	/**
+	 * Find the map element equal to the given one in the palette. Note that a
+	 * GroundSpace equals to anything, so the classes are compared first.
+	 *
+	 * @param palette
+	 *            --- the palette
+	 * @param element
+	 *            --- the map element
+	 * @return --- the index in palette, or -1 if there is none.
+	 */
+	private static int indexOf(List<MapElement> palette, MapElement element) {
+		for (int i = 0; i < palette.size(); i++) {
+			MapElement e = palette.get(i);
+			if (e.getClass() == element.getClass() && e.equals(element)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Whether the given map element carries no state of its own, so that it
+	 * can be shared by every cell equal to it. Subclasses of GroundSpace and
+	 * Obstacle, e.g. TransitionSpace and ScrapPile, do carry state.
+	 *
+	 * @param element
+	 *            --- the map element
+	 * @return --- true if it can be shared, or false if not.
+	 */
+	private static boolean isStateless(MapElement element) {
+		return element != null && (element.getClass() == GroundSpace.class || element.getClass() == Obstacle.class);
+	}
+
+	/**
+	 * Get MapElement at coordinate (x, y). The coordinate must be in the
+	 * board.
+	 *
+	 * @param x
+	 * @param y
+	 * @return --- the map element at coordinate (x, y)
+	 */
+	MapElement get(int x, int y) {
+		int index = y * width + x;
+		int code = codes[index] & 0xFF;
+		if (code != STATEFUL) {
+			return palette[code - 1];
+		}
+
+		int i = Arrays.binarySearch(statefulCells, index);
+		return i < 0 ? null : statefulElements[i];
+	}
+
+	/**
+	 * Get the char representing the map element at coordinate (x, y). The
+	 * coordinate must be in the board.
+	 *
+	 * @param x
+	 * @param y
+	 * @return --- the char of the map element at coordinate (x, y)
+	 */
+	char getMapChar(int x, int y) {
+		int code = codes[y * width + x] & 0xFF;
+		if (code != STATEFUL) {
+			return paletteChars[code - 1];
+		}
+		return get(x, y).getMapChar();
+	}
+
+	/**
+	 * Expand the compact storage into a 2d-array of MapElement. Cells with
+	 * equal stateless map elements share one instance.
+	 *
+	 * @return --- the board as a 2d-array of MapElement
+	 */
+	MapElement[][] toBoard() {
+		MapElement[][] board = new MapElement[height][width];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				board[y][x] = get(x, y);
+			}
+		}
+		return board;
+	}
+
+}
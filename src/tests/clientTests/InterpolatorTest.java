@@ -0,0 +1,104 @@
+package tests.clientTests;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import client.ClientWorldState;
+import client.Interpolator;
+import server.game.player.Direction;
+import server.game.player.Position;
+
+/**
+ * These tests are related to showing other players between snapshots on
+ * client side.
+ *
+ * @author Hector (Fang Zhao 300364061)
+ *
+ */
+public class InterpolatorTest {
+
+	/**
+	 * a mock user id
+	 */
+	private static final int MOCK_UID = 123;
+
+	/**
+	 * another mock user id
+	 */
+	private static final int OTHER_UID = 456;
+
+	/**
+	 * A snapshot period of the server, in nanoseconds.
+	 */
+	private static final long PERIOD = 50_000_000L;
+
+	/**
+	 * This method tests that a player who has gone from the latest state, but
+	 * is still shown from an older one, has his torch status and aliveness
+	 * from the older one.
+	 */
+	@Test
+	public void goneButStillShown() {
+		Position self = new Position(1, 1, 0, Direction.North);
+		Position other = new Position(2, 1, 0, Direction.West);
+
+		Map<Integer, Position> bothThere = new HashMap<>();
+		bothThere.put(MOCK_UID, self);
+		bothThere.put(OTHER_UID, other);
+		Map<Integer, Boolean> bothHoldingTorch = new HashMap<>();
+		bothHoldingTorch.put(MOCK_UID, true);
+		bothHoldingTorch.put(OTHER_UID, true);
+		Map<Integer, Boolean> bothAlive = new HashMap<>();
+		bothAlive.put(MOCK_UID, true);
+		bothAlive.put(OTHER_UID, true);
+
+		// the other player has gone in the latest state, but is still alive
+		Map<Integer, Position> selfThere = Collections.singletonMap(MOCK_UID, self);
+		Map<Integer, Boolean> selfHoldingTorch = Collections.singletonMap(MOCK_UID, true);
+
+		Interpolator motion = new Interpolator();
+		motion.add(stateOf(1, 0, bothThere, bothHoldingTorch, bothAlive));
+		motion.add(stateOf(2, PERIOD, bothThere, bothHoldingTorch, bothAlive));
+		ClientWorldState latest = stateOf(3, 2 * PERIOD, selfThere, selfHoldingTorch, bothAlive);
+		motion.add(latest);
+
+		// the time drawn is between the first two
+		motion.sample(Interpolator.DELAY + PERIOD / 2);
+		assertNull("Gone player should have no torch status in latest state",
+				latest.getTorchStatus().get(OTHER_UID));
+		assertSame("Gone player should still be shown", other, motion.getTo().get(OTHER_UID));
+		assertTrue("Gone player should be shown holding torch", motion.isHoldingTorch(OTHER_UID));
+		assertTrue("Gone player should be shown alive", motion.isAlive(OTHER_UID));
+
+		// the time drawn has caught up with the latest
+		motion.sample(Interpolator.DELAY + 3 * PERIOD);
+		assertFalse("Gone player shouldn't be shown any more", motion.getTo().containsKey(OTHER_UID));
+		assertFalse("Unknown player shouldn't be holding torch", motion.isHoldingTorch(OTHER_UID));
+		assertTrue("Player shown should be holding torch", motion.isHoldingTorch(MOCK_UID));
+	}
+
+	/**
+	 * Make a state with nothing else in it.
+	 *
+	 * @param version
+	 * @param receivedAt
+	 * @param positions
+	 * @param torchStatus
+	 * @param aliveness
+	 * @return --- the state
+	 */
+	private static ClientWorldState stateOf(long version, long receivedAt, Map<Integer, Position> positions,
+			Map<Integer, Boolean> torchStatus, Map<Integer, Boolean> aliveness) {
+		return new ClientWorldState(version, receivedAt, positions, torchStatus, aliveness,
+				Collections.emptyList(), 100, 7, 12, "12:00:00", -1);
+	}
+
+}
@@ -4,13 +4,17 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.lang.management.ManagementFactory;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
+import org.junit.Assume;
 import org.junit.Test;
 
+import com.sun.management.ThreadMXBean;
+
 import server.game.Game;
 import server.game.TestConst;
 import server.game.items.Antidote;
@@ -1043,4 +1047,82 @@ public class PlayerActionTest {
 			}
 		}
 	}
+
+	/**
+	 * This method tests that moving and turning around creates no garbage once
+	 * every position visited has been seen before. The player id is a port
+	 * number, well beyond the range of cached Integers.
+	 */
+	@Test
+	public void allocationFreeMove() {
+		ThreadMXBean bean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled());
+
+		// mock a game world
+		Map<Integer, Area> areas = TestConst.createAreas();
+		Area world = areas.get(0);
+		Game game = new Game(world, areas);
+
+		// mock player
+		int uid = 54321;
+		Player player = new Player(uid, Avatar.Avatar_1, "Hector");
+		game.joinPlayer(player);
+		player.setPosition(new Position(0, 1, 0, Direction.North));
+
+		// walk around to warm up, and to see every position once.
+		wander(game, uid, 50000);
+
+		/*
+		 * The JIT compiler may still allocate a little on this thread while it
+		 * settles down, so take the least of a few rounds.
+		 */
+		long threadId = Thread.currentThread().getId();
+		long allocated = Long.MAX_VALUE;
+		for (int round = 0; round < 5 && allocated > 0; round++) {
+			long start = bean.getThreadAllocatedBytes(threadId);
+			long overhead = bean.getThreadAllocatedBytes(threadId) - start;
+
+			start = bean.getThreadAllocatedBytes(threadId);
+			wander(game, uid, 10000);
+			allocated = Math.min(allocated, bean.getThreadAllocatedBytes(threadId) - start - overhead);
+		}
+
+		assertTrue("Moving around shouldn't allocate, but " + allocated + " bytes allocated", allocated <= 0);
+	}
+
+	/**
+	 * Let the player try every kind of move and turn in a fixed order.
+	 *
+	 * @param game
+	 *            --- the game
+	 * @param uid
+	 *            --- the player id
+	 * @param steps
+	 *            --- how many actions to take
+	 */
+	private void wander(Game game, int uid, int steps) {
+		for (int i = 0; i < steps; i++) {
+			switch (i % 7) {
+			case 0:
+			case 1:
+				game.playerMoveForward(uid);
+				break;
+			case 2:
+				game.playerMoveLeft(uid);
+				break;
+			case 3:
+				game.playerTurnRight(uid);
+				break;
+			case 4:
+				game.playerMoveRight(uid);
+				break;
+			case 5:
+				game.playerMoveBackward(uid);
+				break;
+			default:
+				game.playerTurnLeft(uid);
+				game.playerTurnLeft(uid);
+			}
+		}
+	}
 }
\ No newline at end of file
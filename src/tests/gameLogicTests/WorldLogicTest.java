@@ -1,19 +1,34 @@
 package tests.gameLogicTests;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 import org.junit.Test;
 
 import server.game.Game;
+import server.game.GameError;
 import server.game.TestConst;
+import server.game.TimingWheel;
 import server.game.items.Torch;
 import server.game.player.Avatar;
+import server.game.player.Direction;
 import server.game.player.Player;
+import server.game.player.Position;
 import server.game.world.Area;
+import server.game.world.GroundSpace;
+import server.game.world.MapElement;
+import server.game.world.Obstacle;
 
 /**
  * These tests are related to world logics.
@@ -124,6 +139,68 @@ public class WorldLogicTest {
 
 	}
 
+	/**
+	 * This method tests that players are spawned on every empty portal until
+	 * the world is full, and that a portal is free again once its player is
+	 * gone.
+	 */
+	@Test
+	public void spawnUntilFull() {
+		// mock a game world
+		Map<Integer, Area> areas = TestConst.createAreas();
+		Area world = areas.get(0);
+		Game game = new Game(world, areas);
+
+		int portals = world.getPlayerPortals().size();
+		for (int i = 0; i < portals; i++) {
+			game.joinPlayer(new Player(MOCK_UID + i, Avatar.Avatar_1, "hector_" + i));
+		}
+		assertEquals("Every portal should be taken", portals, game.getPlayers().size());
+
+		try {
+			game.joinPlayer(new Player(MOCK_UID + portals, Avatar.Avatar_1, "one too many"));
+			fail("There should be no empty position left to spawn");
+		} catch (GameError e) {
+			// expected
+		}
+		assertNull("There should be no empty position left to spawn", world.getPlayerSpawnPos());
+
+		// someone leaves, and his place is the only one left
+		Position left = game.getPlayers().get(MOCK_UID).getPosition();
+		game.disconnectPlayer(MOCK_UID);
+		Position spawn = world.getPlayerSpawnPos();
+		assertEquals("Player should be spawned where someone just left", left.x, spawn.x);
+		assertEquals("Player should be spawned where someone just left", left.y, spawn.y);
+	}
+
+	/**
+	 * This method tests that duplicated portals and portals out of the area
+	 * are left out of the spawn index.
+	 */
+	@Test
+	public void spawnIndexSkipsBadPortals() {
+		MapElement[][] board = { { new GroundSpace(), new GroundSpace(), new GroundSpace() } };
+		List<int[]> portals = new ArrayList<>();
+		portals.add(new int[] { 0, 0 });
+		portals.add(new int[] { 2, 0 });
+		portals.add(new int[] { 0, 0 });
+		portals.add(new int[] { 3, 0 });
+		portals.add(new int[] { 1, -1 });
+		Area area = new Area(board, 99, portals, "three cells");
+
+		Position first = area.getPlayerSpawnPos();
+		area.addOccupant(first.x, first.y);
+		Position second = area.getPlayerSpawnPos();
+		area.addOccupant(second.x, second.y);
+
+		assertTrue("Players should be spawned on different portals", first.x != second.x);
+		assertTrue("Players should be spawned on portals", first.x != 1 && second.x != 1);
+		assertNull("There should be no empty portal left", area.getPlayerSpawnPos());
+
+		area.removeOccupant(second.x, second.y);
+		assertEquals("Player should be spawned where someone just left", second.x, area.getPlayerSpawnPos().x);
+	}
+
 	/**
 	 * This method tests the time elapse and its effect on player's health and
 	 * torch time. Warning: this method will put current Thread into sleep for
@@ -213,4 +290,205 @@ public class WorldLogicTest {
 
 	}
 
+	/**
+	 * This method tests a single tick of the world, as the server game loop
+	 * does it, without the timer.
+	 */
+	@Test
+	public void singleTick() {
+		// mock a game world
+		Map<Integer, Area> areas = TestConst.createAreas();
+		Area world = areas.get(0);
+		Game game = new Game(world, areas);
+
+		// mock a player holding a lit torch
+		Player player = new Player(MOCK_UID, Avatar.Avatar_1, "hector");
+		game.joinPlayer(player);
+		Torch torch = new Torch("a torch");
+		player.pickUpItem(torch);
+		game.playerUseItem(MOCK_UID, 0);
+
+		int healthBefore = player.getHealthLeft();
+		int torchTimeBefore = torch.getTimeLeft();
+		LocalTime timeBefore = game.getClock();
+
+		game.tick();
+
+		assertEquals("A tick should take one health", healthBefore - 1, player.getHealthLeft());
+		assertEquals("A tick should burn the torch once", torchTimeBefore - 1, torch.getTimeLeft());
+		assertEquals("A tick should advance the world time once", timeBefore.plusSeconds(Game.TIME_ADVANCING_SPEED),
+				game.getClock());
+	}
+
+	/**
+	 * This method tests that timeouts fire exactly on their tick, however far
+	 * ahead they are, and cancelled ones never fire.
+	 */
+	@Test
+	public void timingWheel() {
+		TimingWheel wheel = new TimingWheel();
+		long[] delays = { 1, 2, 63, 64, 65, 4095, 4096, 4097, 262143, 262144, 300000, (1L << 24) + 5 };
+		long[] firedOn = new long[delays.length];
+		TimingWheel.Timeout[] timeouts = new TimingWheel.Timeout[delays.length];
+
+		for (int i = 0; i < delays.length; i++) {
+			final int index = i;
+			timeouts[i] = new TimingWheel.Timeout(() -> firedOn[index] = wheel.now());
+			wheel.schedule(timeouts[i], delays[i]);
+		}
+
+		// cancel one, and reschedule another
+		wheel.cancel(timeouts[1]);
+		wheel.schedule(timeouts[2], 10);
+		assertEquals("Cancelled timeout shouldn't be pending", delays.length - 1, wheel.size());
+
+		long last = delays[delays.length - 1];
+		while (wheel.now() < last) {
+			wheel.advance();
+		}
+
+		assertEquals("Cancelled timeout shouldn't fire", 0, firedOn[1]);
+		assertEquals("Rescheduled timeout should fire on the new tick", 10, firedOn[2]);
+		for (int i = 0; i < delays.length; i++) {
+			if (i != 1 && i != 2) {
+				assertEquals("Timeout should fire on its tick", delays[i], firedOn[i]);
+			}
+		}
+		assertEquals("Every timeout should have fired", 0, wheel.size());
+	}
+
+	/**
+	 * This method tests that players die and torches are used up on the tick
+	 * they run out, and that health and torch time count down in between.
+	 */
+	@Test
+	public void runOutOfTime() {
+		// mock a game world
+		Map<Integer, Area> areas = TestConst.createAreas();
+		Area world = areas.get(0);
+		Game game = new Game(world, areas);
+
+		// mock a player holding a lit torch
+		Player player = new Player(MOCK_UID, Avatar.Avatar_1, "hector");
+		game.joinPlayer(player);
+		Torch torch = new Torch("a torch", 3, false);
+		player.pickUpItem(torch);
+		game.playerUseItem(MOCK_UID, 0);
+		player.increaseHealth(5 - player.getHealthLeft());
+
+		for (int i = 0; i < 3; i++) {
+			assertTrue("Torch should be burning", torch.isFlaming());
+			assertEquals("Torch time should count down", 3 - i, torch.getTimeLeft());
+			assertEquals("Health should count down", 5 - i, player.getHealthLeft());
+			game.tick();
+		}
+
+		assertFalse("Torch should be used up", torch.isFlaming());
+		assertFalse("Used up torch should be put down", player.isHoldingTorch());
+		assertTrue("Used up torch should be destroyed", player.getInventory().isEmpty());
+
+		game.tick();
+		assertTrue("Player should still be alive", player.isAlive());
+		game.tick();
+		assertFalse("Player should die when his health runs out", player.isAlive());
+		assertEquals("Dead player should have no health left", 0, player.getHealthLeft());
+		game.tick();
+		assertEquals("Dead player's health shouldn't change", 0, player.getHealthLeft());
+	}
+
+	/**
+	 * This method tests that occupancy follows players as they join, move and
+	 * leave.
+	 */
+	@Test
+	public void occupancy() {
+		// mock a game world
+		Map<Integer, Area> areas = TestConst.createAreas();
+		Area world = areas.get(0);
+		Game game = new Game(world, areas);
+
+		Player player = new Player(MOCK_UID, Avatar.Avatar_1, "hector");
+		game.joinPlayer(player);
+		Position spawn = player.getPosition();
+		assertTrue("Joined player should occupy his spawn position", game.isOccupiedByOtherPlayer(spawn));
+
+		// move him to somewhere else
+		Position elsewhere = new Position(0, 1, 0, Direction.North);
+		player.setPosition(elsewhere);
+		assertTrue("Player should occupy his new position", game.isOccupiedByOtherPlayer(elsewhere));
+		if (spawn.x != elsewhere.x || spawn.y != elsewhere.y) {
+			assertFalse("Player should leave his old position", game.isOccupiedByOtherPlayer(spawn));
+		}
+
+		// a step forward, then he's gone
+		game.playerMoveForward(MOCK_UID);
+		assertFalse("Player should leave his old position", game.isOccupiedByOtherPlayer(elsewhere));
+		assertTrue("Player should occupy the position in front",
+				game.isOccupiedByOtherPlayer(player.getPosition()));
+
+		Position last = player.getPosition();
+		game.disconnectPlayer(MOCK_UID);
+		assertFalse("Disconnected player shouldn't occupy anywhere", game.isOccupiedByOtherPlayer(last));
+	}
+
+	/**
+	 * This method tests that an area switched to the compact tile storage
+	 * looks the same as before.
+	 */
+	@Test
+	public void compactTiles() {
+		Map<Integer, Area> areas = TestConst.createAreas();
+
+		// a GroundSpace equals to anything, so it shouldn't be mistaken for an
+		// obstacle seen before it.
+		MapElement[][] board = { { new Obstacle("T: a tree"), new GroundSpace(), new Obstacle("R: a rock") } };
+		areas.put(99, new Area(board, 99, "trees and rocks"));
+
+		for (Area area : areas.values()) {
+			MapElement[][] before = area.getMap();
+			String text = area.toString();
+
+			assertTrue("Test areas should be small enough to be compact", area.compact());
+			assertTrue("Area should be compact now", area.isCompact());
+
+			for (int y = 0; y < area.getHeight(); y++) {
+				for (int x = 0; x < area.getWidth(); x++) {
+					MapElement element = before[y][x];
+					if (element.getClass() == GroundSpace.class || element.getClass() == Obstacle.class) {
+						assertEquals("Plain tiles should be kept", element, area.getMapElementAt(x, y));
+					} else {
+						assertSame("Stateful tiles should be kept as they are", element, area.getMapElementAt(x, y));
+					}
+				}
+			}
+
+			assertEquals("Compact area should print the same", text, area.toString());
+			assertTrue("Compact area should have the same board", Arrays.deepEquals(before, area.getMap()));
+		}
+	}
+
+	/**
+	 * This method tests that an area hands out the same Position for the same
+	 * place every time, whichever row it's in.
+	 */
+	@Test
+	public void sharedPositions() {
+		Area area = TestConst.createAreas().values().iterator().next();
+		int lastX = area.getWidth() - 1;
+		int lastY = area.getHeight() - 1;
+
+		for (Direction direction : Direction.values()) {
+			Position first = area.getPosition(0, 0, direction);
+			Position last = area.getPosition(lastX, lastY, direction);
+			assertSame("Same place should give the same position", first, area.getPosition(0, 0, direction));
+			assertSame("Same place should give the same position", last, area.getPosition(lastX, lastY, direction));
+			assertEquals("Position should be where it's asked for", lastX, last.x);
+			assertEquals("Position should be where it's asked for", lastY, last.y);
+			assertEquals("Position should face where it's asked for", direction, last.getDirection());
+		}
+
+		assertNotSame("Different directions should give different positions",
+				area.getPosition(0, 0, Direction.North), area.getPosition(0, 0, Direction.South));
+	}
+
 }